@@ -0,0 +1,299 @@
+package synthetic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of Java 8 class files. Constant pool entries are deduplicated, methods are added
+ * with their finished bytecode. Only straight-line code is generated, so no stack map frames are
+ * needed.
+ */
+final class ClassFileWriter {
+
+  private final static int MAGIC = 0xCAFEBABE;
+  private final static int MAJOR_VERSION = 52;
+  private final static int MAX_POOL_SIZE = 0xFFFF;
+
+  // Constant pool tags
+  private final static int UTF8 = 1;
+  private final static int CLASS = 7;
+  private final static int STRING = 8;
+  private final static int METHODREF = 10;
+  private final static int NAME_AND_TYPE = 12;
+  private final static int METHOD_HANDLE = 15;
+  private final static int METHOD_TYPE = 16;
+  private final static int INVOKE_DYNAMIC = 18;
+
+  final static int REF_INVOKE_STATIC = 6;
+
+  final static int ACC_PUBLIC = 0x0001;
+  final static int ACC_PRIVATE = 0x0002;
+  final static int ACC_STATIC = 0x0008;
+  final static int ACC_SUPER = 0x0020;
+  final static int ACC_SYNTHETIC = 0x1000;
+
+  private final ByteArrayOutputStream poolBytes;
+  private final DataOutputStream pool;
+  private final Map<String, Integer> poolIndices;
+  private int poolSize;
+  private final List<byte[]> methods;
+  private final List<int[]> bootstrapMethods;
+  private final Map<String, Integer> bootstrapIndices;
+  private final int thisClass;
+  private final int superClass;
+
+  /**
+   * Constructor for class file writer.
+   *
+   * @param className       Internal name of class, for example {@code synthetic/p0/C0}
+   * @param superClassName  Internal name of superclass
+   */
+  ClassFileWriter(final String className, final String superClassName) {
+    poolBytes = new ByteArrayOutputStream();
+    pool = new DataOutputStream(poolBytes);
+    poolIndices = new HashMap<>();
+    poolSize = 1;
+    methods = new ArrayList<>();
+    bootstrapMethods = new ArrayList<>();
+    bootstrapIndices = new HashMap<>();
+
+    thisClass = classRef(className);
+    superClass = classRef(superClassName);
+  }
+
+  /**
+   * Get number of constant pool entries so far, including the unused entry 0.
+   *
+   * @return    Constant pool count
+   */
+  int getPoolSize() {
+    return poolSize;
+  }
+
+  int utf8(final String value) {
+    return entry("U" + value, () -> {
+      pool.writeByte(UTF8);
+      pool.writeUTF(value);
+    });
+  }
+
+  int classRef(final String internalName) {
+    final int name = utf8(internalName);
+    return entry("C" + internalName, () -> {
+      pool.writeByte(CLASS);
+      pool.writeShort(name);
+    });
+  }
+
+  int string(final String value) {
+    final int utf8 = utf8(value);
+    return entry("S" + value, () -> {
+      pool.writeByte(STRING);
+      pool.writeShort(utf8);
+    });
+  }
+
+  int nameAndType(final String name, final String descriptor) {
+    final int nameIndex = utf8(name);
+    final int descriptorIndex = utf8(descriptor);
+    return entry("N" + name + ' ' + descriptor, () -> {
+      pool.writeByte(NAME_AND_TYPE);
+      pool.writeShort(nameIndex);
+      pool.writeShort(descriptorIndex);
+    });
+  }
+
+  int methodRef(final String owner, final String name, final String descriptor) {
+    final int ownerIndex = classRef(owner);
+    final int nameAndTypeIndex = nameAndType(name, descriptor);
+    return entry("M" + owner + '.' + name + descriptor, () -> {
+      pool.writeByte(METHODREF);
+      pool.writeShort(ownerIndex);
+      pool.writeShort(nameAndTypeIndex);
+    });
+  }
+
+  int methodHandle(final int kind, final String owner, final String name, final String descriptor) {
+    final int methodIndex = methodRef(owner, name, descriptor);
+    return entry("H" + kind + owner + '.' + name + descriptor, () -> {
+      pool.writeByte(METHOD_HANDLE);
+      pool.writeByte(kind);
+      pool.writeShort(methodIndex);
+    });
+  }
+
+  int methodType(final String descriptor) {
+    final int descriptorIndex = utf8(descriptor);
+    return entry("T" + descriptor, () -> {
+      pool.writeByte(METHOD_TYPE);
+      pool.writeShort(descriptorIndex);
+    });
+  }
+
+  /**
+   * Add call site bootstrapped by a method of the {@code BootstrapMethods} attribute.
+   *
+   * @param bootstrapMethod   Index of bootstrap method returned by {@link #bootstrapMethod}
+   * @param name              Name of call site
+   * @param descriptor        Descriptor of call site
+   * @return                  Constant pool index
+   */
+  int invokeDynamic(final int bootstrapMethod, final String name, final String descriptor) {
+    final int nameAndTypeIndex = nameAndType(name, descriptor);
+    return entry("D" + bootstrapMethod + name + descriptor, () -> {
+      pool.writeByte(INVOKE_DYNAMIC);
+      pool.writeShort(bootstrapMethod);
+      pool.writeShort(nameAndTypeIndex);
+    });
+  }
+
+  /**
+   * Add bootstrap method with static arguments.
+   *
+   * @param methodHandle  Constant pool index of bootstrap method handle
+   * @param arguments     Constant pool indices of static arguments
+   * @return              Index in the {@code BootstrapMethods} attribute
+   */
+  int bootstrapMethod(final int methodHandle, final int... arguments) {
+    final int[] bootstrapMethod = new int[arguments.length + 1];
+    bootstrapMethod[0] = methodHandle;
+    System.arraycopy(arguments, 0, bootstrapMethod, 1, arguments.length);
+
+    final String key = Arrays.toString(bootstrapMethod);
+    Integer index = bootstrapIndices.get(key);
+    if (index == null) {
+      index = bootstrapMethods.size();
+      bootstrapMethods.add(bootstrapMethod);
+      bootstrapIndices.put(key, index);
+    }
+    return index;
+  }
+
+  /**
+   * Add method with bytecode.
+   *
+   * @param access      Access flags
+   * @param name        Name of method
+   * @param descriptor  Descriptor of method
+   * @param maxStack    Maximum operand stack depth of the code
+   * @param maxLocals   Number of local variable slots, including parameters
+   * @param code        Bytecode, at most 65535 bytes
+   */
+  void addMethod(final int access, final String name, final String descriptor, final int maxStack,
+                 final int maxLocals, final byte[] code) {
+    final int nameIndex = utf8(name);
+    final int descriptorIndex = utf8(descriptor);
+    final int codeAttribute = utf8("Code");
+
+    final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream(code.length + 32);
+    final DataOutputStream method = new DataOutputStream(methodBytes);
+    try {
+      method.writeShort(access);
+      method.writeShort(nameIndex);
+      method.writeShort(descriptorIndex);
+      method.writeShort(1);
+      method.writeShort(codeAttribute);
+      method.writeInt(12 + code.length);
+      method.writeShort(maxStack);
+      method.writeShort(maxLocals);
+      method.writeInt(code.length);
+      method.write(code);
+      method.writeShort(0);  // Exception table
+      method.writeShort(0);  // Attributes of code
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    methods.add(methodBytes.toByteArray());
+  }
+
+  /**
+   * Assemble class file.
+   *
+   * @return    Bytes of class file
+   */
+  byte[] toByteArray() {
+    final int bootstrapAttribute = bootstrapMethods.isEmpty() ? 0 : utf8("BootstrapMethods");
+
+    final ByteArrayOutputStream classBytes = new ByteArrayOutputStream(poolBytes.size() + 1024);
+    final DataOutputStream out = new DataOutputStream(classBytes);
+    try {
+      out.writeInt(MAGIC);
+      out.writeShort(0);
+      out.writeShort(MAJOR_VERSION);
+      out.writeShort(poolSize);
+      poolBytes.writeTo(out);
+
+      out.writeShort(ACC_PUBLIC | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0);  // Interfaces
+      out.writeShort(0);  // Fields
+
+      out.writeShort(methods.size());
+      for (byte[] method : methods) {
+        out.write(method);
+      }
+
+      if (bootstrapMethods.isEmpty()) {
+        out.writeShort(0);
+      } else {
+        int length = 2;
+        for (int[] bootstrapMethod : bootstrapMethods) {
+          length += 2 * (bootstrapMethod.length + 1);
+        }
+        out.writeShort(1);
+        out.writeShort(bootstrapAttribute);
+        out.writeInt(length);
+        out.writeShort(bootstrapMethods.size());
+        for (int[] bootstrapMethod : bootstrapMethods) {
+          out.writeShort(bootstrapMethod[0]);
+          out.writeShort(bootstrapMethod.length - 1);
+          for (int i = 1; i < bootstrapMethod.length; ++i) {
+            out.writeShort(bootstrapMethod[i]);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return classBytes.toByteArray();
+  }
+
+  /**
+   * Get index of a constant pool entry, writing the entry if it's new.
+   *
+   * @param key     Unique key of entry
+   * @param writer  Writes the entry to the pool
+   * @return        Constant pool index
+   */
+  private int entry(final String key, final EntryWriter writer) {
+    Integer index = poolIndices.get(key);
+    if (index == null) {
+      if (MAX_POOL_SIZE <= poolSize) {
+        throw new IllegalStateException("Constant pool is full");
+      }
+      try {
+        writer.write();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      index = poolSize++;
+      poolIndices.put(key, index);
+    }
+    return index;
+  }
+
+  /**
+   * Writing of one constant pool entry.
+   */
+  private interface EntryWriter {
+    void write() throws IOException;
+  }
+}
@@ -0,0 +1,422 @@
+package synthetic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.GregorianCalendar;
+import java.util.SplittableRandom;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Generator of reproducible JARs of synthetic classes, for measuring the analysis at scale.
+ * <p>
+ * The same options and seed always generate the same bytes. Every class gets its own random
+ * generator derived from the seed and its index, and entries have a fixed time. Classes are written
+ * straight to the JAR one after another, so JARs of a million classes are generated in constant
+ * memory.
+ * <p>
+ * Class {@code C<i>} consists of
+ * <ul>
+ * <li>a constructor, with {@code C<i-1>} as superclass, up to the hierarchy depth
+ * <li>static methods {@code m<j>(int)}, each calling methods of randomly chosen classes
+ * <li>a method loading string constants, growing the constant pool
+ * <li>optionally a huge method close to the 64 KB limit of bytecode
+ * <li>a method creating lambdas through {@code invokedynamic}
+ * </ul>
+ * Usage:
+ * <pre>
+ * java -jar SyntheticJar-1.0.0.jar --classes 100000 --seed 42 --output synthetic.jar
+ * </pre>
+ */
+public class SyntheticJarGenerator {
+
+  private final static String PACKAGE = "synthetic/p";
+  private final static String OBJECT = "java/lang/Object";
+  private final static String METHOD_DESCRIPTOR = "(I)I";
+
+  private final static String LAMBDA_INTERFACE = "java/util/function/IntUnaryOperator";
+  private final static String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+  private final static String METAFACTORY_DESCRIPTOR = "(Ljava/lang/invoke/MethodHandles$Lookup;"
+      + "Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;"
+      + "Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;";
+
+  // Blocks of 6 bytes in a huge method, just below the limit of 65535 bytes of code
+  private final static int HUGE_METHOD_BLOCKS = 10000;
+  private final static int MAX_CODE_LENGTH = 0xFFFF;
+
+  // 2000-01-01 in the local time zone, so entries store the same DOS time everywhere
+  private final static long ENTRY_TIME = new GregorianCalendar(2000, 0, 1).getTimeInMillis();
+
+  // Opcodes
+  private final static int ILOAD_0 = 0x1A;
+  private final static int ALOAD_0 = 0x2A;
+  private final static int ISTORE_0 = 0x3B;
+  private final static int SIPUSH = 0x11;
+  private final static int LDC_W = 0x13;
+  private final static int POP = 0x57;
+  private final static int IADD = 0x60;
+  private final static int IRETURN = 0xAC;
+  private final static int RETURN = 0xB1;
+  private final static int INVOKESPECIAL = 0xB7;
+  private final static int INVOKESTATIC = 0xB8;
+  private final static int INVOKEDYNAMIC = 0xBA;
+
+  private int classes = 10000;
+  private long seed = 0;
+  private int depth = 4;
+  private int methods = 8;
+  private int fanOut = 3;
+  private int hugeMethodPercent = 1;
+  private int lambdas = 2;
+  private int constants = 32;
+  private int packageSize = 1000;
+
+  /**
+   * Set number of classes to generate.
+   *
+   * @param classes   Number of classes
+   * @return          Reference to self
+   */
+  public SyntheticJarGenerator setClasses(final int classes) {
+    this.classes = classes;
+    return this;
+  }
+
+  /**
+   * Set seed of the random generators.
+   *
+   * @param seed  Seed
+   * @return      Reference to self
+   */
+  public SyntheticJarGenerator setSeed(final long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Set depth of class hierarchies. Every chain of that many consecutive classes extends each
+   * other, 1 makes every class extend {@code Object}.
+   *
+   * @param depth   Depth of hierarchy
+   * @return        Reference to self
+   */
+  public SyntheticJarGenerator setDepth(final int depth) {
+    this.depth = depth;
+    return this;
+  }
+
+  /**
+   * Set number of static methods per class.
+   *
+   * @param methods   Number of methods
+   * @return          Reference to self
+   */
+  public SyntheticJarGenerator setMethods(final int methods) {
+    this.methods = methods;
+    return this;
+  }
+
+  /**
+   * Set number of calls in every static method.
+   *
+   * @param fanOut  Calls per method
+   * @return        Reference to self
+   */
+  public SyntheticJarGenerator setFanOut(final int fanOut) {
+    this.fanOut = fanOut;
+    return this;
+  }
+
+  /**
+   * Set percentage of classes with a huge method.
+   *
+   * @param hugeMethodPercent   Percentage, from 0 to 100
+   * @return                    Reference to self
+   */
+  public SyntheticJarGenerator setHugeMethodPercent(final int hugeMethodPercent) {
+    this.hugeMethodPercent = hugeMethodPercent;
+    return this;
+  }
+
+  /**
+   * Set number of lambdas per class.
+   *
+   * @param lambdas   Number of lambdas
+   * @return          Reference to self
+   */
+  public SyntheticJarGenerator setLambdas(final int lambdas) {
+    this.lambdas = lambdas;
+    return this;
+  }
+
+  /**
+   * Set number of string constants per class, each adding two constant pool entries.
+   *
+   * @param constants   Number of constants
+   * @return            Reference to self
+   */
+  public SyntheticJarGenerator setConstants(final int constants) {
+    this.constants = constants;
+    return this;
+  }
+
+  /**
+   * Set number of classes per package.
+   *
+   * @param packageSize   Classes per package
+   * @return              Reference to self
+   */
+  public SyntheticJarGenerator setPackageSize(final int packageSize) {
+    this.packageSize = packageSize;
+    return this;
+  }
+
+  /**
+   * Generate JAR.
+   *
+   * @param output  JAR file to write
+   * @return        Total size of class files in bytes
+   * @throws IOException  JAR couldn't be written
+   */
+  public long generate(final Path output) throws IOException {
+    validate();
+
+    final Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+    long classBytes = 0;
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16);
+         JarOutputStream jar = new JarOutputStream(out)) {
+      jar.putNextEntry(newEntry(JarFile.MANIFEST_NAME));
+      manifest.write(jar);
+      jar.closeEntry();
+
+      for (int i = 0; i < classes; ++i) {
+        final byte[] classFile = generateClass(i);
+        jar.putNextEntry(newEntry(className(i) + ".class"));
+        jar.write(classFile);
+        jar.closeEntry();
+        classBytes += classFile.length;
+      }
+    }
+    return classBytes;
+  }
+
+  /**
+   * Generate class file of a class.
+   *
+   * @param index   Index of class
+   * @return        Bytes of class file
+   */
+  byte[] generateClass(final int index) {
+    final SplittableRandom random = new SplittableRandom(seed ^ index * 0x9E3779B97F4A7C15L);
+    final String className = className(index);
+    final String superClassName = index % depth == 0 ? OBJECT : className(index - 1);
+    final ClassFileWriter writer = new ClassFileWriter(className, superClassName);
+
+    addConstructor(writer, superClassName);
+    for (int j = 0; j < methods; ++j) {
+      addCallingMethod(writer, "m" + j, random);
+    }
+    if (0 < constants) {
+      addConstantsMethod(writer, random);
+    }
+    if (random.nextInt(100) < hugeMethodPercent) {
+      addHugeMethod(writer, random);
+    }
+    if (0 < lambdas) {
+      addLambdasMethod(writer, className, random);
+    }
+    return writer.toByteArray();
+  }
+
+  private void addConstructor(final ClassFileWriter writer, final String superClassName) {
+    final Code code = new Code(5);
+    code.op(ALOAD_0);
+    code.op(INVOKESPECIAL).u2(writer.methodRef(superClassName, "<init>", "()V"));
+    code.op(RETURN);
+    writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1, code.toByteArray());
+  }
+
+  /**
+   * Add static method calling methods of randomly chosen classes, possibly its own class.
+   */
+  private void addCallingMethod(final ClassFileWriter writer, final String name,
+                                final SplittableRandom random) {
+    final Code code = new Code(6 + 3 * fanOut);
+    code.op(ILOAD_0);
+    for (int k = 0; k < fanOut; ++k) {
+      final String target = className(random.nextInt(classes));
+      final String method = "m" + random.nextInt(methods);
+      code.op(INVOKESTATIC).u2(writer.methodRef(target, method, METHOD_DESCRIPTOR));
+    }
+    code.op(SIPUSH).u2(random.nextInt(1 << 16));
+    code.op(IADD);
+    code.op(IRETURN);
+    writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, name, METHOD_DESCRIPTOR,
+                     2, 1, code.toByteArray());
+  }
+
+  private void addConstantsMethod(final ClassFileWriter writer, final SplittableRandom random) {
+    final Code code = new Code(1 + 4 * constants);
+    for (int k = 0; k < constants; ++k) {
+      final String constant = "constant-" + Long.toHexString(random.nextLong());
+      code.op(LDC_W).u2(writer.string(constant));
+      code.op(POP);
+    }
+    code.op(RETURN);
+    writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "constants", "()V",
+                     1, 0, code.toByteArray());
+  }
+
+  private void addHugeMethod(final ClassFileWriter writer, final SplittableRandom random) {
+    final Code code = new Code(2 + 6 * HUGE_METHOD_BLOCKS);
+    for (int k = 0; k < HUGE_METHOD_BLOCKS; ++k) {
+      code.op(ILOAD_0);
+      code.op(SIPUSH).u2(random.nextInt(1 << 16));
+      code.op(IADD);
+      code.op(ISTORE_0);
+    }
+    code.op(ILOAD_0);
+    code.op(IRETURN);
+    writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "huge", METHOD_DESCRIPTOR,
+                     2, 1, code.toByteArray());
+  }
+
+  /**
+   * Add lambda bodies and a method creating an {@code IntUnaryOperator} of each, bootstrapped by
+   * {@code LambdaMetafactory} as compiled by javac.
+   */
+  private void addLambdasMethod(final ClassFileWriter writer, final String className,
+                                final SplittableRandom random) {
+    final int metafactory = writer.methodHandle(ClassFileWriter.REF_INVOKE_STATIC, LAMBDA_METAFACTORY,
+                                                "metafactory", METAFACTORY_DESCRIPTOR);
+    final int methodType = writer.methodType(METHOD_DESCRIPTOR);
+
+    final Code code = new Code(1 + 6 * lambdas);
+    for (int k = 0; k < lambdas; ++k) {
+      final String lambdaName = "lambda$lambdas$" + k;
+      final Code body = new Code(6);
+      body.op(ILOAD_0);
+      body.op(SIPUSH).u2(random.nextInt(1 << 16));
+      body.op(IADD);
+      body.op(IRETURN);
+      writer.addMethod(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_SYNTHETIC,
+                       lambdaName, METHOD_DESCRIPTOR, 2, 1, body.toByteArray());
+
+      final int implementation = writer.methodHandle(ClassFileWriter.REF_INVOKE_STATIC, className,
+                                                     lambdaName, METHOD_DESCRIPTOR);
+      final int bootstrapMethod = writer.bootstrapMethod(metafactory, methodType, implementation, methodType);
+      code.op(INVOKEDYNAMIC).u2(writer.invokeDynamic(bootstrapMethod, "applyAsInt", "()L" + LAMBDA_INTERFACE + ";"))
+          .u2(0);
+      code.op(POP);
+    }
+    code.op(RETURN);
+    writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "lambdas", "()V",
+                     1, 0, code.toByteArray());
+  }
+
+  private String className(final int index) {
+    return PACKAGE + index / packageSize + "/C" + index;
+  }
+
+  private static ZipEntry newEntry(final String name) {
+    final ZipEntry entry = new ZipEntry(name);
+    entry.setTime(ENTRY_TIME);
+    return entry;
+  }
+
+  /**
+   * Check that options generate valid class files.
+   *
+   * @throws IllegalArgumentException   Option is out of range
+   */
+  private void validate() {
+    require(0 < classes, "--classes must be positive");
+    require(0 < depth, "--depth must be positive");
+    require(0 <= methods && methods <= 10000, "--methods must be between 0 and 10000");
+    require(0 <= fanOut && 3 * fanOut + 6 <= MAX_CODE_LENGTH, "--fan-out must be between 0 and 21843");
+    require(fanOut == 0 || 0 < methods, "--fan-out needs at least one method to call");
+    require(0 <= hugeMethodPercent && hugeMethodPercent <= 100, "--huge-methods must be between 0 and 100");
+    require(0 <= lambdas && lambdas <= 5000, "--lambdas must be between 0 and 5000");
+    require(0 <= constants && constants <= 16000, "--constants must be between 0 and 16000");
+    require(0 < packageSize, "--package-size must be positive");
+  }
+
+  private static void require(final boolean condition, final String message) {
+    if (!condition) {
+      throw new IllegalArgumentException(message);
+    }
+  }
+
+  /**
+   * Bytecode of a method under construction.
+   */
+  private final static class Code {
+    private final ByteArrayOutputStream bytes;
+
+    Code(final int size) {
+      bytes = new ByteArrayOutputStream(size);
+    }
+
+    Code op(final int opcode) {
+      bytes.write(opcode);
+      return this;
+    }
+
+    Code u2(final int value) {
+      bytes.write(value >>> 8);
+      bytes.write(value);
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+  }
+
+  public static void main(final String[] args) throws IOException {
+    final SyntheticJarGenerator generator = new SyntheticJarGenerator();
+    Path output = Paths.get("synthetic.jar");
+
+    try {
+      for (int i = 0; i < args.length; i += 2) {
+        require(i + 1 < args.length, "Missing value of " + args[i]);
+        final String value = args[i + 1];
+        switch (args[i]) {
+          case "--classes":       generator.setClasses(Integer.parseInt(value)); break;
+          case "--seed":          generator.setSeed(Long.parseLong(value)); break;
+          case "--depth":         generator.setDepth(Integer.parseInt(value)); break;
+          case "--methods":       generator.setMethods(Integer.parseInt(value)); break;
+          case "--fan-out":       generator.setFanOut(Integer.parseInt(value)); break;
+          case "--huge-methods":  generator.setHugeMethodPercent(Integer.parseInt(value)); break;
+          case "--lambdas":       generator.setLambdas(Integer.parseInt(value)); break;
+          case "--constants":     generator.setConstants(Integer.parseInt(value)); break;
+          case "--package-size":  generator.setPackageSize(Integer.parseInt(value)); break;
+          case "--output":        output = Paths.get(value); break;
+          default:                throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+      generator.validate();
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println("Options: --classes N --seed N --depth N --methods N --fan-out N"
+                         + " --huge-methods PERCENT --lambdas N --constants N --package-size N --output FILE");
+      System.exit(1);
+    }
+
+    final long start = System.nanoTime();
+    final long classBytes = generator.generate(output);
+    System.out.printf("Generated %d classes, %d KB of class files in %s (%d KB) in %.1f s%n",
+                      generator.classes, classBytes >> 10, output, Files.size(output) >> 10,
+                      (System.nanoTime() - start) / 1e9);
+  }
+}
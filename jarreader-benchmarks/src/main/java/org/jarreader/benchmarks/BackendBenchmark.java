@@ -0,0 +1,59 @@
+package org.jarreader.benchmarks;
+
+import org.jarreader.backend.ClassBackend;
+import org.jarreader.visitor.impl.InventoryVisitor;
+import org.jarreader.visitor.impl.MethodCallInfoVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete runs of the visitors supporting backends on the same JAR file with every
+ * {@link ClassBackend}. Method call information needs the code of methods, the inventory only the
+ * class header, so backends able to skip code are measured without it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BackendBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  @Param({"bcel", "asm", "lean"})
+  public String backend;
+
+  private Path jarPath;
+  private ClassBackend classBackend;
+
+  @Setup
+  public void resolveInput() throws IOException {
+    jarPath = Inputs.resolve(input);
+    classBackend = ClassBackend.forName(backend);
+  }
+
+  @Benchmark
+  public String methodCallInfo() {
+    return new MethodCallInfoVisitor(jarPath).setBackend(classBackend).start().jarToString();
+  }
+
+  @Benchmark
+  public String inventory() {
+    return new InventoryVisitor(jarPath).setBackend(classBackend).start().jarToString();
+  }
+}
@@ -0,0 +1,95 @@
+package org.jarreader.benchmarks;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.jarreader.classfile.ClassFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Parsing of class files by BCEL's {@link ClassParser} and by the lean {@link ClassFile} parser,
+ * isolated from reading and inflating. Class files are read into memory once, then every
+ * invocation parses all of them and reads the name and code of every method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassParserBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  private List<byte[]> classFiles;
+
+  @Setup
+  public void readClassFiles() throws IOException {
+    classFiles = new ArrayList<>();
+
+    try (JarFile jar = new JarFile(Inputs.resolve(input).toFile())) {
+      Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+        if (!entry.getName().endsWith(".class") || entry.getName().endsWith("module-info.class")) {
+          continue;
+        }
+
+        byte[] classFile = new byte[(int) entry.getSize()];
+        try (DataInputStream classStream = new DataInputStream(jar.getInputStream(entry))) {
+          classStream.readFully(classFile);
+        }
+        classFiles.add(classFile);
+      }
+    }
+  }
+
+  @Benchmark
+  public void bcel(final Blackhole blackhole) throws IOException {
+    for (byte[] classFile : classFiles) {
+      JavaClass javaClass = new ClassParser(new DataInputStream(new ByteArrayInputStream(classFile)), null).parse();
+      for (Method method : javaClass.getMethods()) {
+        blackhole.consume(method.getName());
+        Code code = method.getCode();
+        blackhole.consume(code != null ? code.getCode().length : 0);
+      }
+    }
+  }
+
+  @Benchmark
+  public void lean(final Blackhole blackhole) throws IOException {
+    for (byte[] classFile : classFiles) {
+      ClassFile parsed = ClassFile.parse(ByteBuffer.wrap(classFile));
+      for (int i = 0; i < parsed.getMethodCount(); ++i) {
+        ClassFile.MethodView method = parsed.getMethod(i);
+        blackhole.consume(method.getName());
+        ByteBuffer code = method.getCode();
+        blackhole.consume(code != null ? code.limit() : 0);
+      }
+    }
+  }
+}
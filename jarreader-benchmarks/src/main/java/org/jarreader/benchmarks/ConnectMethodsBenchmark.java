@@ -0,0 +1,67 @@
+package org.jarreader.benchmarks;
+
+import org.jarreader.archive.ArchiveReader;
+import org.jarreader.archive.InputSource;
+import org.jarreader.visitor.impl.MethodCallInfoVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connecting callers and callees by {@code MethodCallInfoVisitor.connectMethods}, which runs in
+ * {@link MethodCallInfoVisitor#visitEnd()}. Methods are collected before every invocation, since
+ * connecting changes the collected methods. Single invocations are timed, as connecting the
+ * methods of a JAR file takes milliseconds.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectMethodsBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  private Path jarPath;
+  private ArchiveReader archive;
+  private MethodCallInfoVisitor visitor;
+
+  @Setup
+  public void openArchive() throws IOException {
+    jarPath = Inputs.resolve(input);
+    archive = InputSource.jarFile(jarPath).open();
+  }
+
+  @Setup(Level.Invocation)
+  public void collectMethods() {
+    visitor = new MethodCallInfoVisitor(jarPath);
+    visitor.visitArchive(archive);
+  }
+
+  @TearDown
+  public void closeArchive() throws IOException {
+    archive.close();
+  }
+
+  @Benchmark
+  public MethodCallInfoVisitor connectMethods() {
+    visitor.visitEnd();
+    return visitor;
+  }
+}
@@ -0,0 +1,60 @@
+package org.jarreader.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Inputs of the benchmarks, selected by the {@code input} parameter:
+ * <ul>
+ * <li>{@code small} is the {@code TestJar} example JAR with a handful of classes, built in
+ *     {@code example-jars/TestJar}
+ * <li>{@code large} is a synthetic JAR with 20000 classes, generated by the {@code SyntheticJar}
+ *     example into {@code example-jars/SyntheticJar/target}. The generator always writes the same
+ *     bytes for the same options, so results are comparable across machines.
+ * <li>any other value is a path to a JAR file, for example {@code -p input=/path/to/app.jar}
+ * </ul>
+ */
+final class Inputs {
+
+  final static String SMALL = "small";
+  final static String LARGE = "large";
+
+  // Relative to the benchmark module, where benchmarks are run from
+  private final static Path SMALL_JAR = Paths.get("..", "example-jars", "TestJar", "target", "TestJar-1.0.0.jar");
+  private final static Path LARGE_JAR = Paths.get("..", "example-jars", "SyntheticJar", "target", "synthetic-20000.jar");
+
+  private final static String SMALL_HINT = "build the example JARs or pass another JAR as input parameter";
+  private final static String LARGE_HINT = "in example-jars, generate it with java -jar SyntheticJar/target/SyntheticJar-1.0.0.jar"
+                                           + " --classes 20000 --seed 1 --output SyntheticJar/target/synthetic-20000.jar";
+
+  private Inputs() {}
+
+  /**
+   * Resolve input parameter into a JAR file.
+   *
+   * @param input   Value of the input parameter
+   * @return        Path to JAR file
+   * @throws NoSuchFileException  JAR file doesn't exist, for example example JARs weren't built
+   */
+  static Path resolve(final String input) throws NoSuchFileException {
+    final Path jarPath;
+    switch (input) {
+      case SMALL:
+        jarPath = SMALL_JAR;
+        break;
+      case LARGE:
+        jarPath = LARGE_JAR;
+        break;
+      default:
+        jarPath = Paths.get(input);
+    }
+
+    if (!Files.isRegularFile(jarPath)) {
+      throw new NoSuchFileException(jarPath.toAbsolutePath().toString(), null,
+                                    LARGE.equals(input) ? LARGE_HINT : SMALL_HINT);
+    }
+    return jarPath.toAbsolutePath();
+  }
+}
@@ -0,0 +1,94 @@
+package org.jarreader.benchmarks;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.jarreader.visitor.impl.DisassembleVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Disassembly of instruction lists by {@link DisassembleVisitor#visitInstructionList}, isolated
+ * from reading and parsing. Instruction lists of all methods are built once, then every
+ * invocation disassembles all of them into a new visitor.
+ * <p>
+ * The instruction lists and the disassembly of the large input, over 400 million characters, are
+ * held in memory at the same time, so the benchmark runs with a larger heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class InstructionListBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  private Path jarPath;
+  private List<ConstantPool> constantPools;
+  private List<InstructionList> instructionLists;
+
+  @Setup
+  public void buildInstructionLists() throws IOException {
+    jarPath = Inputs.resolve(input);
+    constantPools = new ArrayList<>();
+    instructionLists = new ArrayList<>();
+
+    try (JarFile jar = new JarFile(jarPath.toFile())) {
+      Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+        if (!entry.getName().endsWith(".class")) {
+          continue;
+        }
+
+        JavaClass javaClass;
+        try (InputStream classStream = jar.getInputStream(entry)) {
+          javaClass = new ClassParser(classStream, entry.getName()).parse();
+        }
+        ConstantPoolGen constantPool = new ConstantPoolGen(javaClass.getConstantPool());
+        for (Method method : javaClass.getMethods()) {
+          if (!method.isAbstract() && !method.isNative()) {
+            constantPools.add(javaClass.getConstantPool());
+            instructionLists.add(new MethodGen(method, javaClass.getClassName(), constantPool).getInstructionList());
+          }
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public DisassembleVisitor visitInstructionList() {
+    DisassembleVisitor visitor = new DisassembleVisitor(jarPath);
+    for (int i = 0; i < instructionLists.size(); ++i) {
+      visitor.visitConstantPool(constantPools.get(i));
+      visitor.visitInstructionList(instructionLists.get(i));
+    }
+    return visitor;
+  }
+}
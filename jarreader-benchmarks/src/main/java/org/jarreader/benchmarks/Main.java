@@ -0,0 +1,34 @@
+package org.jarreader.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Entry point of the benchmark JAR. Accepts the JMH command line, for example a regular
+ * expression selecting benchmarks or {@code -p input=/path/to/app.jar}, and always adds the GC
+ * profiler, so allocation rate and allocation per operation are reported next to the timing.
+ */
+public final class Main {
+
+  private Main() {}
+
+  public static void main(final String[] args) throws CommandLineOptionException, IOException, RunnerException {
+    final CommandLineOptions commandLine = new CommandLineOptions(args);
+    final Runner runner = new Runner(new OptionsBuilder().parent(commandLine)
+                                                         .addProfiler(GCProfiler.class)
+                                                         .build());
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+    } else if (commandLine.shouldList()) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package org.jarreader.benchmarks;
+
+import org.jarreader.reflection.CodeInfoWithReflection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code information by {@link CodeInfoWithReflection#readJar(Path)}, which loads every class with
+ * a new class loader, for comparison with the BCEL based {@code CodeInfoVisitor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReflectionBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  private Path jarPath;
+
+  @Setup
+  public void resolveInput() throws IOException {
+    jarPath = Inputs.resolve(input);
+  }
+
+  @Benchmark
+  public String readJar() throws ClassNotFoundException {
+    return CodeInfoWithReflection.readJar(jarPath);
+  }
+}
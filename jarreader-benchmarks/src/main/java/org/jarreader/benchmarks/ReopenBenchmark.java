@@ -0,0 +1,86 @@
+package org.jarreader.benchmarks;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+/**
+ * Parsing every class of a JAR file with BCEL, sequentially, in the two ways the prototype has
+ * read classes. The original traversal passed the JAR file path to
+ * {@code new ClassParser(jarPath, entryName)}, which opens the archive and reads its central
+ * directory again for every class. Traversal now parses all classes from the entry streams of a
+ * single open {@link JarFile}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReopenBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  private Path jarPath;
+  private List<String> classNames;
+
+  @Setup
+  public void listClasses() throws IOException {
+    jarPath = Inputs.resolve(input);
+
+    try (JarFile jar = new JarFile(jarPath.toFile())) {
+      classNames = jar.stream()
+                      .map(JarEntry::getName)
+                      .filter(name -> name.endsWith(".class") && !name.endsWith("module-info.class"))
+                      .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Original traversal, reopening the JAR file for every class.
+   */
+  @Benchmark
+  public void reopenPerClass(final Blackhole blackhole) throws IOException {
+    final String jarFileName = jarPath.toString();
+    for (String className : classNames) {
+      JavaClass javaClass = new ClassParser(jarFileName, className).parse();
+      blackhole.consume(javaClass);
+    }
+  }
+
+  /**
+   * Current traversal, parsing all classes from one open JAR file.
+   */
+  @Benchmark
+  public void singleJarFile(final Blackhole blackhole) throws IOException {
+    try (JarFile jar = new JarFile(jarPath.toFile())) {
+      for (String className : classNames) {
+        try (InputStream classStream = jar.getInputStream(jar.getJarEntry(className))) {
+          JavaClass javaClass = new ClassParser(classStream, className).parse();
+          blackhole.consume(javaClass);
+        }
+      }
+    }
+  }
+}
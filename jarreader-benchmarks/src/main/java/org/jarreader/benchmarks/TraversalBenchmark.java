@@ -0,0 +1,98 @@
+package org.jarreader.benchmarks;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.jarreader.visitor.JarVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traversal of a JAR file by {@link JarVisitor} with a visitor doing nothing, which measures
+ * opening the archive, reading, inflating and parsing classes without the cost of any output.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TraversalBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  @Param({"1", "4"})
+  public int parallelism;
+
+  @Param({"false", "true"})
+  public boolean memoryMapped;
+
+  private Path jarPath;
+
+  @Setup
+  public void resolveInput() throws IOException {
+    jarPath = Inputs.resolve(input);
+  }
+
+  @Benchmark
+  public int traverse() {
+    return ((ClassCounter) new ClassCounter(jarPath).setParallelism(parallelism)
+                                                     .setMemoryMapped(memoryMapped)
+                                                     .start()).classCount;
+  }
+
+  /**
+   * Visitor only counting classes, so parsed classes can't be optimized away.
+   */
+  private final static class ClassCounter extends JarVisitor {
+    private int classCount;
+
+    ClassCounter(final Path jarPath) {
+      super(jarPath);
+    }
+
+    @Override
+    public void visitJavaClass(final JavaClass javaClass) {
+      ++classCount;
+    }
+
+    @Override
+    protected JarVisitor fork() {
+      return new ClassCounter(getJarPath());
+    }
+
+    @Override
+    protected void merge(final JarVisitor partial) {
+      classCount += ((ClassCounter) partial).classCount;
+    }
+
+    @Override
+    protected void writeState(final DataOutput out) throws IOException {
+      out.writeInt(classCount);
+    }
+
+    @Override
+    protected void readState(final DataInput in) throws IOException {
+      classCount = in.readInt();
+    }
+
+    @Override
+    public String jarToString() {
+      return classCount + " classes";
+    }
+  }
+}
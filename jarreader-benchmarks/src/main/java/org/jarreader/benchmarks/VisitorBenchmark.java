@@ -0,0 +1,58 @@
+package org.jarreader.benchmarks;
+
+import org.jarreader.visitor.impl.CodeInfoVisitor;
+import org.jarreader.visitor.impl.DisassembleVisitor;
+import org.jarreader.visitor.impl.MethodCallInfoVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete runs of the visitors on a JAR file, from opening it to the textual output, as the
+ * widget runs them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VisitorBenchmark {
+
+  @Param({Inputs.SMALL, Inputs.LARGE})
+  public String input;
+
+  private Path jarPath;
+
+  @Setup
+  public void resolveInput() throws IOException {
+    jarPath = Inputs.resolve(input);
+  }
+
+  @Benchmark
+  public String codeInfo() {
+    return new CodeInfoVisitor(jarPath).start().jarToString();
+  }
+
+  @Benchmark
+  public String disassemble() {
+    return new DisassembleVisitor(jarPath).start().jarToString();
+  }
+
+  @Benchmark
+  public String methodCallInfo() {
+    return new MethodCallInfoVisitor(jarPath).start().jarToString();
+  }
+}
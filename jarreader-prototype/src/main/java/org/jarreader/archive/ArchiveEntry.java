@@ -0,0 +1,74 @@
+package org.jarreader.archive;
+
+/**
+ * Entry of an archive as described by its central directory. Entries are read through the
+ * {@link ArchiveReader} which listed them.
+ */
+public final class ArchiveEntry {
+
+  /** Compression method of entries stored without compression. */
+  public final static int STORED = 0;
+
+  /** Compression method of entries compressed with deflate. */
+  public final static int DEFLATED = 8;
+
+  private final String name;
+  private final int method;
+  private final long crc;
+  private final long compressedSize;
+  private final long size;
+  private final long localHeaderOffset;
+
+  /**
+   * Constructor for archive entry.
+   *
+   * @param name                Entry name, directories end with '/'
+   * @param method              Compression method
+   * @param crc                 CRC-32 of uncompressed data
+   * @param compressedSize      Size of compressed data in bytes
+   * @param size                Size of uncompressed data in bytes
+   * @param localHeaderOffset   Offset of local file header in archive, or -1 if unknown
+   */
+  public ArchiveEntry(final String name, final int method, final long crc,
+                      final long compressedSize, final long size, final long localHeaderOffset) {
+    this.name = name;
+    this.method = method;
+    this.crc = crc;
+    this.compressedSize = compressedSize;
+    this.size = size;
+    this.localHeaderOffset = localHeaderOffset;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getMethod() {
+    return method;
+  }
+
+  public long getCrc() {
+    return crc;
+  }
+
+  public long getCompressedSize() {
+    return compressedSize;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public long getLocalHeaderOffset() {
+    return localHeaderOffset;
+  }
+
+  public boolean isDirectory() {
+    return name.endsWith("/");
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
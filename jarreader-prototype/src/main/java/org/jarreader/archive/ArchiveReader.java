@@ -0,0 +1,121 @@
+package org.jarreader.archive;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Read access to entries of an opened archive. Implementations must allow reading different
+ * entries concurrently from multiple threads.
+ */
+public interface ArchiveReader extends Closeable {
+
+  /**
+   * Get entries of archive in central directory order.
+   *
+   * @return    List of archive entries
+   */
+  List<ArchiveEntry> getEntries();
+
+  /**
+   * Open uncompressed content of an entry.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  InputStream getInputStream(final ArchiveEntry entry) throws IOException;
+
+  /**
+   * Open uncompressed content of an entry, decompressing only as much data as is read. Readers
+   * of the beginning of an entry, such as a class file header, use this instead of
+   * {@link #getInputStream(ArchiveEntry)}, which decompresses the whole entry up front.
+   * <p>
+   * The default implementation opens the entry with {@link #getInputStream(ArchiveEntry)}.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  default InputStream getLazyInputStream(final ArchiveEntry entry) throws IOException {
+    return getInputStream(entry);
+  }
+
+  /**
+   * Read data of an entry as stored in the archive. Together with
+   * {@link #decompress(ArchiveEntry, ByteBuffer)} this splits reading an entry into an I/O bound
+   * and a CPU bound step, which can run on different threads.
+   * <p>
+   * The default implementation reads the uncompressed content.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stored entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  default ByteBuffer readStored(final ArchiveEntry entry) throws IOException {
+    return readEntry(entry);
+  }
+
+  /**
+   * Read uncompressed content of an entry into a buffer, for parsers working on the whole entry
+   * instead of a stream. Readers holding the content in memory return a view of it.
+   * <p>
+   * The default implementation reads the stream of {@link #getInputStream(ArchiveEntry)} into a
+   * new buffer.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  default ByteBuffer readEntry(final ArchiveEntry entry) throws IOException {
+    if (entry.getSize() < 0 || Integer.MAX_VALUE < entry.getSize()) {
+      throw new IOException("Invalid size " + entry.getSize() + " of " + entry);
+    }
+
+    final byte[] data = new byte[(int) entry.getSize()];
+    try (final InputStream in = getInputStream(entry)) {
+      int length = 0;
+      while (length < data.length) {
+        int read = in.read(data, length, data.length - length);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of " + entry);
+        }
+        length += read;
+      }
+    }
+
+    return ByteBuffer.wrap(data);
+  }
+
+  /**
+   * Decompress entry data returned by {@link #readStored(ArchiveEntry)}.
+   * <p>
+   * The default implementation streams the data as it is.
+   *
+   * @param entry   Entry listed by this reader
+   * @param stored  Stored entry data
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be decompressed
+   */
+  default InputStream decompress(final ArchiveEntry entry, final ByteBuffer stored) throws IOException {
+    return new DataInputStream(new ByteBufferInputStream(stored));
+  }
+
+  /**
+   * Open an archive nested in an entry of this archive. The nested archive is read in memory,
+   * it is never extracted to a temporary file.
+   * <p>
+   * The default implementation reads the uncompressed entry into a buffer.
+   *
+   * @param entry   Entry holding an archive
+   * @return        Reader over the nested archive
+   * @throws IOException  Nested archive couldn't be read
+   */
+  default ArchiveReader openNested(final ArchiveEntry entry) throws IOException {
+    return new MappedArchiveReader(new BufferSource(readStored(entry)));
+  }
+}
@@ -0,0 +1,42 @@
+package org.jarreader.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Byte source over an archive already in memory, such as a nested archive read from its
+ * enclosing archive.
+ */
+public final class BufferSource implements ByteSource {
+
+  private final ByteBuffer buffer;
+
+  /**
+   * Constructor for buffer source.
+   *
+   * @param buffer  Bytes of archive from position to limit
+   */
+  public BufferSource(final ByteBuffer buffer) {
+    this.buffer = buffer.slice();
+  }
+
+  @Override
+  public long size() {
+    return buffer.capacity();
+  }
+
+  @Override
+  public ByteBuffer slice(final long offset, final int length) throws IOException {
+    if (offset < 0 || length < 0 || buffer.capacity() < offset + length) {
+      throw new EOFException("Range " + offset + "+" + length + " is outside of " + buffer.capacity() + " bytes");
+    }
+
+    ByteBuffer view = buffer.duplicate();
+    view.position((int) offset).limit((int) offset + length);
+    return view.slice();
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,28 @@
+package org.jarreader.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the bytes of an archive.
+ */
+public interface ByteSource extends Closeable {
+
+  /**
+   * Get number of bytes in source.
+   *
+   * @return    Size in bytes
+   */
+  long size();
+
+  /**
+   * Get a read-only view of a byte range. The view shares memory with the source when possible.
+   *
+   * @param offset    Offset of first byte
+   * @param length    Number of bytes
+   * @return          Buffer positioned at 0 with the requested length as limit
+   * @throws IOException  Range couldn't be read
+   */
+  ByteBuffer slice(final long offset, final int length) throws IOException;
+}
@@ -0,0 +1,165 @@
+package org.jarreader.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Utility class to resolve a classpath into the list of archives it consists of.
+ * <p>
+ * A classpath consists of elements separated by the platform path separator. Every element can be
+ * <ul>
+ * <li>a JAR, WAR, EAR or jmod file
+ * <li>a directory, standing for all archives directly inside it, such as a {@code lib} directory.
+ *     A trailing {@code *} wildcard is accepted, as with the {@code java} launcher. A directory
+ *     without archives stands for itself as an exploded directory of classes, such as
+ *     {@code target/classes}
+ * <li>a directory followed by {@code **}, standing for all archives in the directory and its
+ *     subdirectories, such as a local Maven repository
+ * <li>a classpath file, with elements separated by the path separator or line breaks. Relative
+ *     paths inside are resolved against the directory of the file
+ * <li>{@code jrt:/}, standing for the modules of the running JDK, see {@link RuntimeImage}
+ * </ul>
+ */
+public final class Classpath {
+
+  // Path separator or line break, except the colon of a jrt:/ element on platforms separating by colon
+  private final static Pattern ELEMENT_SEPARATOR =
+      Pattern.compile("(?<!(?:^|[\\s" + File.pathSeparator + "])jrt)"
+                      + Pattern.quote(File.pathSeparator) + "|\\R");
+
+  private Classpath() {}
+
+  /**
+   * Resolve classpath into archives. Archives are returned in classpath order, without duplicates.
+   *
+   * @param classpath   Classpath string
+   * @return            Absolute paths to archives
+   * @throws IOException  Classpath element doesn't exist or couldn't be read
+   */
+  public static List<Path> resolve(final String classpath) throws IOException {
+    final Set<Path> archives = new LinkedHashSet<>();
+    resolveElements(classpath, Paths.get(""), archives, new LinkedHashSet<>());
+
+    return new ArrayList<>(archives);
+  }
+
+  /**
+   * Check whether a file name denotes an archive.
+   *
+   * @param fileName  Name of file
+   * @return          True for JAR, WAR and EAR files
+   */
+  public static boolean isArchive(final String fileName) {
+    final String name = fileName.toLowerCase();
+    return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear");
+  }
+
+  /**
+   * Resolve elements of a classpath string.
+   *
+   * @param classpath     Classpath string
+   * @param base          Directory to resolve relative elements against
+   * @param archives      Collected archives
+   * @param visitedFiles  Classpath files already read, to stop at cyclic references
+   * @throws IOException  Classpath element doesn't exist or couldn't be read
+   */
+  private static void resolveElements(final String classpath, final Path base, final Set<Path> archives,
+                                      final Set<Path> visitedFiles) throws IOException {
+    for (String element : ELEMENT_SEPARATOR.split(classpath)) {
+      element = element.trim();
+      if (element.isEmpty()) {
+        continue;
+      }
+
+      if (RuntimeImage.isRuntimeImage(element)) {
+        archives.addAll(RuntimeImage.resolveModules(element));
+        continue;
+      }
+
+      if (element.endsWith("**")) {
+        addArchivesInTree(base.resolve(element.substring(0, element.length() - 2)), archives);
+        continue;
+      }
+      if (element.endsWith("*")) {
+        addArchivesInDirectory(base.resolve(element.substring(0, element.length() - 1)), archives);
+        continue;
+      }
+
+      final Path path = base.resolve(element).toAbsolutePath().normalize();
+      if (Files.isDirectory(path)) {
+        if (!addArchivesInDirectory(path, archives)) {
+          archives.add(path);
+        }
+      } else if (!Files.exists(path)) {
+        throw new NoSuchFileException(path.toString());
+      } else if (isInput(path.getFileName().toString())) {
+        archives.add(path);
+      } else if (visitedFiles.add(path)) {
+        String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        resolveElements(content, path.getParent(), archives, visitedFiles);
+      }
+    }
+  }
+
+  /**
+   * Check whether a file name denotes an archive or a jmod file.
+   *
+   * @param fileName  Name of file
+   * @return          True for files of classes
+   */
+  private static boolean isInput(final String fileName) {
+    return isArchive(fileName) || JmodReader.isJmod(fileName);
+  }
+
+  /**
+   * Add archives directly inside a directory in name order.
+   *
+   * @param directory   Directory to list
+   * @param archives    Collected archives
+   * @return            True if directory contains archives
+   * @throws IOException  Directory couldn't be listed
+   */
+  private static boolean addArchivesInDirectory(final Path directory, final Set<Path> archives)
+      throws IOException {
+    final List<Path> found = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        if (Files.isRegularFile(path) && isInput(path.getFileName().toString())) {
+          found.add(path.toAbsolutePath().normalize());
+        }
+      }
+    }
+
+    found.sort(null);
+    archives.addAll(found);
+    return !found.isEmpty();
+  }
+
+  /**
+   * Add archives in a directory and all of its subdirectories in path order.
+   *
+   * @param directory   Root directory of the tree
+   * @param archives    Collected archives
+   * @throws IOException  Directory tree couldn't be walked
+   */
+  private static void addArchivesInTree(final Path directory, final Set<Path> archives) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.filter(path -> Files.isRegularFile(path) && isInput(path.getFileName().toString()))
+           .map(path -> path.toAbsolutePath().normalize())
+           .sorted()
+           .forEachOrdered(archives::add);
+    }
+  }
+}
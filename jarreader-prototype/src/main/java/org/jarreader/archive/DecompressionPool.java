@@ -0,0 +1,317 @@
+package org.jarreader.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Per-thread recycling of decompression state. Every thread keeps one {@link Inflater} and free
+ * byte arrays grouped in power of two size classes, so reading a class entry doesn't allocate
+ * a new inflater or a growing output array.
+ * <p>
+ * Entry data is read into a buffer pre-sized from the uncompressed size recorded in the central
+ * directory. The returned stream gives the buffer back to the pool it was taken from when it is
+ * closed, even if it is closed by another thread. Alternatively entries can be inflated lazily
+ * while they are read, for readers of only the beginning of an entry.
+ */
+public final class DecompressionPool {
+
+  // Size classes of pooled arrays, from 4 KB up to 16 MB. Larger arrays are not retained.
+  private final static int MIN_SIZE_CLASS = 12;
+  private final static int MAX_SIZE_CLASS = 24;
+  private final static int BUFFERS_PER_SIZE_CLASS = 4;
+
+  private final static ThreadLocal<DecompressionPool> THREAD_POOL =
+      ThreadLocal.withInitial(DecompressionPool::new);
+
+  // Virtual threads are too many and too short-lived to keep an inflater each, they share one pool
+  private final static DecompressionPool VIRTUAL_THREAD_POOL = new DecompressionPool();
+
+  private final Inflater inflater;
+  private final AtomicBoolean inflaterInUse;
+  private final ArrayDeque<byte[]>[] freeBuffers;
+
+  @SuppressWarnings("unchecked")
+  private DecompressionPool() {
+    inflater = new Inflater(true);
+    inflaterInUse = new AtomicBoolean();
+    freeBuffers = new ArrayDeque[MAX_SIZE_CLASS + 1];
+    for (int sizeClass = MIN_SIZE_CLASS; sizeClass <= MAX_SIZE_CLASS; ++sizeClass) {
+      freeBuffers[sizeClass] = new ArrayDeque<>(BUFFERS_PER_SIZE_CLASS);
+    }
+  }
+
+  /**
+   * Inflate raw deflate data into a pooled buffer.
+   *
+   * @param compressed  Compressed entry data
+   * @param size        Uncompressed size from central directory
+   * @return            Stream of uncompressed data, releasing its buffer on close
+   * @throws IOException  Data is corrupt
+   */
+  public static InputStream inflate(final ByteBuffer compressed, final int size) throws IOException {
+    final DecompressionPool pool = currentPool();
+    final byte[] output = pool.take(size);
+    try {
+      inflate(compressed, output, size);
+    } catch (IOException e) {
+      pool.give(output);
+      throw e;
+    }
+
+    return new PooledInputStream(pool, output, size);
+  }
+
+  /**
+   * Inflate raw deflate data into a given array with the pooled inflater of the current thread.
+   *
+   * @param compressed  Compressed entry data
+   * @param output      Array of at least the uncompressed size
+   * @param size        Uncompressed size from central directory
+   * @throws IOException  Data is corrupt
+   */
+  public static void inflate(final ByteBuffer compressed, final byte[] output, final int size)
+      throws IOException {
+    final DecompressionPool pool = currentPool();
+    final Inflater inflater = pool.borrowInflater();
+    setInput(inflater, compressed);
+
+    try {
+      int length = 0;
+      while (length < size) {
+        int inflated = inflater.inflate(output, length, size - length);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          throw new ZipException("Unexpected end of deflated data");
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException("Invalid deflated data: " + e.getMessage());
+    } finally {
+      pool.returnInflater(inflater);
+    }
+  }
+
+  /**
+   * Open stream inflating raw deflate data on demand with the pooled inflater of the current
+   * thread. Only as much data is inflated as is read before the stream is closed.
+   *
+   * @param compressed  Compressed entry data
+   * @return            Stream of uncompressed data, releasing the inflater on close
+   */
+  public static InputStream inflateLazily(final ByteBuffer compressed) {
+    final DecompressionPool pool = currentPool();
+    final Inflater inflater = pool.borrowInflater();
+    setInput(inflater, compressed);
+
+    return new LazyInflaterStream(pool, inflater);
+  }
+
+  /**
+   * Read an entry stream completely into a pooled buffer.
+   *
+   * @param in      Stream of uncompressed entry data, closed after reading
+   * @param size    Uncompressed size from central directory
+   * @return        Stream of the read data, releasing its buffer on close
+   * @throws IOException  Stream couldn't be read or is shorter than size
+   */
+  public static InputStream readFully(final InputStream in, final int size) throws IOException {
+    final DecompressionPool pool = currentPool();
+    final byte[] output = pool.take(size);
+    try (final InputStream source = in) {
+      int length = 0;
+      while (length < size) {
+        int read = source.read(output, length, size - length);
+        if (read < 0) {
+          throw new EOFException("Entry is shorter than its size of " + size + " bytes");
+        }
+        length += read;
+      }
+    } catch (IOException e) {
+      pool.give(output);
+      throw e;
+    }
+
+    return new PooledInputStream(pool, output, size);
+  }
+
+  /**
+   * Borrow the inflater of this pool. If it is already in use, for example by an open lazy
+   * stream, a new inflater is created.
+   *
+   * @return    Inflater to give back with {@link #returnInflater(Inflater)}
+   */
+  private Inflater borrowInflater() {
+    return inflaterInUse.compareAndSet(false, true) ? inflater : new Inflater(true);
+  }
+
+  /**
+   * Give a borrowed inflater back. Inflaters can be given back by any thread.
+   *
+   * @param borrowed  Inflater from {@link #borrowInflater()}
+   */
+  private void returnInflater(final Inflater borrowed) {
+    if (borrowed == inflater) {
+      inflater.reset();
+      inflaterInUse.set(false);
+    } else {
+      borrowed.end();
+    }
+  }
+
+  /**
+   * Set compressed data as input of an inflater. Data of mapped archives is inflated straight
+   * from the mapped region without copying it to the heap.
+   *
+   * @param borrowed    Borrowed inflater
+   * @param compressed  Compressed entry data, whose position is left unchanged
+   */
+  private static void setInput(final Inflater borrowed, final ByteBuffer compressed) {
+    // The inflater advances the position of its input while inflating
+    borrowed.setInput(compressed.duplicate());
+  }
+
+  /**
+   * Get pool of the current thread.
+   *
+   * @return    Pool of platform thread, or the pool shared by all virtual threads
+   */
+  private static DecompressionPool currentPool() {
+    return Thread.currentThread().isVirtual() ? VIRTUAL_THREAD_POOL : THREAD_POOL.get();
+  }
+
+  /**
+   * Take an array of at least the given size from this pool.
+   *
+   * @param size    Minimum length of array
+   * @return        Pooled or newly allocated array
+   */
+  private byte[] take(final int size) {
+    final int sizeClass = sizeClass(size);
+    if (MAX_SIZE_CLASS < sizeClass) {
+      return new byte[size];
+    }
+
+    final ArrayDeque<byte[]> free = freeBuffers[sizeClass];
+    final byte[] buffer;
+    synchronized (free) {
+      buffer = free.pollFirst();
+    }
+    return buffer != null ? buffer : new byte[1 << sizeClass];
+  }
+
+  /**
+   * Give an array back to this pool. Arrays can be given back by any thread.
+   *
+   * @param buffer  Array taken by {@link #take(int)}
+   */
+  private void give(final byte[] buffer) {
+    final int sizeClass = sizeClass(buffer.length);
+    if (MAX_SIZE_CLASS < sizeClass || buffer.length != 1 << sizeClass) {
+      return;
+    }
+
+    final ArrayDeque<byte[]> free = freeBuffers[sizeClass];
+    synchronized (free) {
+      if (free.size() < BUFFERS_PER_SIZE_CLASS) {
+        free.addFirst(buffer);
+      }
+    }
+  }
+
+  /**
+   * Get size class of an array size, which is the exponent of the next power of two.
+   *
+   * @param size    Array size
+   * @return        Size class
+   */
+  private static int sizeClass(final int size) {
+    return Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+  }
+
+  /**
+   * Stream inflating its compressed input as it is read.
+   */
+  private final static class LazyInflaterStream extends InputStream {
+
+    private final DecompressionPool pool;
+    private Inflater inflater;
+
+    LazyInflaterStream(final DecompressionPool pool, final Inflater inflater) {
+      this.pool = pool;
+      this.inflater = inflater;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      if (inflater == null) {
+        throw new IOException("Stream closed");
+      }
+      if (length == 0) {
+        return 0;
+      }
+
+      try {
+        int inflated;
+        while ((inflated = inflater.inflate(buffer, offset, length)) == 0) {
+          if (inflater.finished() || inflater.needsDictionary()) {
+            return -1;
+          }
+          if (inflater.needsInput()) {
+            throw new ZipException("Unexpected end of deflated data");
+          }
+        }
+        return inflated;
+      } catch (DataFormatException e) {
+        throw new ZipException("Invalid deflated data: " + e.getMessage());
+      }
+    }
+
+    @Override
+    public void close() {
+      if (inflater != null) {
+        pool.returnInflater(inflater);
+        inflater = null;
+      }
+    }
+  }
+
+  /**
+   * Stream over a pooled buffer. It's a {@link DataInputStream}, so BCEL's class parser reads
+   * it without wrapping it into another buffered stream.
+   */
+  private final static class PooledInputStream extends DataInputStream {
+
+    private final DecompressionPool pool;
+    private byte[] buffer;
+
+    PooledInputStream(final DecompressionPool pool, final byte[] buffer, final int length) {
+      super(new ByteArrayInputStream(buffer, 0, length));
+      this.pool = pool;
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (buffer != null) {
+        pool.give(buffer);
+        buffer = null;
+      }
+      super.close();
+    }
+  }
+}
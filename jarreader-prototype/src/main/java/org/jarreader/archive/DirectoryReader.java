@@ -0,0 +1,169 @@
+package org.jarreader.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Archive reader over an exploded directory of classes, such as {@code target/classes} of a build
+ * or an extracted WAR. Entries are the files below the directory, named by their relative path
+ * with '/' separators like entries of a JAR file, and listed in name order.
+ * <p>
+ * The directory tree is walked in parallel, every subdirectory being a task of the common
+ * fork/join pool, so listing large trees doesn't wait for file system metadata one directory at a
+ * time. Files are read with a single read into a buffer of their size, without any decompression.
+ * Symbolic links are not followed.
+ * <p>
+ * Directories of any file system can be read, such as the modules of the runtime image in the
+ * {@code jrt:/} file system resolved by {@link RuntimeImage}.
+ * <p>
+ * The CRC-32 of files isn't known without reading them, so an
+ * {@link org.jarreader.visitor.IncrementalAnalysis} visits all classes of a directory.
+ */
+public final class DirectoryReader implements ArchiveReader {
+
+  private final Path root;
+  private final List<ArchiveEntry> entries;
+
+  private DirectoryReader(final Path root, final List<ArchiveEntry> entries) {
+    this.root = root;
+    this.entries = entries;
+  }
+
+  /**
+   * List files of a directory tree.
+   *
+   * @param directory   Root directory of classes
+   * @return            Reader over the files of the directory tree
+   * @throws IOException  Directory doesn't exist or couldn't be listed
+   */
+  public static DirectoryReader open(final Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      throw new NotDirectoryException(directory.toString());
+    }
+
+    final Path root = directory.toAbsolutePath().normalize();
+    final List<ArchiveEntry> entries;
+    try {
+      entries = new ListTask(root, "").invoke();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    entries.sort(Comparator.comparing(ArchiveEntry::getName));
+
+    return new DirectoryReader(root, Collections.unmodifiableList(entries));
+  }
+
+  @Override
+  public List<ArchiveEntry> getEntries() {
+    return entries;
+  }
+
+  @Override
+  public InputStream getInputStream(final ArchiveEntry entry) throws IOException {
+    return decompress(entry, readStored(entry));
+  }
+
+  /**
+   * Open file of an entry, reading only as much as is read from the stream.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of file content
+   * @throws IOException  File couldn't be opened
+   */
+  @Override
+  public InputStream getLazyInputStream(final ArchiveEntry entry) throws IOException {
+    return Files.newInputStream(root.resolve(entry.getName()));
+  }
+
+  /**
+   * Read file of an entry completely. The file is read with its current size, which can differ
+   * from the size listed if the file changed since.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        File content
+   * @throws IOException  File couldn't be read
+   */
+  @Override
+  public ByteBuffer readStored(final ArchiveEntry entry) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(root.resolve(entry.getName()))) {
+      final long size = channel.size();
+      if (Integer.MAX_VALUE < size) {
+        throw new IOException("Invalid size " + size + " of " + entry);
+      }
+
+      final ByteBuffer data = ByteBuffer.allocate((int) size);
+      while (data.hasRemaining()) {
+        if (channel.read(data) < 0) {
+          throw new EOFException("Unexpected end of " + entry);
+        }
+      }
+      data.flip();
+      return data;
+    }
+  }
+
+  @Override
+  public ByteBuffer readEntry(final ArchiveEntry entry) throws IOException {
+    return readStored(entry);
+  }
+
+  @Override
+  public void close() {}
+
+  /**
+   * Task listing the files of a directory, with a subtask for every subdirectory.
+   */
+  private final static class ListTask extends RecursiveTask<List<ArchiveEntry>> {
+    private final Path directory;
+    private final String prefix;
+
+    ListTask(final Path directory, final String prefix) {
+      this.directory = directory;
+      this.prefix = prefix;
+    }
+
+    @Override
+    protected List<ArchiveEntry> compute() {
+      final List<ArchiveEntry> found = new ArrayList<>();
+      final List<ListTask> subdirectories = new ArrayList<>();
+
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        for (Path path : stream) {
+          BasicFileAttributes attributes =
+              Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+          String name = prefix + path.getFileName();
+
+          if (attributes.isDirectory()) {
+            ListTask subdirectory = new ListTask(path, name + '/');
+            subdirectory.fork();
+            subdirectories.add(subdirectory);
+          } else if (attributes.isRegularFile()) {
+            found.add(new ArchiveEntry(name, ArchiveEntry.STORED, -1, attributes.size(), attributes.size(), -1));
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      for (ListTask subdirectory : subdirectories) {
+        found.addAll(subdirectory.join());
+      }
+      return found;
+    }
+  }
+}
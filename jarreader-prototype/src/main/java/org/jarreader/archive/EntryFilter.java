@@ -0,0 +1,230 @@
+package org.jarreader.archive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Filter of class entries by package, class name and size, evaluated on central directory
+ * information only. Rejected entries are never read, inflated or parsed.
+ * <p>
+ * Packages are matched by globs, in which {@code *} stands for any part of one package name and
+ * {@code **} for any number of package names. For example {@code com.acme.billing.**} matches
+ * package {@code com.acme.billing} and all of its subpackages, and {@code com.*.internal} matches
+ * {@code com.acme.internal}. Class names are matched by regular expressions against the fully
+ * qualified name. Sizes are the uncompressed sizes of entries.
+ * <p>
+ * An entry is accepted if it matches any include, or there are no includes, and it matches no
+ * exclude. Class names are derived from entry names without prefixes of nested archives,
+ * multi-release versions and the {@code WEB-INF/classes/} and {@code BOOT-INF/classes/}
+ * directories, so filters apply to classes of WARs and fat JARs too.
+ */
+public final class EntryFilter {
+
+  private final static String CLASS_EXTENSION = ".class";
+  private final static String NESTED_SEPARATOR = "!/";
+  private final static String VERSIONS_DIRECTORY = "META-INF/versions/";
+  private final static String[] CLASS_DIRECTORIES = {"WEB-INF/classes/", "BOOT-INF/classes/"};
+
+  private final List<Pattern> includedPackages;
+  private final List<Pattern> excludedPackages;
+  private final List<Pattern> includedClasses;
+  private final List<Pattern> excludedClasses;
+  private final List<String> description;
+  private long minSize;
+  private long maxSize;
+
+  /**
+   * Constructor for filter accepting all entries.
+   */
+  public EntryFilter() {
+    includedPackages = new ArrayList<>();
+    excludedPackages = new ArrayList<>();
+    includedClasses = new ArrayList<>();
+    excludedClasses = new ArrayList<>();
+    description = new ArrayList<>();
+    minSize = 0;
+    maxSize = Long.MAX_VALUE;
+  }
+
+  /**
+   * Include classes of packages matching a glob.
+   *
+   * @param glob  Package glob, for example {@code com.acme.billing.**}
+   * @return      Reference to self
+   */
+  public EntryFilter includePackages(final String glob) {
+    includedPackages.add(globToPattern(glob));
+    description.add("+package " + glob);
+
+    return this;
+  }
+
+  /**
+   * Exclude classes of packages matching a glob.
+   *
+   * @param glob  Package glob, for example {@code com.acme.billing.internal.**}
+   * @return      Reference to self
+   */
+  public EntryFilter excludePackages(final String glob) {
+    excludedPackages.add(globToPattern(glob));
+    description.add("-package " + glob);
+
+    return this;
+  }
+
+  /**
+   * Include classes with fully qualified name matching a regular expression.
+   *
+   * @param regex   Regular expression, for example {@code .*Service}
+   * @return        Reference to self
+   */
+  public EntryFilter includeClasses(final String regex) {
+    includedClasses.add(Pattern.compile(regex));
+    description.add("+class " + regex);
+
+    return this;
+  }
+
+  /**
+   * Exclude classes with fully qualified name matching a regular expression.
+   *
+   * @param regex   Regular expression, for example {@code .*\$\d+} for anonymous classes
+   * @return        Reference to self
+   */
+  public EntryFilter excludeClasses(final String regex) {
+    excludedClasses.add(Pattern.compile(regex));
+    description.add("-class " + regex);
+
+    return this;
+  }
+
+  /**
+   * Set size limits of class entries.
+   *
+   * @param min   Minimum uncompressed size in bytes
+   * @param max   Maximum uncompressed size in bytes
+   * @return      Reference to self
+   */
+  public EntryFilter setSizeLimits(final long min, final long max) {
+    if (min < 0 || max < min) {
+      throw new IllegalArgumentException("Invalid size limits " + min + " to " + max);
+    }
+    minSize = min;
+    maxSize = max;
+
+    return this;
+  }
+
+  /**
+   * Check whether an entry passes the filter.
+   *
+   * @param entry   Class entry
+   * @return        True if entry is accepted
+   */
+  public boolean accept(final ArchiveEntry entry) {
+    return accept(entry.getName(), entry.getSize());
+  }
+
+  /**
+   * Check whether an entry passes the filter.
+   *
+   * @param entryName   Name of class entry
+   * @param size        Uncompressed size of entry, or -1 if unknown
+   * @return            True if entry is accepted
+   */
+  public boolean accept(final String entryName, final long size) {
+    if (0 <= size && (size < minSize || maxSize < size)) {
+      return false;
+    }
+    if (includedPackages.isEmpty() && excludedPackages.isEmpty()
+        && includedClasses.isEmpty() && excludedClasses.isEmpty()) {
+      return true;
+    }
+
+    final String className = toClassName(entryName);
+    final int packageEnd = className.lastIndexOf('.');
+    final String packageName = packageEnd < 0 ? "" : className.substring(0, packageEnd);
+
+    final boolean included = (includedPackages.isEmpty() && includedClasses.isEmpty())
+        || matchesAny(includedPackages, packageName) || matchesAny(includedClasses, className);
+    return included && !matchesAny(excludedPackages, packageName) && !matchesAny(excludedClasses, className);
+  }
+
+  /**
+   * Describe filter, for example as part of a cache key.
+   *
+   * @return    Textual representation of filter
+   */
+  @Override
+  public String toString() {
+    return String.join(" ", description) + " size " + minSize + ".." + maxSize;
+  }
+
+  /**
+   * Derive fully qualified class name from name of class entry.
+   *
+   * @param entryName   Name of class entry
+   * @return            Class name
+   */
+  private static String toClassName(final String entryName) {
+    final int nestedEnd = entryName.lastIndexOf(NESTED_SEPARATOR);
+    String name = nestedEnd < 0 ? entryName : entryName.substring(nestedEnd + NESTED_SEPARATOR.length());
+
+    if (name.startsWith(VERSIONS_DIRECTORY)) {
+      name = name.substring(name.indexOf('/', VERSIONS_DIRECTORY.length()) + 1);
+    }
+    for (String directory : CLASS_DIRECTORIES) {
+      if (name.startsWith(directory)) {
+        name = name.substring(directory.length());
+      }
+    }
+
+    if (name.endsWith(CLASS_EXTENSION)) {
+      name = name.substring(0, name.length() - CLASS_EXTENSION.length());
+    }
+    return name.replace('/', '.');
+  }
+
+  /**
+   * Translate package glob into regular expression.
+   *
+   * @param glob  Package glob
+   * @return      Pattern matching package names
+   */
+  private static Pattern globToPattern(final String glob) {
+    final String[] names = glob.trim().split("\\.", -1);
+    if (names.length == 1 && names[0].equals("**")) {
+      return Pattern.compile(".*");
+    }
+
+    final StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < names.length; ++i) {
+      if (names[i].equals("**")) {
+        // Any number of package names, including none
+        regex.append(i == 0 ? "(.*\\.)?" : "(\\..*)?");
+        continue;
+      }
+
+      // Leading ** already ends with a separator
+      if (0 < i && !(i == 1 && names[0].equals("**"))) {
+        regex.append("\\.");
+      }
+
+      final String[] parts = names[i].split("\\*", -1);
+      for (int j = 0; j < parts.length; ++j) {
+        regex.append(j == 0 ? "" : "[^.]*").append(Pattern.quote(parts[j]));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  private static boolean matchesAny(final List<Pattern> patterns, final String name) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(name).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,82 @@
+package org.jarreader.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+
+/**
+ * Source of the classes traversed by a visitor, opened as an {@link ArchiveReader}.
+ * <p>
+ * Besides JAR files, classes can be read from exploded directories, {@code .jmod} files and
+ * archives already in memory, so builds can be analysed without packaging them first. Every
+ * source is read with its fastest access path:
+ * <ul>
+ * <li>JAR files with {@link JarFile}, or memory-mapped by {@link MappedArchiveReader}
+ * <li>Directories walked in parallel by {@link DirectoryReader}, reading class files directly
+ * <li>Jmod files memory-mapped by {@link JmodReader}, skipping the jmod header
+ * <li>Archives in memory decoded in place by {@link MappedArchiveReader}, without copying them
+ * </ul>
+ */
+@FunctionalInterface
+public interface InputSource {
+
+  /**
+   * Open reader over the classes of this source.
+   *
+   * @return    Reader, closed by the caller
+   * @throws IOException  Source couldn't be opened
+   */
+  ArchiveReader open() throws IOException;
+
+  /**
+   * Choose source by the kind of file a path denotes: directory, jmod file or JAR file.
+   *
+   * @param path          Path to directory or file
+   * @param memoryMapped  True to memory-map JAR files instead of opening them with {@link JarFile}
+   * @return              Source of classes
+   */
+  static InputSource of(final Path path, final boolean memoryMapped) {
+    if (Files.isDirectory(path)) {
+      return directory(path);
+    }
+    if (JmodReader.isJmod(path.getFileName().toString())) {
+      return jmod(path);
+    }
+    return memoryMapped ? mappedJarFile(path) : jarFile(path);
+  }
+
+  /**
+   * Source of a JAR file opened with {@link JarFile} without verifying signatures, which are
+   * verified apart from reading by {@link SignatureVerification}.
+   *
+   * @param jarPath   Path to JAR file
+   * @return          Source of classes
+   */
+  static InputSource jarFile(final Path jarPath) {
+    return () -> new JarFileReader(new JarFile(jarPath.toFile(), false));
+  }
+
+  static InputSource mappedJarFile(final Path jarPath) {
+    return () -> MappedArchiveReader.open(jarPath);
+  }
+
+  static InputSource directory(final Path directory) {
+    return () -> DirectoryReader.open(directory);
+  }
+
+  static InputSource jmod(final Path jmodPath) {
+    return () -> JmodReader.open(jmodPath);
+  }
+
+  /**
+   * Source of an archive held in memory, for example received over the network.
+   *
+   * @param archive   Bytes of a JAR file, which must not be modified while being read
+   * @return          Source of classes
+   */
+  static InputSource bytes(final byte[] archive) {
+    return () -> new MappedArchiveReader(new BufferSource(ByteBuffer.wrap(archive)));
+  }
+}
@@ -0,0 +1,105 @@
+package org.jarreader.archive;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+/**
+ * Archive reader backed by {@link JarFile} of the Java standard library.
+ */
+public final class JarFileReader implements ArchiveReader {
+
+  private final JarFile jar;
+  private final List<ArchiveEntry> entries;
+
+  /**
+   * Constructor for reader wrapping an opened JAR file.
+   *
+   * @param jar   Opened JAR file, closed together with this reader
+   */
+  public JarFileReader(final JarFile jar) {
+    this.jar = jar;
+    this.entries =
+        jar.stream()
+           .map(entry -> new ArchiveEntry(entry.getName(), entry.getMethod(), entry.getCrc(),
+                                          entry.getCompressedSize(), entry.getSize(), -1))
+           .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<ArchiveEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Open uncompressed content of an entry. Entries of known size are read completely into a
+   * buffer of the {@link DecompressionPool}, pre-sized from the central directory.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public InputStream getInputStream(final ArchiveEntry entry) throws IOException {
+    InputStream in = jar.getInputStream(jar.getEntry(entry.getName()));
+
+    if (0 <= entry.getSize() && entry.getSize() <= Integer.MAX_VALUE) {
+      return DecompressionPool.readFully(in, (int) entry.getSize());
+    }
+    return in;
+  }
+
+  /**
+   * Open uncompressed content of an entry as a stream inflating on demand.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public InputStream getLazyInputStream(final ArchiveEntry entry) throws IOException {
+    return jar.getInputStream(jar.getEntry(entry.getName()));
+  }
+
+  /**
+   * Read uncompressed content of an entry. {@link JarFile} inflates entries internally, so for
+   * this reader the stored data is already uncompressed.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public ByteBuffer readStored(final ArchiveEntry entry) throws IOException {
+    if (entry.getSize() < 0 || Integer.MAX_VALUE < entry.getSize()) {
+      return ArchiveReader.super.readEntry(entry);
+    }
+
+    final byte[] data = new byte[(int) entry.getSize()];
+    try (final DataInputStream in = new DataInputStream(jar.getInputStream(jar.getEntry(entry.getName())))) {
+      in.readFully(data);
+    }
+    return ByteBuffer.wrap(data);
+  }
+
+  /**
+   * Read uncompressed content of an entry, which is the same as its stored data for this reader.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public ByteBuffer readEntry(final ArchiveEntry entry) throws IOException {
+    return readStored(entry);
+  }
+
+  @Override
+  public void close() throws IOException {
+    jar.close();
+  }
+}
@@ -0,0 +1,145 @@
+package org.jarreader.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Archive reader over a {@code .jmod} file of the JDK. A jmod file is a ZIP archive behind a four
+ * byte header. Classes are in its {@code classes/} section, next to sections of native libraries,
+ * commands and configuration.
+ * <p>
+ * The file is memory-mapped and decoded by {@link MappedArchiveReader} with all offsets shifted
+ * past the header, so it is neither copied nor reopened. Only entries of the classes section are
+ * listed, named without the section prefix like entries of a JAR file.
+ */
+public final class JmodReader implements ArchiveReader {
+
+  // Header of jmod files, "JM" followed by major and minor version 1.0
+  private final static int HEADER_LENGTH = 4;
+  private final static int MAGIC = 0x4A4D0100;
+
+  private final static String CLASSES_SECTION = "classes/";
+  private final static String EXTENSION = ".jmod";
+
+  private final MappedArchiveReader zip;
+  private final List<ArchiveEntry> entries;
+
+  private JmodReader(final MappedArchiveReader zip) {
+    this.zip = zip;
+
+    // Entries are read by their offsets, so renamed entries can be passed to the ZIP reader
+    final List<ArchiveEntry> classEntries = new ArrayList<>();
+    for (ArchiveEntry entry : zip.getEntries()) {
+      String name = entry.getName();
+      if (name.startsWith(CLASSES_SECTION) && CLASSES_SECTION.length() < name.length()) {
+        classEntries.add(new ArchiveEntry(name.substring(CLASSES_SECTION.length()), entry.getMethod(),
+                                          entry.getCrc(), entry.getCompressedSize(), entry.getSize(),
+                                          entry.getLocalHeaderOffset()));
+      }
+    }
+    this.entries = Collections.unmodifiableList(classEntries);
+  }
+
+  /**
+   * Check whether a file name denotes a jmod file.
+   *
+   * @param fileName  Name of file
+   * @return          True for jmod files
+   */
+  public static boolean isJmod(final String fileName) {
+    return fileName.toLowerCase().endsWith(EXTENSION);
+  }
+
+  /**
+   * Memory-map jmod file and decode the ZIP archive behind its header.
+   *
+   * @param jmodPath  Path to jmod file
+   * @return          Reader over the classes section
+   * @throws IOException  File couldn't be mapped or isn't a jmod file
+   */
+  public static JmodReader open(final Path jmodPath) throws IOException {
+    final MappedFileSource mappedFile = new MappedFileSource(jmodPath);
+    try {
+      if (mappedFile.size() < HEADER_LENGTH || mappedFile.slice(0, HEADER_LENGTH).getInt() != MAGIC) {
+        throw new ZipException("Not a jmod file: " + jmodPath);
+      }
+      return new JmodReader(new MappedArchiveReader(new SkippedHeaderSource(mappedFile)));
+    } catch (IOException e) {
+      mappedFile.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public List<ArchiveEntry> getEntries() {
+    return entries;
+  }
+
+  @Override
+  public InputStream getInputStream(final ArchiveEntry entry) throws IOException {
+    return zip.getInputStream(entry);
+  }
+
+  @Override
+  public InputStream getLazyInputStream(final ArchiveEntry entry) throws IOException {
+    return zip.getLazyInputStream(entry);
+  }
+
+  @Override
+  public ByteBuffer readStored(final ArchiveEntry entry) throws IOException {
+    return zip.readStored(entry);
+  }
+
+  @Override
+  public ByteBuffer readEntry(final ArchiveEntry entry) throws IOException {
+    return zip.readEntry(entry);
+  }
+
+  @Override
+  public InputStream decompress(final ArchiveEntry entry, final ByteBuffer stored) throws IOException {
+    return zip.decompress(entry, stored);
+  }
+
+  @Override
+  public ArchiveReader openNested(final ArchiveEntry entry) throws IOException {
+    return zip.openNested(entry);
+  }
+
+  @Override
+  public void close() throws IOException {
+    zip.close();
+  }
+
+  /**
+   * Byte source of the ZIP archive following the jmod header. ZIP offsets are relative to the
+   * start of the archive, not to the start of the file.
+   */
+  private final static class SkippedHeaderSource implements ByteSource {
+    private final ByteSource file;
+
+    SkippedHeaderSource(final ByteSource file) {
+      this.file = file;
+    }
+
+    @Override
+    public long size() {
+      return file.size() - HEADER_LENGTH;
+    }
+
+    @Override
+    public ByteBuffer slice(final long offset, final int length) throws IOException {
+      return file.slice(HEADER_LENGTH + offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+}
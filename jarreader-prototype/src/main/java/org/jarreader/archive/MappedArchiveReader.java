@@ -0,0 +1,384 @@
+package org.jarreader.archive;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Archive reader decoding the ZIP format directly from a {@link ByteSource}, usually a
+ * memory-mapped file. The central directory is decoded from the mapped buffer, STORED entries
+ * are read as views of the mapped region and DEFLATED entries are inflated from it.
+ * <p>
+ * ZIP64 archives are supported, so archives can be larger than 4 GB and hold more than
+ * 65535 entries. Archives spanning multiple disks and encrypted entries are not supported.
+ */
+public final class MappedArchiveReader implements ArchiveReader {
+
+  // Record signatures
+  private final static int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private final static int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private final static int END_SIGNATURE = 0x06054b50;
+  private final static int ZIP64_END_SIGNATURE = 0x06064b50;
+  private final static int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+  // Fixed record lengths
+  private final static int LOCAL_HEADER_LENGTH = 30;
+  private final static int CENTRAL_HEADER_LENGTH = 46;
+  private final static int END_LENGTH = 22;
+  private final static int ZIP64_END_LENGTH = 56;
+  private final static int ZIP64_LOCATOR_LENGTH = 20;
+  private final static int MAX_COMMENT_LENGTH = 0xFFFF;
+
+  // Distance of bytes touched to load every memory page of a mapped range
+  private final static int PAGE_SIZE = 4096;
+
+  // Marker of ZIP32 fields overflowing into the ZIP64 extended information extra field
+  private final static long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private final static int ZIP64_EXTRA_ID = 0x0001;
+
+  private final ByteSource source;
+  private final List<ArchiveEntry> entries;
+
+  /**
+   * Constructor for reader over an archive in a byte source.
+   *
+   * @param source    Bytes of the archive, closed together with this reader
+   * @throws IOException  Archive couldn't be decoded
+   */
+  public MappedArchiveReader(final ByteSource source) throws IOException {
+    this.source = source;
+    this.entries = Collections.unmodifiableList(readCentralDirectory());
+  }
+
+  /**
+   * Memory-map archive file and decode its central directory.
+   *
+   * @param archivePath   Path to archive file
+   * @return              Reader over the mapped archive
+   * @throws IOException  Archive couldn't be mapped or decoded
+   */
+  public static MappedArchiveReader open(final Path archivePath) throws IOException {
+    final MappedFileSource mappedFile = new MappedFileSource(archivePath);
+    try {
+      return new MappedArchiveReader(mappedFile);
+    } catch (IOException e) {
+      mappedFile.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public List<ArchiveEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Open uncompressed content of an entry. STORED entries are streamed from the mapped region,
+   * DEFLATED entries are inflated into a buffer of the {@link DecompressionPool}. The returned
+   * stream is a {@link DataInputStream}, so BCEL's class parser reads it without wrapping it
+   * into a buffered copy.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public InputStream getInputStream(final ArchiveEntry entry) throws IOException {
+    return decompress(entry, readRawEntry(entry));
+  }
+
+  /**
+   * Open entry as a stream over the mapped data, inflating compressed data on demand.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public InputStream getLazyInputStream(final ArchiveEntry entry) throws IOException {
+    final ByteBuffer stored = readRawEntry(entry);
+    if (entry.getMethod() == ArchiveEntry.DEFLATED) {
+      return DecompressionPool.inflateLazily(stored);
+    }
+    return new ByteBufferInputStream(stored);
+  }
+
+  /**
+   * Get view of the stored entry data in the mapped region. Every memory page of the view is
+   * touched, so the page faults reading it from disk happen on the calling thread.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        View of compressed entry data
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public ByteBuffer readStored(final ArchiveEntry entry) throws IOException {
+    final ByteBuffer data = readRawEntry(entry);
+
+    for (int position = 0; position < data.limit(); position += PAGE_SIZE) {
+      data.get(position);
+    }
+    return data;
+  }
+
+  /**
+   * Decompress entry data. STORED entries are streamed from the mapped region, DEFLATED entries
+   * are inflated into a buffer of the {@link DecompressionPool}.
+   *
+   * @param entry   Entry listed by this reader
+   * @param stored  Stored entry data
+   * @return        Stream of uncompressed entry data
+   * @throws IOException  Entry couldn't be inflated
+   */
+  @Override
+  public InputStream decompress(final ArchiveEntry entry, final ByteBuffer stored) throws IOException {
+    if (entry.getMethod() == ArchiveEntry.DEFLATED) {
+      return DecompressionPool.inflate(stored, toIntSize(entry.getSize(), entry));
+    }
+    return new DataInputStream(new ByteBufferInputStream(stored));
+  }
+
+  /**
+   * Read uncompressed content of an entry into memory owned by the caller.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        View of mapped memory for STORED entries, inflated data for DEFLATED entries
+   * @throws IOException  Entry couldn't be read
+   */
+  @Override
+  public ByteBuffer readEntry(final ArchiveEntry entry) throws IOException {
+    ByteBuffer data = readRawEntry(entry);
+
+    if (entry.getMethod() == ArchiveEntry.DEFLATED) {
+      byte[] output = new byte[toIntSize(entry.getSize(), entry)];
+      DecompressionPool.inflate(data, output, output.length);
+      return ByteBuffer.wrap(output);
+    }
+    return data;
+  }
+
+  /**
+   * Open an archive nested in an entry. A STORED nested archive is read as a sub-range of the
+   * mapped region without copying, a DEFLATED one is inflated into memory.
+   *
+   * @param entry   Entry holding an archive
+   * @return        Reader over the nested archive
+   * @throws IOException  Nested archive couldn't be read
+   */
+  @Override
+  public ArchiveReader openNested(final ArchiveEntry entry) throws IOException {
+    return new MappedArchiveReader(new BufferSource(readEntry(entry)));
+  }
+
+  /**
+   * Get view of the compressed content of an entry.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        View of compressed entry data
+   * @throws IOException  Entry couldn't be read or uses unsupported compression
+   */
+  private ByteBuffer readRawEntry(final ArchiveEntry entry) throws IOException {
+    if (entry.getMethod() != ArchiveEntry.STORED && entry.getMethod() != ArchiveEntry.DEFLATED) {
+      throw new ZipException("Unsupported compression method " + entry.getMethod() + " of " + entry);
+    }
+
+    return source.slice(dataOffset(entry), toIntSize(entry.getCompressedSize(), entry));
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+
+  /**
+   * Find offset of entry data behind the local file header. The local header is read for its
+   * own name and extra field lengths, which can differ from the central directory.
+   *
+   * @param entry   Entry listed by this reader
+   * @return        Offset of compressed entry data
+   * @throws IOException  Local header is invalid
+   */
+  private long dataOffset(final ArchiveEntry entry) throws IOException {
+    ByteBuffer header = littleEndian(source.slice(entry.getLocalHeaderOffset(), LOCAL_HEADER_LENGTH));
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header of " + entry);
+    }
+
+    return entry.getLocalHeaderOffset() + LOCAL_HEADER_LENGTH
+        + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+  }
+
+  /**
+   * Decode central directory records into entries.
+   *
+   * @return    Entries in central directory order
+   * @throws IOException  Central directory is invalid
+   */
+  private List<ArchiveEntry> readCentralDirectory() throws IOException {
+    final long endOffset = findEnd();
+    ByteBuffer end = littleEndian(source.slice(endOffset, END_LENGTH));
+
+    long entryCount = end.getShort(10) & 0xFFFF;
+    long directorySize = end.getInt(12) & ZIP64_MAGIC;
+    long directoryOffset = end.getInt(16) & ZIP64_MAGIC;
+
+    // ZIP64 end record takes precedence when its locator precedes the end record
+    if (ZIP64_LOCATOR_LENGTH <= endOffset) {
+      ByteBuffer locator = littleEndian(source.slice(endOffset - ZIP64_LOCATOR_LENGTH, ZIP64_LOCATOR_LENGTH));
+      if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+        ByteBuffer zip64End = littleEndian(source.slice(locator.getLong(8), ZIP64_END_LENGTH));
+        if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+          throw new ZipException("Invalid ZIP64 end of central directory record");
+        }
+        entryCount = zip64End.getLong(32);
+        directorySize = zip64End.getLong(40);
+        directoryOffset = zip64End.getLong(48);
+      }
+    }
+
+    if (Integer.MAX_VALUE < directorySize) {
+      throw new ZipException("Central directory of " + directorySize + " bytes is too large");
+    }
+
+    ByteBuffer directory = littleEndian(source.slice(directoryOffset, (int) directorySize));
+    List<ArchiveEntry> result = new ArrayList<>((int) Math.min(entryCount, directorySize / CENTRAL_HEADER_LENGTH));
+    while (CENTRAL_HEADER_LENGTH <= directory.remaining()) {
+      result.add(readCentralHeader(directory));
+    }
+
+    return result;
+  }
+
+  /**
+   * Decode one central directory file header and advance the buffer past it.
+   *
+   * @param directory   Central directory positioned at a file header
+   * @return            Decoded entry
+   * @throws IOException  File header is invalid
+   */
+  private static ArchiveEntry readCentralHeader(final ByteBuffer directory) throws IOException {
+    final int start = directory.position();
+    if (directory.getInt(start) != CENTRAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid central directory file header at " + start);
+    }
+
+    int method = directory.getShort(start + 10) & 0xFFFF;
+    long crc = directory.getInt(start + 16) & ZIP64_MAGIC;
+    long compressedSize = directory.getInt(start + 20) & ZIP64_MAGIC;
+    long size = directory.getInt(start + 24) & ZIP64_MAGIC;
+    int nameLength = directory.getShort(start + 28) & 0xFFFF;
+    int extraLength = directory.getShort(start + 30) & 0xFFFF;
+    int commentLength = directory.getShort(start + 32) & 0xFFFF;
+    long localHeaderOffset = directory.getInt(start + 42) & ZIP64_MAGIC;
+
+    if (directory.limit() - start - CENTRAL_HEADER_LENGTH < nameLength + extraLength + commentLength) {
+      throw new ZipException("Truncated central directory file header at " + start);
+    }
+
+    byte[] nameBytes = new byte[nameLength];
+    directory.position(start + CENTRAL_HEADER_LENGTH);
+    directory.get(nameBytes);
+    String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+    // Overflowing fields are stored in the ZIP64 extra field in fixed order
+    int extra = directory.position();
+    int extraEnd = extra + extraLength;
+    while (extra + 4 <= extraEnd) {
+      int id = directory.getShort(extra) & 0xFFFF;
+      int length = directory.getShort(extra + 2) & 0xFFFF;
+      int fieldEnd = extra + 4 + length;
+      if (extraEnd < fieldEnd) {
+        throw new ZipException("Truncated extra field of " + name);
+      }
+      if (id == ZIP64_EXTRA_ID) {
+        int field = extra + 4;
+        if (size == ZIP64_MAGIC) {
+          size = readZip64Value(directory, field, fieldEnd, name);
+          field += 8;
+        }
+        if (compressedSize == ZIP64_MAGIC) {
+          compressedSize = readZip64Value(directory, field, fieldEnd, name);
+          field += 8;
+        }
+        if (localHeaderOffset == ZIP64_MAGIC) {
+          localHeaderOffset = readZip64Value(directory, field, fieldEnd, name);
+        }
+      }
+      extra = fieldEnd;
+    }
+
+    directory.position(extraEnd + commentLength);
+    return new ArchiveEntry(name, method, crc, compressedSize, size, localHeaderOffset);
+  }
+
+  /**
+   * Read a value of the ZIP64 extra field of an entry.
+   *
+   * @param directory   Central directory containing the extra field
+   * @param field       Offset of the value
+   * @param fieldEnd    Offset behind the extra field
+   * @param name        Name of the entry
+   * @return            Value of the field
+   * @throws IOException  Value is outside of the extra field
+   */
+  private static long readZip64Value(final ByteBuffer directory, final int field, final int fieldEnd,
+                                     final String name) throws IOException {
+    if (fieldEnd - field < 8) {
+      throw new ZipException("Truncated ZIP64 extra field of " + name);
+    }
+    return directory.getLong(field);
+  }
+
+  /**
+   * Search end of central directory record backwards from the end of the archive,
+   * skipping over the archive comment.
+   *
+   * @return    Offset of end of central directory record
+   * @throws IOException  Record couldn't be found
+   */
+  private long findEnd() throws IOException {
+    final long size = source.size();
+    if (size < END_LENGTH) {
+      throw new ZipException("Archive is too short");
+    }
+
+    final int tailLength = (int) Math.min(size, END_LENGTH + MAX_COMMENT_LENGTH);
+    final long tailOffset = size - tailLength;
+    ByteBuffer tail = littleEndian(source.slice(tailOffset, tailLength));
+    for (int position = tailLength - END_LENGTH; 0 <= position; --position) {
+      if (tail.getInt(position) == END_SIGNATURE
+          && position + END_LENGTH + (tail.getShort(position + 20) & 0xFFFF) == tailLength) {
+        return tailOffset + position;
+      }
+    }
+
+    throw new ZipException("End of central directory record not found");
+  }
+
+  /**
+   * Convert entry size to array size.
+   *
+   * @param size    Size in bytes
+   * @param entry   Entry of the size
+   * @return        Size as int
+   * @throws IOException  Size doesn't fit into an array
+   */
+  private static int toIntSize(final long size, final ArchiveEntry entry) throws IOException {
+    if (size < 0 || Integer.MAX_VALUE < size) {
+      throw new ZipException("Invalid size " + size + " of " + entry);
+    }
+    return (int) size;
+  }
+
+  private static ByteBuffer littleEndian(final ByteBuffer buffer) {
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
@@ -0,0 +1,82 @@
+package org.jarreader.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte source memory-mapping a file. A single mapping is limited to 2 GB, so larger files are
+ * mapped as overlapping segments. Ranges within one segment are returned as views into the
+ * mapped memory. The rare range crossing a segment boundary is read into a heap buffer.
+ */
+public final class MappedFileSource implements ByteSource {
+
+  // Distance between segment starts and extra length mapped past the next segment start
+  private final static long SEGMENT_STEP = 1L << 30;
+  private final static long SEGMENT_OVERLAP = 64L << 20;
+
+  private final FileChannel channel;
+  private final ByteBuffer[] segments;
+  private final long size;
+
+  /**
+   * Map file read-only.
+   *
+   * @param file    Path to file
+   * @throws IOException  File couldn't be opened or mapped
+   */
+  public MappedFileSource(final Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      size = channel.size();
+      segments = new ByteBuffer[(int) Math.max(1, (size + SEGMENT_STEP - 1) / SEGMENT_STEP)];
+      for (int i = 0; i < segments.length; ++i) {
+        long start = i * SEGMENT_STEP;
+        long length = Math.min(SEGMENT_STEP + SEGMENT_OVERLAP, size - start);
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length).asReadOnlyBuffer();
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public ByteBuffer slice(final long offset, final int length) throws IOException {
+    if (offset < 0 || length < 0 || size < offset + length) {
+      throw new EOFException("Range " + offset + "+" + length + " is outside of " + size + " bytes");
+    }
+
+    ByteBuffer segment = segments[(int) (offset / SEGMENT_STEP)];
+    int position = (int) (offset % SEGMENT_STEP);
+    // Entries larger than the rest of the segment would overflow an int sum
+    if ((long) position + length <= segment.capacity()) {
+      ByteBuffer view = segment.duplicate();
+      view.position(position).limit(position + length);
+      return view.slice();
+    }
+
+    // Range crosses the end of the segment, fall back to reading it
+    ByteBuffer copy = ByteBuffer.allocate(length);
+    while (copy.hasRemaining()) {
+      if (channel.read(copy, offset + copy.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    copy.flip();
+    return copy;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
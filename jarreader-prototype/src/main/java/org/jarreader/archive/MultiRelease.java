@@ -0,0 +1,131 @@
+package org.jarreader.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Utility class to resolve the effective classes of multi-release JAR files for a Java release.
+ * <p>
+ * A JAR file with {@code Multi-Release: true} in its manifest can hold versions of a class in
+ * {@code META-INF/versions/N/} directories. For a release, the class with the highest version not
+ * above the release shadows all other versions, including the base one. Resolution only uses
+ * entry names, so shadowed versions are never decompressed or parsed.
+ * <p>
+ * Archives nested in another archive are resolved separately, each with its own manifest.
+ */
+public final class MultiRelease {
+
+  private final static String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+  private final static String VERSIONS_DIRECTORY = "META-INF/versions/";
+  private final static String NESTED_SEPARATOR = "!/";
+  private final static Attributes.Name MULTI_RELEASE = new Attributes.Name("Multi-Release");
+
+  // Version assigned to classes outside of the versions directories
+  private final static int BASE_VERSION = 0;
+
+  private MultiRelease() {}
+
+  /**
+   * Get feature release of the running Java platform, for example 8 or 17.
+   *
+   * @return    Release number
+   */
+  public static int runtimeRelease() {
+    final String version = System.getProperty("java.specification.version");
+    return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+  }
+
+  /**
+   * Select effective class entries for a release. Archives without multi-release manifest
+   * attribute keep all their entries.
+   *
+   * @param archive       Archive holding the entries
+   * @param classEntries  Class entries in archive order
+   * @param release       Java release to resolve classes for
+   * @return              Effective class entries, each at the position the class first occurs
+   * @throws IOException  Manifest couldn't be read
+   */
+  public static List<ArchiveEntry> select(final ArchiveReader archive, final List<ArchiveEntry> classEntries,
+                                          final int release) throws IOException {
+    if (classEntries.stream().noneMatch(entry -> entry.getName().contains(VERSIONS_DIRECTORY))) {
+      return classEntries;
+    }
+
+    final Map<String, Boolean> multiReleaseArchives = new HashMap<>();
+    for (ArchiveEntry entry : archive.getEntries()) {
+      if (entry.getName().endsWith(MANIFEST_NAME)) {
+        final String prefix = entry.getName().substring(0, entry.getName().length() - MANIFEST_NAME.length());
+        if (prefix.isEmpty() || prefix.endsWith(NESTED_SEPARATOR)) {
+          multiReleaseArchives.put(prefix, isMultiRelease(archive, entry));
+        }
+      }
+    }
+
+    final Map<String, ArchiveEntry> effective = new LinkedHashMap<>();
+    final Map<String, Integer> effectiveVersions = new HashMap<>();
+    for (ArchiveEntry entry : classEntries) {
+      final String name = entry.getName();
+      final int nestedEnd = name.lastIndexOf(NESTED_SEPARATOR);
+      final String prefix = nestedEnd < 0 ? "" : name.substring(0, nestedEnd + NESTED_SEPARATOR.length());
+      final String innerName = name.substring(prefix.length());
+
+      if (!innerName.startsWith(VERSIONS_DIRECTORY)
+          || !multiReleaseArchives.getOrDefault(prefix, false)) {
+        effective.putIfAbsent(name, entry);
+        effectiveVersions.putIfAbsent(name, BASE_VERSION);
+        continue;
+      }
+
+      // Entry name is META-INF/versions/N/path/of/Class.class
+      final int versionEnd = innerName.indexOf('/', VERSIONS_DIRECTORY.length());
+      if (versionEnd < 0) {
+        continue;
+      }
+      final int version = parseVersion(innerName.substring(VERSIONS_DIRECTORY.length(), versionEnd));
+      if (version < 0 || release < version) {
+        continue;
+      }
+
+      // Class keeps the position it first occurs at, whichever version shadows the others
+      final String baseName = prefix + innerName.substring(versionEnd + 1);
+      effective.putIfAbsent(baseName, entry);
+      if (effectiveVersions.getOrDefault(baseName, -1) < version) {
+        effective.put(baseName, entry);
+        effectiveVersions.put(baseName, version);
+      }
+    }
+
+    return new ArrayList<>(effective.values());
+  }
+
+  /**
+   * Check multi-release attribute of a manifest.
+   *
+   * @param archive   Archive holding the manifest
+   * @param manifest  Manifest entry
+   * @return          True if archive is a multi-release JAR file
+   * @throws IOException  Manifest couldn't be read
+   */
+  private static boolean isMultiRelease(final ArchiveReader archive, final ArchiveEntry manifest)
+      throws IOException {
+    try (final InputStream in = archive.getInputStream(manifest)) {
+      final Attributes attributes = new Manifest(in).getMainAttributes();
+      return "true".equalsIgnoreCase(attributes.getValue(MULTI_RELEASE));
+    }
+  }
+
+  private static int parseVersion(final String version) {
+    try {
+      return Integer.parseInt(version);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package org.jarreader.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Archive reader presenting an archive together with all archives nested in it as one flat list
+ * of entries. This covers libraries of Spring Boot fat JARs in {@code BOOT-INF/lib}, of WARs in
+ * {@code WEB-INF/lib} and modules of EARs, at any depth.
+ * <p>
+ * Every entry with a JAR, WAR or EAR file name is opened as a nested archive in memory through
+ * {@link ArchiveReader#openNested(ArchiveEntry)}. Its entries follow the nested archive entry
+ * in the flat list, named after the path inside the enclosing archive, for example
+ * {@code BOOT-INF/lib/library.jar!/org/library/Library.class}. Because nested entries are
+ * ordinary entries of the flat list, they are parsed in parallel with those of the outer archive.
+ * <p>
+ * Nested archives that can't be opened are reported and skipped like classes that can't be
+ * parsed. Their entry stays in the list, but none of their contents follow it.
+ */
+public final class NestedArchiveReader implements ArchiveReader {
+
+  // Separator between path of nested archive and path of entry inside it
+  private final static String NESTED_SEPARATOR = "!/";
+
+  private final ArchiveReader outer;
+  private final List<ArchiveReader> nestedReaders;
+  private final List<ArchiveEntry> entries;
+  private final Map<ArchiveEntry, Target> targets;
+
+  /**
+   * Constructor for reader over an archive and the archives nested in it.
+   *
+   * @param outer   Enclosing archive, closed together with this reader
+   */
+  public NestedArchiveReader(final ArchiveReader outer) {
+    this.outer = outer;
+    this.nestedReaders = new ArrayList<>();
+    this.entries = new ArrayList<>();
+    this.targets = new IdentityHashMap<>();
+
+    flatten(outer, "");
+  }
+
+  @Override
+  public List<ArchiveEntry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  @Override
+  public InputStream getInputStream(final ArchiveEntry entry) throws IOException {
+    Target target = targets.get(entry);
+    return target.reader.getInputStream(target.entry);
+  }
+
+  @Override
+  public InputStream getLazyInputStream(final ArchiveEntry entry) throws IOException {
+    Target target = targets.get(entry);
+    return target.reader.getLazyInputStream(target.entry);
+  }
+
+  @Override
+  public ByteBuffer readStored(final ArchiveEntry entry) throws IOException {
+    Target target = targets.get(entry);
+    return target.reader.readStored(target.entry);
+  }
+
+  @Override
+  public ByteBuffer readEntry(final ArchiveEntry entry) throws IOException {
+    Target target = targets.get(entry);
+    return target.reader.readEntry(target.entry);
+  }
+
+  @Override
+  public InputStream decompress(final ArchiveEntry entry, final ByteBuffer stored) throws IOException {
+    Target target = targets.get(entry);
+    return target.reader.decompress(target.entry, stored);
+  }
+
+  @Override
+  public ArchiveReader openNested(final ArchiveEntry entry) throws IOException {
+    Target target = targets.get(entry);
+    return target.reader.openNested(target.entry);
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (ArchiveReader reader : nestedReaders) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    outer.close();
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Add entries of an archive to the flat list, each nested archive followed by its own entries.
+   * Nested archives of the same archive are opened in parallel.
+   *
+   * @param reader  Archive to add
+   * @param prefix  Path of archive inside the outermost archive, followed by separator
+   */
+  private void flatten(final ArchiveReader reader, final String prefix) {
+    final List<ArchiveEntry> nestedEntries =
+        reader.getEntries().stream()
+              .filter(entry -> !entry.isDirectory() && Classpath.isArchive(entry.getName()))
+              .collect(Collectors.toList());
+
+    final List<ArchiveReader> opened =
+        nestedEntries.parallelStream()
+                     .map(entry -> openNested(reader, entry, prefix))
+                     .collect(Collectors.toList());
+    opened.stream().filter(Objects::nonNull).forEach(nestedReaders::add);
+
+    int nestedIndex = 0;
+    for (ArchiveEntry entry : reader.getEntries()) {
+      ArchiveEntry flatEntry = prefix.isEmpty() ? entry : rename(entry, prefix + entry.getName());
+      entries.add(flatEntry);
+      targets.put(flatEntry, new Target(reader, entry));
+
+      if (nestedIndex < nestedEntries.size() && nestedEntries.get(nestedIndex) == entry) {
+        ArchiveReader nested = opened.get(nestedIndex++);
+        if (nested != null) {
+          flatten(nested, prefix + entry.getName() + NESTED_SEPARATOR);
+        }
+      }
+    }
+  }
+
+  /**
+   * Open nested archive, reporting it if it can't be opened.
+   *
+   * @param reader  Archive containing the nested archive
+   * @param entry   Entry of nested archive
+   * @param prefix  Path of archive inside the outermost archive, followed by separator
+   * @return        Reader over nested archive, or null if it was skipped
+   */
+  private static ArchiveReader openNested(final ArchiveReader reader, final ArchiveEntry entry,
+                                          final String prefix) {
+    try {
+      return reader.openNested(entry);
+    } catch (IOException e) {
+      // Nested archives that can't be opened are skipped
+      new IOException("Skipping nested archive " + prefix + entry.getName(), e).printStackTrace();
+      return null;
+    }
+  }
+
+  private static ArchiveEntry rename(final ArchiveEntry entry, final String name) {
+    return new ArchiveEntry(name, entry.getMethod(), entry.getCrc(), entry.getCompressedSize(),
+                            entry.getSize(), entry.getLocalHeaderOffset());
+  }
+
+  /**
+   * Archive and entry a flat entry is read from.
+   */
+  private final static class Target {
+    final ArchiveReader reader;
+    final ArchiveEntry entry;
+
+    Target(final ArchiveReader reader, final ArchiveEntry entry) {
+      this.reader = reader;
+      this.entry = entry;
+    }
+  }
+}
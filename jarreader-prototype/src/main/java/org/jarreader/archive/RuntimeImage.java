@@ -0,0 +1,84 @@
+package org.jarreader.archive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility class to resolve modules of the runtime image of the running JDK through the
+ * {@code jrt:/} file system.
+ * <p>
+ * Every module is a directory of classes in the image, read by {@link DirectoryReader} like an
+ * exploded directory. Modules are resolved as separate elements, so a {@link Classpath} entry of
+ * {@code jrt:/} is analysed one module per task in parallel, and calls into the JDK are resolved
+ * when the image is analysed together with the application.
+ */
+public final class RuntimeImage {
+
+  /**
+   * Prefix of classpath elements denoting the runtime image, optionally followed by module names
+   * separated by commas, such as {@code jrt:/java.base,java.sql}.
+   */
+  public final static String PREFIX = "jrt:/";
+
+  private final static String MODULES_DIRECTORY = "/modules";
+
+  private RuntimeImage() {}
+
+  /**
+   * Check whether a classpath element denotes the runtime image.
+   *
+   * @param element   Classpath element
+   * @return          True for elements starting with {@code jrt:/}
+   */
+  public static boolean isRuntimeImage(final String element) {
+    return element.startsWith(PREFIX);
+  }
+
+  /**
+   * Resolve modules of the runtime image. Without module names, all modules are returned in name
+   * order.
+   *
+   * @param element   Classpath element starting with {@code jrt:/}
+   * @return          Paths to module directories in the {@code jrt:/} file system
+   * @throws IOException  Runtime image couldn't be read or a module doesn't exist
+   */
+  public static List<Path> resolveModules(final String element) throws IOException {
+    final Path modules = getFileSystem().getPath(MODULES_DIRECTORY);
+    final List<Path> found = new ArrayList<>();
+
+    final String moduleNames = element.substring(PREFIX.length()).trim();
+    if (moduleNames.isEmpty()) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(modules)) {
+        stream.forEach(found::add);
+      }
+      found.sort(null);
+      return found;
+    }
+
+    for (String moduleName : moduleNames.split(",")) {
+      Path module = modules.resolve(moduleName.trim());
+      if (!Files.isDirectory(module)) {
+        throw new NoSuchFileException(PREFIX + moduleName.trim());
+      }
+      found.add(module);
+    }
+    return found;
+  }
+
+  /**
+   * Get {@code jrt:/} file system of the running JDK.
+   *
+   * @return    File system of the runtime image
+   */
+  private static FileSystem getFileSystem() {
+    return FileSystems.getFileSystem(URI.create(PREFIX));
+  }
+}
@@ -0,0 +1,391 @@
+package org.jarreader.archive;
+
+import org.jarreader.profiling.VerificationTiming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+/**
+ * Verification of the signatures of a JAR file, run apart from its analysis.
+ * <p>
+ * {@link JarFile} verifies signed entries while they are read, unless it is opened without
+ * verification. On signed JAR files this adds digesting every read entry to the analysis, and a
+ * tampered entry fails in the middle of it. Archives are therefore read without verification, and
+ * signatures are verified by this class according to its {@link Mode}: not at all, for every entry
+ * or only for the analysed entries.
+ * <p>
+ * Verification runs on a pool of background threads shared by all archives, in chunks of entries,
+ * while the archive is analysed. It opens the JAR file on its own, so any reader can be used for
+ * the analysis. Its outcome and cost are reported as a {@link Result} and recorded by
+ * {@link VerificationTiming}, separate from the time of the analysis. Unsigned JAR files are
+ * recognized by their missing signature files without reading any entry.
+ * <p>
+ * Only regular JAR files are verified. Archives nested in them, directories and jmod files are
+ * not.
+ */
+public final class SignatureVerification {
+
+  /**
+   * Entries whose signatures are verified.
+   */
+  public enum Mode {
+    /**
+     * Signatures are not verified.
+     */
+    OFF,
+
+    /**
+     * Every entry is verified, in parallel to the analysis.
+     */
+    BACKGROUND,
+
+    /**
+     * Only the analysed entries are verified, in parallel to the analysis.
+     */
+    ANALYSED
+  }
+
+  // Number of entries verified by one task of the pool
+  private final static int CHUNK_SIZE = 256;
+
+  private final static int READ_BUFFER_SIZE = 8192;
+
+  private final static String META_INF = "META-INF/";
+
+  private final static ExecutorService POOL =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "signature-verification");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final Mode mode;
+  private CompletableFuture<Result> result;
+
+  /**
+   * Constructor for verification not started yet.
+   *
+   * @param mode  Entries to verify
+   */
+  public SignatureVerification(final Mode mode) {
+    this.mode = mode;
+    this.result = null;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Start verifying a JAR file in the background. Nothing is verified if the mode is
+   * {@link Mode#OFF} or the path doesn't denote a regular JAR file.
+   *
+   * @param jarPath             Path to JAR file
+   * @param analysedEntryNames  Names of the entries analysed, verified in mode {@link Mode#ANALYSED}
+   * @return                    Reference to self
+   * @throws IllegalStateException  Verification was already started
+   */
+  public synchronized SignatureVerification start(final Path jarPath, final Collection<String> analysedEntryNames) {
+    if (result != null) {
+      throw new IllegalStateException("Verification already started");
+    }
+    if (mode == Mode.OFF || !Files.isRegularFile(jarPath) || JmodReader.isJmod(jarPath.getFileName().toString())) {
+      result = CompletableFuture.completedFuture(Result.notVerified(mode));
+      return this;
+    }
+
+    final List<String> entryNames = mode == Mode.ANALYSED ? new ArrayList<>(analysedEntryNames) : null;
+    final long startNanos = System.nanoTime();
+    final VerificationTiming timing = VerificationTiming.start(jarPath, mode.name());
+
+    result = CompletableFuture.supplyAsync(() -> openSigned(jarPath), POOL).thenCompose(jar -> {
+      if (jar == null) {
+        return CompletableFuture.completedFuture(Result.notSigned(mode, System.nanoTime() - startNanos));
+      }
+
+      final List<String> names = entryNames != null ? entryNames : getEntryNames(jar);
+      final List<CompletableFuture<Result>> chunks = new ArrayList<>();
+      for (int from = 0; from < names.size(); from += CHUNK_SIZE) {
+        final List<String> chunk = names.subList(from, Math.min(from + CHUNK_SIZE, names.size()));
+        chunks.add(CompletableFuture.supplyAsync(() -> verify(jar, chunk), POOL));
+      }
+
+      return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).handle((done, error) -> {
+        try {
+          jar.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+        Result total = Result.signed(mode);
+        for (CompletableFuture<Result> chunk : chunks) {
+          total = total.add(chunk.join());
+        }
+        return total.setElapsedNanos(System.nanoTime() - startNanos);
+      });
+    }).whenComplete((verified, error) -> {
+      if (verified != null) {
+        timing.setOutcome(verified.isSigned(), verified.getVerifiedCount(), verified.getUnsignedCount(),
+                          verified.getFailures().size(), verified.getBusyNanos());
+      }
+      timing.close();
+    });
+
+    return this;
+  }
+
+  /**
+   * Get outcome of verification, waiting for it to finish.
+   *
+   * @return    Result of verification, not verified if it was never started
+   */
+  public Result getResult() {
+    final CompletableFuture<Result> pending;
+    synchronized (this) {
+      pending = result;
+    }
+    if (pending == null) {
+      return Result.notVerified(mode);
+    }
+
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Result.notVerified(mode);
+    } catch (ExecutionException e) {
+      return Result.signed(mode).addFailure("Verification failed: " + e.getCause());
+    }
+  }
+
+  /**
+   * Check whether an entry belongs to the signature of a JAR file, which is never signed itself:
+   * the manifest, signature files and signature block files.
+   *
+   * @param entryName   Name of entry
+   * @return            True if entry is part of the signature
+   */
+  public static boolean isSignatureFile(final String entryName) {
+    final String name = entryName.toUpperCase(Locale.ROOT);
+    if (!name.startsWith(META_INF) || name.indexOf('/', META_INF.length()) != -1) {
+      return false;
+    }
+    return name.equals("META-INF/MANIFEST.MF") || name.startsWith("META-INF/SIG-") || name.endsWith(".SF")
+        || name.endsWith(".DSA") || name.endsWith(".RSA") || name.endsWith(".EC");
+  }
+
+  /**
+   * Open JAR file with verification if it has a signature file.
+   *
+   * @param jarPath   Path to JAR file
+   * @return          Opened JAR file, or null if it isn't signed
+   */
+  private static JarFile openSigned(final Path jarPath) {
+    try {
+      final JarFile jar = new JarFile(jarPath.toFile(), true);
+      final boolean signed = jar.stream().anyMatch(entry -> {
+        final String name = entry.getName().toUpperCase(Locale.ROOT);
+        return isSignatureFile(name) && name.endsWith(".SF");
+      });
+      if (!signed) {
+        jar.close();
+        return null;
+      }
+      return jar;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static List<String> getEntryNames(final JarFile jar) {
+    return jar.stream()
+              .filter(entry -> !entry.isDirectory() && !isSignatureFile(entry.getName()))
+              .map(JarEntry::getName)
+              .collect(Collectors.toList());
+  }
+
+  /**
+   * Verify entries by reading them completely, which makes {@link JarFile} check their digests.
+   *
+   * @param jar     JAR file opened with verification
+   * @param names   Names of entries to verify
+   * @return        Result of the entries
+   */
+  private Result verify(final JarFile jar, final List<String> names) {
+    final long startNanos = System.nanoTime();
+    final byte[] buffer = new byte[READ_BUFFER_SIZE];
+    Result chunk = Result.signed(mode);
+
+    for (String name : names) {
+      final JarEntry entry = jar.getJarEntry(name);
+      if (entry == null || entry.isDirectory() || isSignatureFile(name)) {
+        continue;
+      }
+
+      try (final InputStream in = jar.getInputStream(entry)) {
+        while (in.read(buffer) != -1) {
+          // Digest is checked when the end of the entry is reached
+        }
+        if (entry.getCodeSigners() == null) {
+          chunk.unsignedCount++;
+        } else {
+          chunk.verifiedCount++;
+        }
+      } catch (IOException | SecurityException e) {
+        chunk.addFailure(name + ": " + e.getMessage());
+      }
+    }
+
+    chunk.busyNanos = System.nanoTime() - startNanos;
+    return chunk;
+  }
+
+  /**
+   * Outcome and cost of verifying a JAR file.
+   */
+  public final static class Result {
+    private final Mode mode;
+    private final boolean verified;
+    private final boolean signed;
+    private int verifiedCount;
+    private int unsignedCount;
+    private final List<String> failures;
+    private long busyNanos;
+    private long elapsedNanos;
+
+    private Result(final Mode mode, final boolean verified, final boolean signed) {
+      this.mode = mode;
+      this.verified = verified;
+      this.signed = signed;
+      this.failures = new ArrayList<>();
+    }
+
+    static Result notVerified(final Mode mode) {
+      return new Result(mode, false, false);
+    }
+
+    static Result notSigned(final Mode mode, final long elapsedNanos) {
+      return new Result(mode, true, false).setElapsedNanos(elapsedNanos);
+    }
+
+    static Result signed(final Mode mode) {
+      return new Result(mode, true, true);
+    }
+
+    private Result add(final Result other) {
+      verifiedCount += other.verifiedCount;
+      unsignedCount += other.unsignedCount;
+      failures.addAll(other.failures);
+      busyNanos += other.busyNanos;
+
+      return this;
+    }
+
+    private Result addFailure(final String failure) {
+      failures.add(failure);
+
+      return this;
+    }
+
+    private Result setElapsedNanos(final long nanos) {
+      elapsedNanos = nanos;
+
+      return this;
+    }
+
+    public Mode getMode() {
+      return mode;
+    }
+
+    /**
+     * Check whether the JAR file was checked for signatures at all.
+     *
+     * @return    False if verification is off or the archive isn't a JAR file
+     */
+    public boolean isVerified() {
+      return verified;
+    }
+
+    public boolean isSigned() {
+      return signed;
+    }
+
+    /**
+     * Check whether all verified entries are signed correctly.
+     *
+     * @return    True if no entry failed verification
+     */
+    public boolean isValid() {
+      return failures.isEmpty();
+    }
+
+    public int getVerifiedCount() {
+      return verifiedCount;
+    }
+
+    public int getUnsignedCount() {
+      return unsignedCount;
+    }
+
+    /**
+     * Get entries failing verification, for example because their digest doesn't match.
+     *
+     * @return    Entry names with the reason of failure
+     */
+    public List<String> getFailures() {
+      return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Get time spent reading and digesting entries, summed over all threads.
+     *
+     * @return    Busy time in nanoseconds
+     */
+    public long getBusyNanos() {
+      return busyNanos;
+    }
+
+    /**
+     * Get time from starting verification until it finished, including waiting for threads of
+     * the pool.
+     *
+     * @return    Elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      if (!verified) {
+        return "not verified";
+      }
+      if (!signed) {
+        return "not signed";
+      }
+
+      StringBuilder sb = new StringBuilder(
+          String.format("%d verified, %d unsigned, %d failed (%s) in %.1f ms, %.1f ms busy",
+                        verifiedCount, unsignedCount, failures.size(), mode.name().toLowerCase(Locale.ROOT),
+                        elapsedNanos / 1e6, busyNanos / 1e6));
+      for (String failure : failures) {
+        sb.append(System.lineSeparator()).append("\t").append(failure);
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package org.jarreader.backend;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Backend reading classes with an ASM {@link ClassReader}, which reports a class as events
+ * straight from the class file bytes instead of building an object model.
+ * <p>
+ * Parsing options of the class reader are configurable. When the handler doesn't need code,
+ * {@link ClassReader#SKIP_CODE} is added, so method bodies are skipped altogether.
+ */
+public final class AsmBackend implements ClassBackend {
+
+  private final static int API = Opcodes.ASM9;
+
+  // Pseudo access flags ASM adds for attributes, such as ACC_DEPRECATED, are above 16 bits
+  private final static int ACCESS_FLAGS = 0xFFFF;
+
+  private final int parsingOptions;
+
+  /**
+   * Constructor for ASM backend.
+   *
+   * @param parsingOptions  Options of {@link ClassReader#accept(ClassVisitor, int)}, for example
+   *                        {@link ClassReader#SKIP_DEBUG}
+   */
+  public AsmBackend(final int parsingOptions) {
+    this.parsingOptions = parsingOptions;
+  }
+
+  @Override
+  public String getName() {
+    return "asm";
+  }
+
+  @Override
+  public void accept(final ByteBuffer classData, final ClassHandler handler) throws IOException {
+    final int options = handler.needsCode() ? parsingOptions : parsingOptions | ClassReader.SKIP_CODE;
+    try {
+      new ClassReader(toArray(classData)).accept(new HandlerAdapter(handler), options);
+    } catch (RuntimeException e) {
+      // ClassReader doesn't validate its input, malformed classes fail with any unchecked exception
+      throw new IOException("Invalid class file: " + e, e);
+    }
+  }
+
+  /**
+   * Get bytes of class file for the class reader, which only reads byte arrays. Arrays of heap
+   * buffers are used directly, other buffers are copied.
+   *
+   * @param classData   Class file data
+   * @return            Class file bytes, starting at index 0
+   */
+  private static byte[] toArray(final ByteBuffer classData) {
+    if (classData.hasArray() && classData.arrayOffset() == 0 && classData.position() == 0
+        && classData.remaining() == classData.array().length) {
+      return classData.array();
+    }
+
+    final byte[] bytes = new byte[classData.remaining()];
+    classData.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Visitor of ASM events forwarding them to a handler.
+   */
+  private final static class HandlerAdapter extends ClassVisitor {
+    private final ClassHandler handler;
+    private final MethodVisitor methodVisitor;
+
+    HandlerAdapter(final ClassHandler handler) {
+      super(API);
+      this.handler = handler;
+      this.methodVisitor = new MethodVisitor(API) {
+        @Override
+        public void visitMethodInsn(final int opcode, final String owner, final String name,
+                                    final String descriptor, final boolean isInterface) {
+          handler.visitMethodCall(opcode, TypeNames.toJavaName(owner), name, descriptor);
+        }
+
+        @Override
+        public void visitEnd() {
+          handler.visitMethodEnd();
+        }
+      };
+    }
+
+    @Override
+    public void visit(final int version, final int access, final String name, final String signature,
+                      final String superName, final String[] interfaces) {
+      final String[] interfaceNames = new String[interfaces.length];
+      for (int i = 0; i < interfaces.length; ++i) {
+        interfaceNames[i] = TypeNames.toJavaName(interfaces[i]);
+      }
+      handler.visitClass(version & 0xFFFF, version >>> 16, access & ACCESS_FLAGS, TypeNames.toJavaName(name),
+                         superName == null ? "java.lang.Object" : TypeNames.toJavaName(superName),
+                         interfaceNames);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
+                                     final String signature, final String[] exceptions) {
+      handler.visitMethod(access & ACCESS_FLAGS, name, descriptor);
+      return methodVisitor;
+    }
+
+    @Override
+    public void visitEnd() {
+      handler.visitClassEnd();
+    }
+  }
+}
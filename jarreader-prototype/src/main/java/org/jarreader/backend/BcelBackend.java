@@ -0,0 +1,85 @@
+package org.jarreader.backend;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.Instruction;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.InvokeInstruction;
+import org.jarreader.archive.ByteBufferInputStream;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Backend parsing classes with BCEL's {@link ClassParser} into its full object model. Instructions
+ * of methods are decoded into an {@link InstructionList} as in the BCEL visitors.
+ */
+final class BcelBackend implements ClassBackend {
+
+  @Override
+  public String getName() {
+    return "bcel";
+  }
+
+  @Override
+  public void accept(final ByteBuffer classData, final ClassHandler handler) throws IOException {
+    try {
+      visitClass(new ClassParser(new DataInputStream(new ByteBufferInputStream(classData.duplicate())), null).parse(),
+                 handler);
+    } catch (RuntimeException e) {
+      // Malformed classes fail in BCEL with ClassFormatException or any other unchecked exception
+      throw new IOException("Invalid class file: " + e, e);
+    }
+  }
+
+  /**
+   * Report a parsed class to a handler, decoding the instructions of methods only if the handler
+   * needs code.
+   *
+   * @param javaClass   BCEL representation of class
+   * @param handler     Receiver of the parts of the class
+   */
+  static void visitClass(final JavaClass javaClass, final ClassHandler handler) {
+    handler.visitClass(javaClass.getMajor(), javaClass.getMinor(), javaClass.getAccessFlags(),
+                       javaClass.getClassName(), javaClass.getSuperclassName(), javaClass.getInterfaceNames());
+
+    ConstantPoolGen constantPool = null;
+    for (Method method : javaClass.getMethods()) {
+      handler.visitMethod(method.getAccessFlags(), method.getName(), method.getSignature());
+
+      final Code code = method.getCode();
+      if (handler.needsCode() && code != null) {
+        if (constantPool == null) {
+          constantPool = new ConstantPoolGen(javaClass.getConstantPool());
+        }
+        visitCode(code, constantPool, handler);
+      }
+      handler.visitMethodEnd();
+    }
+    handler.visitClassEnd();
+  }
+
+  private static void visitCode(final Code code, final ConstantPoolGen constantPool, final ClassHandler handler) {
+    for (InstructionHandle ihandle = new InstructionList(code.getCode()).getStart(); ihandle != null;
+         ihandle = ihandle.getNext()) {
+      final Instruction instruction = ihandle.getInstruction();
+      switch (instruction.getOpcode()) {
+        case Const.INVOKEINTERFACE:
+        case Const.INVOKESPECIAL:
+        case Const.INVOKESTATIC:
+        case Const.INVOKEVIRTUAL:
+          InvokeInstruction invoke = (InvokeInstruction) instruction;
+          handler.visitMethodCall(invoke.getOpcode(), invoke.getReferenceType(constantPool).toString(),
+                                  invoke.getMethodName(constantPool), invoke.getSignature(constantPool));
+        default:
+          break;
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.jarreader.backend;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Bytecode library parsing class files for a {@link ClassHandler}. Backends differ in speed and
+ * allocation, not in what they report, so every analysis can use the fastest backend for it:
+ * <ul>
+ * <li>{@link #BCEL} builds BCEL's full object model of the class, then reports from it
+ * <li>{@link #ASM} reads the class with an ASM {@code ClassReader}, skipping debug information
+ *     and stack map frames, and code too if the handler doesn't need it
+ * <li>{@link #LEAN} reads the class in place with {@link org.jarreader.classfile.ClassFile}
+ * </ul>
+ * Implementations must be thread-safe, the same backend parses classes on all worker threads.
+ * Malformed class files are reported as {@link IOException} by every backend, so a corrupt class
+ * is skipped instead of aborting the traversal.
+ */
+public interface ClassBackend {
+
+  ClassBackend BCEL = new BcelBackend();
+  ClassBackend ASM = new AsmBackend(ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+  ClassBackend LEAN = new LeanBackend();
+
+  /**
+   * Get name of backend, by which it's selected with {@link #forName(String)}.
+   *
+   * @return    Name of backend
+   */
+  String getName();
+
+  /**
+   * Parse class file and report it to a handler.
+   *
+   * @param classData   Class file data, which is left unchanged
+   * @param handler     Receiver of the parts of the class
+   * @throws IOException  Data is not a valid class file
+   */
+  void accept(final ByteBuffer classData, final ClassHandler handler) throws IOException;
+
+  /**
+   * Report a class already parsed by BCEL to a handler, the same way {@link #BCEL} reports the
+   * classes it parses. Lets visitors of BCEL representations share their handler with the backends.
+   *
+   * @param javaClass   BCEL representation of class
+   * @param handler     Receiver of the parts of the class
+   */
+  static void accept(final JavaClass javaClass, final ClassHandler handler) {
+    BcelBackend.visitClass(javaClass, handler);
+  }
+
+  /**
+   * Select built-in backend by name, for example from a command line option.
+   *
+   * @param name  {@code bcel}, {@code asm} or {@code lean}, in any case
+   * @return      Backend of that name
+   * @throws IllegalArgumentException   No backend has that name
+   */
+  static ClassBackend forName(final String name) {
+    for (ClassBackend backend : new ClassBackend[] {BCEL, ASM, LEAN}) {
+      if (backend.getName().equalsIgnoreCase(name)) {
+        return backend;
+      }
+    }
+    throw new IllegalArgumentException("Unknown backend " + name + ", expected bcel, asm or lean");
+  }
+}
@@ -0,0 +1,101 @@
+package org.jarreader.backend;
+
+import org.jarreader.classfile.Utf8Name;
+
+/**
+ * Receiver of the parts of a class reported by a {@link ClassBackend}, independent of the
+ * representation the backend parses classes into.
+ * <p>
+ * For every class, {@link #visitClass} is called first, then {@link #visitMethod} for every method
+ * in declaration order, followed by the calls of its code and {@link #visitMethodEnd()}, and
+ * finally {@link #visitClassEnd()}.
+ * <p>
+ * Class names are fully qualified with packages separated by dots. Array types are named like
+ * Java source types, such as {@code int[]}, as BCEL prints them.
+ * <p>
+ * Backends reading class files in place report methods and calls with {@link Utf8Name}s holding
+ * the bytes of the class file, class names in their internal form. By default these are decoded
+ * and passed on to the methods taking strings. Handlers which only compare or hash names
+ * override them to never decode names.
+ */
+public interface ClassHandler {
+
+  /**
+   * Check whether the code of methods is needed. Backends skip parsing code otherwise, and no
+   * method calls are reported.
+   *
+   * @return    True to receive method calls
+   */
+  boolean needsCode();
+
+  /**
+   * Visit header of a class.
+   *
+   * @param major           Major version of class file
+   * @param minor           Minor version of class file
+   * @param accessFlags     Access flags of class
+   * @param className       Name of class
+   * @param superclassName  Name of superclass, {@code java.lang.Object} for {@code java.lang.Object}
+   *                        itself as in BCEL
+   * @param interfaceNames  Names of implemented interfaces
+   */
+  void visitClass(final int major, final int minor, final int accessFlags, final String className,
+                  final String superclassName, final String[] interfaceNames);
+
+  /**
+   * Visit method declared by the class.
+   *
+   * @param accessFlags   Access flags of method
+   * @param name          Name of method
+   * @param descriptor    Descriptor of method
+   */
+  default void visitMethod(final int accessFlags, final String name, final String descriptor) {}
+
+  /**
+   * Visit method declared by the class, with names as in the class file.
+   *
+   * @param accessFlags   Access flags of method
+   * @param name          Name of method
+   * @param descriptor    Descriptor of method
+   */
+  default void visitMethod(final int accessFlags, final Utf8Name name, final Utf8Name descriptor) {
+    visitMethod(accessFlags, name.toString(), descriptor.toString());
+  }
+
+  /**
+   * Visit invocation of a method by an {@code invokevirtual}, {@code invokespecial},
+   * {@code invokestatic} or {@code invokeinterface} instruction of the current method.
+   *
+   * @param opcode      Opcode of invoke instruction
+   * @param className   Name of class or array type the method is invoked on
+   * @param name        Name of invoked method
+   * @param descriptor  Descriptor of invoked method
+   */
+  default void visitMethodCall(final int opcode, final String className, final String name,
+                               final String descriptor) {}
+
+  /**
+   * Visit invocation of a method, with names as in the class file.
+   *
+   * @param opcode              Opcode of invoke instruction
+   * @param internalClassName   Internal name of class, such as {@code java/lang/String}, or array
+   *                            descriptor the method is invoked on
+   * @param name                Name of invoked method
+   * @param descriptor          Descriptor of invoked method
+   */
+  default void visitMethodCall(final int opcode, final Utf8Name internalClassName, final Utf8Name name,
+                               final Utf8Name descriptor) {
+    visitMethodCall(opcode, TypeNames.toJavaName(internalClassName.toString()), name.toString(),
+                    descriptor.toString());
+  }
+
+  /**
+   * Finish visiting the current method.
+   */
+  default void visitMethodEnd() {}
+
+  /**
+   * Finish visiting the class.
+   */
+  default void visitClassEnd() {}
+}
@@ -0,0 +1,72 @@
+package org.jarreader.backend;
+
+import org.jarreader.classfile.Bytecode;
+import org.jarreader.classfile.ClassFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Backend reading classes in place with the lean {@link ClassFile} parser. Methods and calls are
+ * reported with names holding the bytes of constants, so only constants a handler asks to decode
+ * are decoded.
+ */
+final class LeanBackend implements ClassBackend {
+
+  @Override
+  public String getName() {
+    return "lean";
+  }
+
+  @Override
+  public void accept(final ByteBuffer classData, final ClassHandler handler) throws IOException {
+    final ClassFile classFile = ClassFile.parse(classData);
+    try {
+      handler.visitClass(classFile.getMajor(), classFile.getMinor(), classFile.getAccessFlags(),
+                         classFile.getClassName(), classFile.getSuperclassName(), classFile.getInterfaceNames());
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated class file", e);
+    }
+
+    for (int i = 0; i < classFile.getMethodCount(); ++i) {
+      final ClassFile.MethodView method = classFile.getMethod(i);
+      try {
+        handler.visitMethod(method.getAccessFlags(), method.getUtf8Name(), method.getUtf8Descriptor());
+      } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+        throw new IOException("Invalid method " + i + " of " + classFile.getClassName(), e);
+      }
+
+      if (handler.needsCode()) {
+        try {
+          final ByteBuffer code = method.getCode();
+          if (code != null) {
+            visitCode(classFile, code, handler);
+          }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+          throw new IOException("Invalid code of method " + i + " of " + classFile.getClassName(), e);
+        }
+      }
+      handler.visitMethodEnd();
+    }
+    handler.visitClassEnd();
+  }
+
+  private static void visitCode(final ClassFile classFile, final ByteBuffer code, final ClassHandler handler)
+      throws IOException {
+    for (int offset = 0; offset < code.limit(); offset += Bytecode.instructionLength(code, offset)) {
+      final int opcode = code.get(offset) & 0xFF;
+      switch (opcode) {
+        case Bytecode.INVOKEINTERFACE:
+        case Bytecode.INVOKESPECIAL:
+        case Bytecode.INVOKESTATIC:
+        case Bytecode.INVOKEVIRTUAL:
+          int methodIndex = code.getShort(offset + 1) & 0xFFFF;
+          handler.visitMethodCall(opcode, classFile.getMemberClassUtf8Name(methodIndex),
+                                  classFile.getMemberUtf8Name(methodIndex),
+                                  classFile.getMemberUtf8Descriptor(methodIndex));
+        default:
+          break;
+      }
+    }
+  }
+}
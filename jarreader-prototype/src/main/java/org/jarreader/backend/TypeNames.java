@@ -0,0 +1,52 @@
+package org.jarreader.backend;
+
+/**
+ * Utility class to convert class names of the class file format into the names reported to
+ * {@link ClassHandler}s.
+ */
+public final class TypeNames {
+
+  private TypeNames() {}
+
+  /**
+   * Convert internal name of a class or array type.
+   *
+   * @param internalName  Name with packages separated by slashes or dots, or an array descriptor
+   *                      such as {@code [Ljava/lang/String;}
+   * @return              Name with packages separated by dots, arrays as {@code java.lang.String[]}
+   */
+  public static String toJavaName(final String internalName) {
+    if (internalName.isEmpty() || internalName.charAt(0) != '[') {
+      return internalName.replace('/', '.');
+    }
+
+    int dimensions = 0;
+    while (internalName.charAt(dimensions) == '[') {
+      ++dimensions;
+    }
+
+    final StringBuilder sb = new StringBuilder(internalName.length() + dimensions);
+    switch (internalName.charAt(dimensions)) {
+      case 'B': sb.append("byte"); break;
+      case 'C': sb.append("char"); break;
+      case 'D': sb.append("double"); break;
+      case 'F': sb.append("float"); break;
+      case 'I': sb.append("int"); break;
+      case 'J': sb.append("long"); break;
+      case 'S': sb.append("short"); break;
+      case 'Z': sb.append("boolean"); break;
+      default:
+        // Object element type, such as Ljava/lang/String;
+        sb.append(internalName, dimensions + 1, internalName.length() - 1);
+        for (int i = 0; i < sb.length(); ++i) {
+          if (sb.charAt(i) == '/') {
+            sb.setCharAt(i, '.');
+          }
+        }
+    }
+    for (int i = 0; i < dimensions; ++i) {
+      sb.append("[]");
+    }
+    return sb.toString();
+  }
+}
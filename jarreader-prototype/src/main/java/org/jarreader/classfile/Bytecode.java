@@ -0,0 +1,102 @@
+package org.jarreader.classfile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class to walk the instructions of bytecode without decoding them into objects.
+ * <pre>
+ * for (int offset = 0; offset &lt; code.limit(); offset += Bytecode.instructionLength(code, offset)) {
+ *   int opcode = code.get(offset) &amp; 0xFF;
+ * }
+ * </pre>
+ */
+public final class Bytecode {
+
+  public final static int INVOKEVIRTUAL = 0xB6;
+  public final static int INVOKESPECIAL = 0xB7;
+  public final static int INVOKESTATIC = 0xB8;
+  public final static int INVOKEINTERFACE = 0xB9;
+  public final static int INVOKEDYNAMIC = 0xBA;
+
+  private final static int TABLESWITCH = 0xAA;
+  private final static int LOOKUPSWITCH = 0xAB;
+  private final static int WIDE = 0xC4;
+  private final static int IINC = 0x84;
+
+  // Length of instructions with fixed length by opcode, 0 for variable length and invalid opcodes
+  private final static byte[] LENGTHS = new byte[256];
+
+  static {
+    for (int opcode = 0x00; opcode <= 0xC9; ++opcode) {
+      LENGTHS[opcode] = 1;
+    }
+    LENGTHS[0x10] = 2;                      // bipush
+    LENGTHS[0x11] = 3;                      // sipush
+    LENGTHS[0x12] = 2;                      // ldc
+    LENGTHS[0x13] = 3;                      // ldc_w
+    LENGTHS[0x14] = 3;                      // ldc2_w
+    for (int opcode = 0x15; opcode <= 0x19; ++opcode) {
+      LENGTHS[opcode] = 2;                  // iload to aload
+    }
+    for (int opcode = 0x36; opcode <= 0x3A; ++opcode) {
+      LENGTHS[opcode] = 2;                  // istore to astore
+    }
+    LENGTHS[IINC] = 3;
+    for (int opcode = 0x99; opcode <= 0xA8; ++opcode) {
+      LENGTHS[opcode] = 3;                  // ifeq to jsr
+    }
+    LENGTHS[0xA9] = 2;                      // ret
+    LENGTHS[TABLESWITCH] = 0;
+    LENGTHS[LOOKUPSWITCH] = 0;
+    for (int opcode = 0xB2; opcode <= 0xB8; ++opcode) {
+      LENGTHS[opcode] = 3;                  // getstatic to invokestatic
+    }
+    LENGTHS[INVOKEINTERFACE] = 5;
+    LENGTHS[INVOKEDYNAMIC] = 5;
+    LENGTHS[0xBB] = 3;                      // new
+    LENGTHS[0xBC] = 2;                      // newarray
+    LENGTHS[0xBD] = 3;                      // anewarray
+    LENGTHS[0xC0] = 3;                      // checkcast
+    LENGTHS[0xC1] = 3;                      // instanceof
+    LENGTHS[WIDE] = 0;
+    LENGTHS[0xC5] = 4;                      // multianewarray
+    LENGTHS[0xC6] = 3;                      // ifnull
+    LENGTHS[0xC7] = 3;                      // ifnonnull
+    LENGTHS[0xC8] = 5;                      // goto_w
+    LENGTHS[0xC9] = 5;                      // jsr_w
+  }
+
+  private Bytecode() {}
+
+  /**
+   * Get length of an instruction including its operands.
+   *
+   * @param code    Bytecode of a method, starting at index 0
+   * @param offset  Offset of the instruction's opcode
+   * @return        Length of instruction in bytes
+   * @throws IllegalArgumentException   Opcode is invalid
+   */
+  public static int instructionLength(final ByteBuffer code, final int offset) {
+    final int opcode = code.get(offset) & 0xFF;
+    final int length = LENGTHS[opcode];
+    if (length != 0) {
+      return length;
+    }
+
+    // Operands of switches are aligned to 4 bytes from the start of the code
+    final int operands = (offset + 4) & ~3;
+    switch (opcode) {
+      case TABLESWITCH:
+        final int low = code.getInt(operands + 4);
+        final int high = code.getInt(operands + 8);
+        return operands - offset + 12 + 4 * (high - low + 1);
+      case LOOKUPSWITCH:
+        final int pairs = code.getInt(operands + 4);
+        return operands - offset + 8 + 8 * pairs;
+      case WIDE:
+        return (code.get(offset + 1) & 0xFF) == IINC ? 6 : 4;
+      default:
+        throw new IllegalArgumentException("Invalid opcode " + opcode + " at offset " + offset);
+    }
+  }
+}
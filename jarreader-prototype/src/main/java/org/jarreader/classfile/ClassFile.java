@@ -0,0 +1,484 @@
+package org.jarreader.classfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Class file parsed over a buffer of its bytes, for queries needing only a small part of it.
+ * <p>
+ * Unlike BCEL's {@code ClassParser}, which creates an object for every constant, attribute and
+ * method, parsing only records offsets: the constant pool becomes a table of constant offsets and
+ * methods become offsets of their structures and code. Nothing is copied out of the buffer, and
+ * UTF-8 constants are decoded only when asked for, each at most once. Names can also be taken as
+ * {@link Utf8Name}s, which copy the bytes of a constant without decoding them. A buffer of a
+ * STORED entry of a memory-mapped archive is read in place.
+ * <p>
+ * Fields and attributes of the class are skipped. Full information, such as the disassembly of
+ * instructions, is still taken from the BCEL representation.
+ */
+public final class ClassFile {
+
+  private final static int MAGIC = 0xCAFEBABE;
+
+  // Constant pool tags, see JVM specification 4.4
+  private final static int CONSTANT_UTF8 = 1;
+  private final static int CONSTANT_INTEGER = 3;
+  private final static int CONSTANT_FLOAT = 4;
+  private final static int CONSTANT_LONG = 5;
+  private final static int CONSTANT_DOUBLE = 6;
+  private final static int CONSTANT_CLASS = 7;
+  private final static int CONSTANT_STRING = 8;
+  private final static int CONSTANT_FIELDREF = 9;
+  private final static int CONSTANT_METHODREF = 10;
+  private final static int CONSTANT_INTERFACE_METHODREF = 11;
+  private final static int CONSTANT_NAME_AND_TYPE = 12;
+  private final static int CONSTANT_METHOD_HANDLE = 15;
+  private final static int CONSTANT_METHOD_TYPE = 16;
+  private final static int CONSTANT_DYNAMIC = 17;
+  private final static int CONSTANT_INVOKE_DYNAMIC = 18;
+  private final static int CONSTANT_MODULE = 19;
+  private final static int CONSTANT_PACKAGE = 20;
+
+  public final static int ACC_NATIVE = 0x0100;
+  public final static int ACC_ABSTRACT = 0x0400;
+
+  private final ByteBuffer data;
+  private final int[] constantOffsets;
+  private String[] utf8Cache;
+  private Utf8Name[] nameCache;
+  private final int major;
+  private final int minor;
+  private final int accessFlags;
+  private final int thisClass;
+  private final int superClass;
+  private final int interfacesOffset;
+  private final int[] methodOffsets;
+  private final int[] codeOffsets;
+
+  private ClassFile(final ByteBuffer data, final int[] constantOffsets, final int major, final int minor,
+                    final int accessFlags, final int thisClass, final int superClass,
+                    final int interfacesOffset, final int[] methodOffsets, final int[] codeOffsets) {
+    this.data = data;
+    this.constantOffsets = constantOffsets;
+    this.major = major;
+    this.minor = minor;
+    this.accessFlags = accessFlags;
+    this.thisClass = thisClass;
+    this.superClass = superClass;
+    this.interfacesOffset = interfacesOffset;
+    this.methodOffsets = methodOffsets;
+    this.codeOffsets = codeOffsets;
+  }
+
+  /**
+   * Parse class file. The buffer is read with absolute offsets from its position, its position
+   * and limit are left unchanged. It must not be modified while the class file is in use.
+   *
+   * @param buffer  Class file data
+   * @return        Parsed class file
+   * @throws IOException  Data is not a valid class file
+   */
+  public static ClassFile parse(final ByteBuffer buffer) throws IOException {
+    final ByteBuffer data = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+    try {
+      if (data.getInt(0) != MAGIC) {
+        throw new IOException("Not a class file, magic number is missing");
+      }
+      final int minor = data.getShort(4) & 0xFFFF;
+      final int major = data.getShort(6) & 0xFFFF;
+
+      final int[] constantOffsets = new int[data.getShort(8) & 0xFFFF];
+      int offset = 10;
+      for (int index = 1; index < constantOffsets.length; ++index) {
+        constantOffsets[index] = offset;
+        final int tag = data.get(offset);
+        switch (tag) {
+          case CONSTANT_UTF8:
+            offset += 3 + (data.getShort(offset + 1) & 0xFFFF);
+            break;
+          case CONSTANT_CLASS:
+          case CONSTANT_STRING:
+          case CONSTANT_METHOD_TYPE:
+          case CONSTANT_MODULE:
+          case CONSTANT_PACKAGE:
+            offset += 3;
+            break;
+          case CONSTANT_METHOD_HANDLE:
+            offset += 4;
+            break;
+          case CONSTANT_INTEGER:
+          case CONSTANT_FLOAT:
+          case CONSTANT_FIELDREF:
+          case CONSTANT_METHODREF:
+          case CONSTANT_INTERFACE_METHODREF:
+          case CONSTANT_NAME_AND_TYPE:
+          case CONSTANT_DYNAMIC:
+          case CONSTANT_INVOKE_DYNAMIC:
+            offset += 5;
+            break;
+          case CONSTANT_LONG:
+          case CONSTANT_DOUBLE:
+            // Takes two constant pool slots
+            offset += 9;
+            ++index;
+            break;
+          default:
+            throw new IOException("Invalid constant pool tag " + tag + " at index " + index);
+        }
+      }
+
+      final int accessFlags = data.getShort(offset) & 0xFFFF;
+      final int thisClass = data.getShort(offset + 2) & 0xFFFF;
+      final int superClass = data.getShort(offset + 4) & 0xFFFF;
+      final int interfacesOffset = offset + 6;
+      offset = interfacesOffset + 2 + 2 * (data.getShort(interfacesOffset) & 0xFFFF);
+
+      // Fields are skipped
+      final int fieldCount = data.getShort(offset) & 0xFFFF;
+      offset += 2;
+      for (int i = 0; i < fieldCount; ++i) {
+        offset = skipAttributes(data, offset + 6);
+      }
+
+      final int methodCount = data.getShort(offset) & 0xFFFF;
+      final int[] methodOffsets = new int[methodCount];
+      final int[] codeOffsets = new int[methodCount];
+      offset += 2;
+      for (int i = 0; i < methodCount; ++i) {
+        methodOffsets[i] = offset;
+        final int attributeCount = data.getShort(offset + 6) & 0xFFFF;
+        offset += 8;
+        for (int j = 0; j < attributeCount; ++j) {
+          if (isCodeAttribute(data, constantOffsets, data.getShort(offset) & 0xFFFF)) {
+            codeOffsets[i] = offset + 6;
+          }
+          offset += 6 + data.getInt(offset + 2);
+        }
+      }
+
+      return new ClassFile(data, constantOffsets, major, minor, accessFlags, thisClass, superClass,
+                           interfacesOffset, methodOffsets, codeOffsets);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated class file", e);
+    }
+  }
+
+  public int getMajor() {
+    return major;
+  }
+
+  public int getMinor() {
+    return minor;
+  }
+
+  public int getAccessFlags() {
+    return accessFlags;
+  }
+
+  /**
+   * Get fully qualified name of class, with packages separated by dots.
+   *
+   * @return    Class name
+   * @throws IOException  Class constant is invalid
+   */
+  public String getClassName() throws IOException {
+    return getClassConstant(thisClass);
+  }
+
+  /**
+   * Get fully qualified name of superclass. It's {@code java.lang.Object} for
+   * {@code java.lang.Object} itself, as in BCEL.
+   *
+   * @return    Superclass name
+   * @throws IOException  Class constant is invalid
+   */
+  public String getSuperclassName() throws IOException {
+    return superClass == 0 ? "java.lang.Object" : getClassConstant(superClass);
+  }
+
+  public String[] getInterfaceNames() throws IOException {
+    final String[] interfaceNames = new String[data.getShort(interfacesOffset) & 0xFFFF];
+    for (int i = 0; i < interfaceNames.length; ++i) {
+      interfaceNames[i] = getClassConstant(data.getShort(interfacesOffset + 2 + 2 * i) & 0xFFFF);
+    }
+    return interfaceNames;
+  }
+
+  public int getMethodCount() {
+    return methodOffsets.length;
+  }
+
+  /**
+   * Get view of a method.
+   *
+   * @param index   Index of method in declaration order
+   * @return        Method of this class
+   */
+  public MethodView getMethod(final int index) {
+    return new MethodView(methodOffsets[index], codeOffsets[index]);
+  }
+
+  /**
+   * Get UTF-8 constant, decoding it on first access.
+   *
+   * @param index   Constant pool index of UTF-8 constant
+   * @return        Value of constant
+   * @throws IOException  Index doesn't point to a valid UTF-8 constant
+   */
+  public String getUtf8(final int index) throws IOException {
+    final int offset = constantOffset(index, CONSTANT_UTF8);
+    if (utf8Cache == null) {
+      utf8Cache = new String[constantOffsets.length];
+    } else if (utf8Cache[index] != null) {
+      return utf8Cache[index];
+    }
+    return utf8Cache[index] = decodeUtf8(offset + 3, data.getShort(offset + 1) & 0xFFFF, index);
+  }
+
+  /**
+   * Get UTF-8 constant as name without decoding it, copying its bytes on first access.
+   *
+   * @param index   Constant pool index of UTF-8 constant
+   * @return        Name holding the bytes of constant
+   * @throws IOException  Index doesn't point to a valid UTF-8 constant
+   */
+  public Utf8Name getUtf8Name(final int index) throws IOException {
+    final int offset = constantOffset(index, CONSTANT_UTF8);
+    if (nameCache == null) {
+      nameCache = new Utf8Name[constantOffsets.length];
+    } else if (nameCache[index] != null) {
+      return nameCache[index];
+    }
+    return nameCache[index] = Utf8Name.copyOf(data, offset + 3, data.getShort(offset + 1) & 0xFFFF);
+  }
+
+  /**
+   * Get name of class constant, with packages separated by dots. Names of array classes are
+   * descriptors, such as {@code [Ljava.lang.String;}.
+   *
+   * @param index   Constant pool index of class constant
+   * @return        Class name
+   * @throws IOException  Index doesn't point to a valid class constant
+   */
+  public String getClassConstant(final int index) throws IOException {
+    final int offset = constantOffset(index, CONSTANT_CLASS);
+    return getUtf8(data.getShort(offset + 1) & 0xFFFF).replace('/', '.');
+  }
+
+  /**
+   * Get internal name of class constant as in the class file, with packages separated by
+   * slashes. Names of array classes are descriptors, such as {@code [Ljava/lang/String;}.
+   *
+   * @param index   Constant pool index of class constant
+   * @return        Internal class name
+   * @throws IOException  Index doesn't point to a valid class constant
+   */
+  public Utf8Name getClassConstantUtf8Name(final int index) throws IOException {
+    final int offset = constantOffset(index, CONSTANT_CLASS);
+    return getUtf8Name(data.getShort(offset + 1) & 0xFFFF);
+  }
+
+  /**
+   * Get class name of field, method or interface method reference.
+   *
+   * @param index   Constant pool index of member reference
+   * @return        Name of class declaring the member, see {@link #getClassConstant(int)}
+   * @throws IOException  Index doesn't point to a valid member reference
+   */
+  public String getMemberClassName(final int index) throws IOException {
+    return getClassConstant(data.getShort(memberOffset(index) + 1) & 0xFFFF);
+  }
+
+  /**
+   * Get name of field, method or interface method reference.
+   *
+   * @param index   Constant pool index of member reference
+   * @return        Name of member
+   * @throws IOException  Index doesn't point to a valid member reference
+   */
+  public String getMemberName(final int index) throws IOException {
+    final int nameAndType = constantOffset(data.getShort(memberOffset(index) + 3) & 0xFFFF, CONSTANT_NAME_AND_TYPE);
+    return getUtf8(data.getShort(nameAndType + 1) & 0xFFFF);
+  }
+
+  /**
+   * Get descriptor of field, method or interface method reference.
+   *
+   * @param index   Constant pool index of member reference
+   * @return        Descriptor of member
+   * @throws IOException  Index doesn't point to a valid member reference
+   */
+  public String getMemberDescriptor(final int index) throws IOException {
+    final int nameAndType = constantOffset(data.getShort(memberOffset(index) + 3) & 0xFFFF, CONSTANT_NAME_AND_TYPE);
+    return getUtf8(data.getShort(nameAndType + 3) & 0xFFFF);
+  }
+
+  /**
+   * Get internal class name of field, method or interface method reference.
+   *
+   * @param index   Constant pool index of member reference
+   * @return        Name of class declaring the member, see {@link #getClassConstantUtf8Name(int)}
+   * @throws IOException  Index doesn't point to a valid member reference
+   */
+  public Utf8Name getMemberClassUtf8Name(final int index) throws IOException {
+    return getClassConstantUtf8Name(data.getShort(memberOffset(index) + 1) & 0xFFFF);
+  }
+
+  /**
+   * Get name of field, method or interface method reference without decoding it.
+   *
+   * @param index   Constant pool index of member reference
+   * @return        Name of member
+   * @throws IOException  Index doesn't point to a valid member reference
+   */
+  public Utf8Name getMemberUtf8Name(final int index) throws IOException {
+    final int nameAndType = constantOffset(data.getShort(memberOffset(index) + 3) & 0xFFFF, CONSTANT_NAME_AND_TYPE);
+    return getUtf8Name(data.getShort(nameAndType + 1) & 0xFFFF);
+  }
+
+  /**
+   * Get descriptor of field, method or interface method reference without decoding it.
+   *
+   * @param index   Constant pool index of member reference
+   * @return        Descriptor of member
+   * @throws IOException  Index doesn't point to a valid member reference
+   */
+  public Utf8Name getMemberUtf8Descriptor(final int index) throws IOException {
+    final int nameAndType = constantOffset(data.getShort(memberOffset(index) + 3) & 0xFFFF, CONSTANT_NAME_AND_TYPE);
+    return getUtf8Name(data.getShort(nameAndType + 3) & 0xFFFF);
+  }
+
+  /**
+   * Get offset of a constant, checking its tag.
+   *
+   * @param index   Constant pool index
+   * @param tag     Expected tag of constant
+   * @return        Offset of constant's tag in the class file
+   * @throws IOException  Index is out of range or the constant has another tag
+   */
+  private int constantOffset(final int index, final int tag) throws IOException {
+    if (index <= 0 || constantOffsets.length <= index || data.get(constantOffsets[index]) != tag) {
+      throw new IOException("Invalid constant index " + index + ", expected tag " + tag);
+    }
+    return constantOffsets[index];
+  }
+
+  private int memberOffset(final int index) throws IOException {
+    if (0 < index && index < constantOffsets.length) {
+      final int tag = data.get(constantOffsets[index]);
+      if (tag == CONSTANT_METHODREF || tag == CONSTANT_INTERFACE_METHODREF || tag == CONSTANT_FIELDREF) {
+        return constantOffsets[index];
+      }
+    }
+    throw new IOException("Invalid member reference index " + index);
+  }
+
+  /**
+   * Decode modified UTF-8 bytes of a constant.
+   *
+   * @param offset  Offset of first byte
+   * @param length  Number of bytes
+   * @param index   Constant pool index, for error messages
+   * @return        Decoded string
+   * @throws IOException  Bytes are not valid modified UTF-8
+   */
+  private String decodeUtf8(final int offset, final int length, final int index) throws IOException {
+    try {
+      return Utf8Name.decode(data, offset, length);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid modified UTF-8 in constant " + index, e);
+    }
+  }
+
+  /**
+   * Skip attributes of a field or method.
+   *
+   * @param data    Class file data
+   * @param offset  Offset of attribute count
+   * @return        Offset after the attributes
+   */
+  private static int skipAttributes(final ByteBuffer data, int offset) {
+    final int attributeCount = data.getShort(offset) & 0xFFFF;
+    offset += 2;
+    for (int i = 0; i < attributeCount; ++i) {
+      offset += 6 + data.getInt(offset + 2);
+    }
+    return offset;
+  }
+
+  /**
+   * Check whether an attribute name is {@code Code} without decoding it.
+   */
+  private static boolean isCodeAttribute(final ByteBuffer data, final int[] constantOffsets, final int nameIndex) {
+    if (nameIndex <= 0 || constantOffsets.length <= nameIndex) {
+      return false;
+    }
+    final int offset = constantOffsets[nameIndex];
+    return data.get(offset) == CONSTANT_UTF8 && data.getShort(offset + 1) == 4
+        && data.get(offset + 3) == 'C' && data.get(offset + 4) == 'o'
+        && data.get(offset + 5) == 'd' && data.get(offset + 6) == 'e';
+  }
+
+  /**
+   * Method of the class file, read from the buffer on access.
+   */
+  public final class MethodView {
+    private final int offset;
+    private final int codeOffset;
+
+    private MethodView(final int offset, final int codeOffset) {
+      this.offset = offset;
+      this.codeOffset = codeOffset;
+    }
+
+    public int getAccessFlags() {
+      return data.getShort(offset) & 0xFFFF;
+    }
+
+    public String getName() throws IOException {
+      return getUtf8(data.getShort(offset + 2) & 0xFFFF);
+    }
+
+    public String getDescriptor() throws IOException {
+      return getUtf8(data.getShort(offset + 4) & 0xFFFF);
+    }
+
+    public Utf8Name getUtf8Name() throws IOException {
+      return ClassFile.this.getUtf8Name(data.getShort(offset + 2) & 0xFFFF);
+    }
+
+    public Utf8Name getUtf8Descriptor() throws IOException {
+      return ClassFile.this.getUtf8Name(data.getShort(offset + 4) & 0xFFFF);
+    }
+
+    public boolean isAbstract() {
+      return (getAccessFlags() & ACC_ABSTRACT) != 0;
+    }
+
+    public boolean isNative() {
+      return (getAccessFlags() & ACC_NATIVE) != 0;
+    }
+
+    /**
+     * Get view of the bytecode of this method, read with {@link Bytecode}.
+     *
+     * @return    Read-only buffer from the first to the last byte of code, or null if the method
+     *            has no code
+     * @throws IOException  Code attribute is truncated
+     */
+    public ByteBuffer getCode() throws IOException {
+      if (codeOffset == 0) {
+        return null;
+      }
+      if (data.limit() - 8 < codeOffset) {
+        throw new IOException("Truncated code attribute of method at offset " + offset);
+      }
+      final int codeLength = data.getInt(codeOffset + 4);
+      if (codeLength < 0 || data.limit() - codeOffset - 8 < codeLength) {
+        throw new IOException("Truncated code of method at offset " + offset);
+      }
+      return data.slice(codeOffset + 8, codeLength).asReadOnlyBuffer();
+    }
+  }
+}
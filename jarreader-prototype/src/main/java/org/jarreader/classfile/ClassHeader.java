@@ -0,0 +1,301 @@
+package org.jarreader.classfile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Header of a class file: version, access flags, class name, superclass and interfaces.
+ * <p>
+ * Unlike a full class parser, the header reader copies the bytes of UTF-8 constants into one
+ * array and decodes only the names of the class, its superclass and interfaces. Other constants
+ * are skipped using their fixed sizes. Reading stops right after the interfaces, so fields,
+ * methods and attributes, which make up about 40% of a typical class file, are neither decoded
+ * nor read. Combined with a lazily decompressing stream they are not even inflated.
+ */
+public final class ClassHeader {
+
+  private final static int MAGIC = 0xCAFEBABE;
+
+  // Number of bytes requested from the stream at once, small enough to not read far past the header
+  private final static int READ_SIZE = 512;
+
+  // Constant pool tags, see JVM specification 4.4
+  private final static int CONSTANT_UTF8 = 1;
+  private final static int CONSTANT_INTEGER = 3;
+  private final static int CONSTANT_FLOAT = 4;
+  private final static int CONSTANT_LONG = 5;
+  private final static int CONSTANT_DOUBLE = 6;
+  private final static int CONSTANT_CLASS = 7;
+  private final static int CONSTANT_STRING = 8;
+  private final static int CONSTANT_FIELDREF = 9;
+  private final static int CONSTANT_METHODREF = 10;
+  private final static int CONSTANT_INTERFACE_METHODREF = 11;
+  private final static int CONSTANT_NAME_AND_TYPE = 12;
+  private final static int CONSTANT_METHOD_HANDLE = 15;
+  private final static int CONSTANT_METHOD_TYPE = 16;
+  private final static int CONSTANT_DYNAMIC = 17;
+  private final static int CONSTANT_INVOKE_DYNAMIC = 18;
+  private final static int CONSTANT_MODULE = 19;
+  private final static int CONSTANT_PACKAGE = 20;
+
+  private final int major;
+  private final int minor;
+  private final int accessFlags;
+  private final String className;
+  private final String superclassName;
+  private final String[] interfaceNames;
+
+  private ClassHeader(final int major, final int minor, final int accessFlags, final String className,
+                      final String superclassName, final String[] interfaceNames) {
+    this.major = major;
+    this.minor = minor;
+    this.accessFlags = accessFlags;
+    this.className = className;
+    this.superclassName = superclassName;
+    this.interfaceNames = interfaceNames;
+  }
+
+  /**
+   * Read header of a class file. The stream is read only up to the end of the header.
+   *
+   * @param stream  Class file data, positioned at its start
+   * @return        Header of class
+   * @throws IOException  Data couldn't be read or is not a valid class file
+   */
+  public static ClassHeader read(final InputStream stream) throws IOException {
+    final ClassInput in = new ClassInput(stream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a class file, magic number is missing");
+    }
+    final int minor = in.readUnsignedShort();
+    final int major = in.readUnsignedShort();
+
+    // Keep bytes of UTF-8 constants and name indices of class constants by constant pool index
+    final int constantCount = in.readUnsignedShort();
+    final int[] utf8Offsets = new int[constantCount];
+    // Marks constants which are not UTF-8
+    Arrays.fill(utf8Offsets, -1);
+    final int[] utf8Lengths = new int[constantCount];
+    final int[] classNameIndices = new int[constantCount];
+    byte[] utf8Bytes = new byte[Math.max(64, constantCount * 16)];
+    int utf8Size = 0;
+
+    for (int index = 1; index < constantCount; ++index) {
+      final int tag = in.readUnsignedByte();
+      switch (tag) {
+        case CONSTANT_UTF8:
+          final int length = in.readUnsignedShort();
+          if (utf8Bytes.length < utf8Size + length) {
+            byte[] grown = new byte[Math.max(utf8Bytes.length * 2, utf8Size + length)];
+            System.arraycopy(utf8Bytes, 0, grown, 0, utf8Size);
+            utf8Bytes = grown;
+          }
+          in.readFully(utf8Bytes, utf8Size, length);
+          utf8Offsets[index] = utf8Size;
+          utf8Lengths[index] = length;
+          utf8Size += length;
+          break;
+        case CONSTANT_CLASS:
+          classNameIndices[index] = in.readUnsignedShort();
+          break;
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+          in.skip(2);
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          in.skip(3);
+          break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELDREF:
+        case CONSTANT_METHODREF:
+        case CONSTANT_INTERFACE_METHODREF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+          in.skip(4);
+          break;
+        case CONSTANT_LONG:
+        case CONSTANT_DOUBLE:
+          // Takes two constant pool slots
+          in.skip(8);
+          ++index;
+          break;
+        default:
+          throw new IOException("Invalid constant pool tag " + tag + " at index " + index);
+      }
+    }
+
+    final ConstantNames names = new ConstantNames(utf8Bytes, utf8Offsets, utf8Lengths, classNameIndices);
+    final int accessFlags = in.readUnsignedShort();
+    final String className = names.className(in.readUnsignedShort());
+    final int superclassIndex = in.readUnsignedShort();
+    final String superclassName = superclassIndex == 0 ? "java.lang.Object" : names.className(superclassIndex);
+    final String[] interfaceNames = new String[in.readUnsignedShort()];
+    for (int i = 0; i < interfaceNames.length; ++i) {
+      interfaceNames[i] = names.className(in.readUnsignedShort());
+    }
+
+    return new ClassHeader(major, minor, accessFlags, className, superclassName, interfaceNames);
+  }
+
+  public int getMajor() {
+    return major;
+  }
+
+  public int getMinor() {
+    return minor;
+  }
+
+  public int getAccessFlags() {
+    return accessFlags;
+  }
+
+  /**
+   * Get fully qualified name of class, with packages separated by dots.
+   *
+   * @return    Class name
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * Get fully qualified name of superclass. It's {@code java.lang.Object} for
+   * {@code java.lang.Object} itself, as in BCEL.
+   *
+   * @return    Superclass name
+   */
+  public String getSuperclassName() {
+    return superclassName;
+  }
+
+  public String[] getInterfaceNames() {
+    return interfaceNames.clone();
+  }
+
+  /**
+   * Big-endian reader of class file data, requesting small chunks from the underlying stream.
+   * Unlike {@link java.io.DataInputStream}, reading a value doesn't go through a synchronized
+   * stream method.
+   */
+  private final static class ClassInput {
+    private final InputStream stream;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    ClassInput(final InputStream stream) {
+      this.stream = stream;
+      this.buffer = new byte[READ_SIZE];
+    }
+
+    int readUnsignedByte() throws IOException {
+      require(1);
+      return buffer[position++] & 0xFF;
+    }
+
+    int readUnsignedShort() throws IOException {
+      require(2);
+      final int value = (buffer[position] & 0xFF) << 8 | (buffer[position + 1] & 0xFF);
+      position += 2;
+      return value;
+    }
+
+    int readInt() throws IOException {
+      require(4);
+      final int value = (buffer[position] & 0xFF) << 24 | (buffer[position + 1] & 0xFF) << 16
+          | (buffer[position + 2] & 0xFF) << 8 | (buffer[position + 3] & 0xFF);
+      position += 4;
+      return value;
+    }
+
+    void skip(final int count) throws IOException {
+      require(count);
+      position += count;
+    }
+
+    void readFully(final byte[] target, final int offset, final int length) throws IOException {
+      final int buffered = Math.min(length, limit - position);
+      System.arraycopy(buffer, position, target, offset, buffered);
+      position += buffered;
+
+      // Long constants are read directly into the target
+      for (int read = buffered; read < length; ) {
+        final int count = stream.read(target, offset + read, length - read);
+        if (count < 0) {
+          throw new EOFException("Unexpected end of class file");
+        }
+        read += count;
+      }
+    }
+
+    /**
+     * Make sure the buffer holds at least the given number of bytes, which must fit in it.
+     *
+     * @param count   Number of bytes
+     * @throws IOException  Stream ends before
+     */
+    private void require(final int count) throws IOException {
+      if (count <= limit - position) {
+        return;
+      }
+
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+      while (limit < count) {
+        final int read = stream.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of class file");
+        }
+        limit += read;
+      }
+    }
+  }
+
+  /**
+   * Class names of the constant pool, decoded on demand from the copied UTF-8 bytes.
+   */
+  private final static class ConstantNames {
+    private final ByteBuffer utf8Bytes;
+    private final int[] utf8Offsets;
+    private final int[] utf8Lengths;
+    private final int[] classNameIndices;
+
+    ConstantNames(final byte[] utf8Bytes, final int[] utf8Offsets, final int[] utf8Lengths,
+                  final int[] classNameIndices) {
+      this.utf8Bytes = ByteBuffer.wrap(utf8Bytes);
+      this.utf8Offsets = utf8Offsets;
+      this.utf8Lengths = utf8Lengths;
+      this.classNameIndices = classNameIndices;
+    }
+
+    /**
+     * Decode name of class constant in modified UTF-8, replacing package separators with dots.
+     *
+     * @param classIndex  Constant pool index of class constant
+     * @return            Class name
+     * @throws IOException  Index doesn't point to a class constant with a UTF-8 name
+     */
+    String className(final int classIndex) throws IOException {
+      if (classIndex <= 0 || classNameIndices.length <= classIndex || classNameIndices[classIndex] == 0) {
+        throw new IOException("Invalid class constant index " + classIndex);
+      }
+      final int nameIndex = classNameIndices[classIndex];
+      if (utf8Offsets.length <= nameIndex || utf8Offsets[nameIndex] < 0) {
+        throw new IOException("Invalid name index " + nameIndex + " of class constant " + classIndex);
+      }
+      try {
+        return Utf8Name.decode(utf8Bytes, utf8Offsets[nameIndex], utf8Lengths[nameIndex]).replace('/', '.');
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid modified UTF-8 in constant " + nameIndex, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package org.jarreader.classfile;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of interned symbols, such as class names, member names and descriptors, each mapped to
+ * a dense integer ID.
+ * <p>
+ * The same names occur in thousands of classes and call sites of a classpath. Storing them once
+ * and referring to them by ID lets result stores keep an int instead of a String per occurrence
+ * and compare or hash plain numbers. Names are turned back into strings only when output is
+ * formatted.
+ * <p>
+ * Symbols are keyed by their modified UTF-8 bytes only. Names read from class files as
+ * {@link Utf8Name}s are looked up without decoding them. Strings are looked up in a second map
+ * keyed by string and encoded only the first time they are interned. A symbol is decoded once,
+ * when it is added.
+ * <p>
+ * A table belongs to one analysis and is shared by the visitors of its traversal, so its symbols
+ * are released together with the result. IDs are only meaningful within the table that assigned
+ * them and must not be persisted or mixed with IDs of another table.
+ * <p>
+ * The table is safe for concurrent use. Looking up a known symbol takes no lock; only adding a
+ * new symbol is synchronized. IDs are assigned in order of first occurrence starting from 0, and
+ * symbols are never removed, so an ID stays valid for the lifetime of the table.
+ */
+public final class SymbolTable {
+
+  private final static int INITIAL_CAPACITY = 1024;
+
+  private final ConcurrentHashMap<Utf8Name, Integer> ids;
+
+  // Strings interned before, so looking them up again doesn't encode them
+  private final ConcurrentHashMap<String, Integer> stringIds;
+
+  // Replaced by a larger copy when full; every write is followed by a volatile write publishing it
+  private volatile String[] symbols;
+
+  // Guarded by this
+  private int size;
+
+  public SymbolTable() {
+    ids = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    stringIds = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    symbols = new String[INITIAL_CAPACITY];
+    size = 0;
+  }
+
+  /**
+   * Get ID of a symbol, adding it to the table if it isn't known yet.
+   *
+   * @param symbol  Symbol to intern
+   * @return        ID of symbol
+   */
+  public int intern(final String symbol) {
+    final Integer known = stringIds.get(symbol);
+    if (known != null) {
+      return known;
+    }
+
+    final Utf8Name name = Utf8Name.of(symbol);
+    final Integer id = ids.get(name);
+    final int added = id != null ? id : add(name, symbol);
+    stringIds.put(symbol, added);
+    return added;
+  }
+
+  /**
+   * Get ID of a symbol given by its modified UTF-8 bytes, adding it to the table if it isn't
+   * known yet. Known names are looked up by their bytes without decoding them.
+   *
+   * @param name  Name to intern
+   * @return      ID of symbol
+   * @throws IllegalArgumentException  Name is not valid modified UTF-8
+   */
+  public int intern(final Utf8Name name) {
+    final Integer id = ids.get(name);
+    return id != null ? id : add(name, name.toString());
+  }
+
+  private synchronized int add(final Utf8Name name, final String symbol) {
+    final Integer known = ids.get(name);
+    if (known != null) {
+      return known;
+    }
+
+    String[] current = symbols;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, size * 2);
+    }
+    current[size] = symbol;
+    // Publish symbol before its ID can be seen by other threads
+    symbols = current;
+    ids.put(name, size);
+    return size++;
+  }
+
+  /**
+   * Get symbol of an ID assigned by this table.
+   *
+   * @param id  ID of symbol
+   * @return    Interned symbol
+   * @throws IllegalArgumentException  ID wasn't assigned by this table
+   */
+  public String getSymbol(final int id) {
+    final String[] current = symbols;
+    if (id < 0 || current.length <= id || current[id] == null) {
+      throw new IllegalArgumentException("Unknown symbol ID " + id);
+    }
+    return current[id];
+  }
+
+  /**
+   * Get number of interned symbols.
+   *
+   * @return  Number of symbols
+   */
+  public synchronized int size() {
+    return size;
+  }
+}
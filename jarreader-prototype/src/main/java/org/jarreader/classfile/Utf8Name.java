@@ -0,0 +1,200 @@
+package org.jarreader.classfile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Name kept as the modified UTF-8 bytes of a class file constant, such as an internal class name,
+ * a member name or a descriptor.
+ * <p>
+ * Most names read from class files are only compared, hashed or copied to output. This
+ * representation supports all of these on the bytes, so a name is decoded into a
+ * {@link String} only if {@link #toString()} is called. Bytes are copied out of the class file,
+ * so a name doesn't keep the class file data reachable.
+ * <p>
+ * Modified UTF-8 differs from standard UTF-8 only for the NUL character and for characters
+ * outside the Basic Multilingual Plane, which hardly occur in names. Names without them are
+ * written to output as they are.
+ */
+public final class Utf8Name {
+
+  private final byte[] bytes;
+  private int hash;
+
+  private Utf8Name(final byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Copy name out of a buffer.
+   *
+   * @param data    Buffer holding modified UTF-8 bytes
+   * @param offset  Offset of first byte
+   * @param length  Number of bytes
+   * @return        Name with a copy of the bytes
+   */
+  public static Utf8Name copyOf(final ByteBuffer data, final int offset, final int length) {
+    final byte[] bytes = new byte[length];
+    data.get(offset, bytes);
+    return new Utf8Name(bytes);
+  }
+
+  /**
+   * Encode a string as name, for example to match names read from class files against.
+   *
+   * @param name    Name to encode
+   * @return        Name with modified UTF-8 bytes of string
+   */
+  public static Utf8Name of(final String name) {
+    int length = 0;
+    for (int i = 0; i < name.length(); ++i) {
+      final char c = name.charAt(i);
+      length += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+    }
+
+    final byte[] bytes = new byte[length];
+    int count = 0;
+    for (int i = 0; i < name.length(); ++i) {
+      final char c = name.charAt(i);
+      if (c != 0 && c < 0x80) {
+        bytes[count++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[count++] = (byte) (0xC0 | (c >> 6));
+        bytes[count++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        bytes[count++] = (byte) (0xE0 | (c >> 12));
+        bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[count++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return new Utf8Name(bytes);
+  }
+
+  /**
+   * Get number of bytes of name.
+   *
+   * @return    Length in bytes
+   */
+  public int length() {
+    return bytes.length;
+  }
+
+  /**
+   * Get byte of name.
+   *
+   * @param index   Index of byte
+   * @return        Byte at index
+   */
+  public byte byteAt(final int index) {
+    return bytes[index];
+  }
+
+  /**
+   * Check whether name starts with the bytes of another name, for example whether an internal
+   * class name starts with a package prefix such as {@code java/util/}.
+   *
+   * @param prefix  Prefix to match
+   * @return        True if name starts with prefix
+   */
+  public boolean startsWith(final Utf8Name prefix) {
+    return prefix.bytes.length <= bytes.length
+        && Arrays.equals(bytes, 0, prefix.bytes.length, prefix.bytes, 0, prefix.bytes.length);
+  }
+
+  /**
+   * Write name as standard UTF-8. Names without NUL and supplementary characters are written
+   * without decoding.
+   *
+   * @param out   Stream to write to
+   * @throws IOException  Name couldn't be written
+   */
+  public void writeTo(final OutputStream out) throws IOException {
+    if (isStandardUtf8()) {
+      out.write(bytes);
+    } else {
+      out.write(toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Check for the encodings of NUL and of surrogates, which standard UTF-8 doesn't use.
+   */
+  private boolean isStandardUtf8() {
+    for (int i = 0; i < bytes.length; ++i) {
+      final int b = bytes[i] & 0xFF;
+      if (b == 0xC0 || (b == 0xED && i + 1 < bytes.length && (bytes[i + 1] & 0xE0) == 0xA0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    return this == other || other instanceof Utf8Name && Arrays.equals(bytes, ((Utf8Name) other).bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = Arrays.hashCode(bytes);
+      hash = h;
+    }
+    return h;
+  }
+
+  /**
+   * Decode name.
+   *
+   * @return    Decoded name
+   * @throws IllegalArgumentException  Bytes are not valid modified UTF-8
+   */
+  @Override
+  public String toString() {
+    return decode(ByteBuffer.wrap(bytes), 0, bytes.length);
+  }
+
+  /**
+   * Decode modified UTF-8 bytes.
+   *
+   * @param data    Buffer holding the bytes
+   * @param offset  Offset of first byte
+   * @param length  Number of bytes
+   * @return        Decoded string
+   * @throws IllegalArgumentException  Bytes are not valid modified UTF-8
+   */
+  static String decode(final ByteBuffer data, final int offset, final int length) {
+    final int end = offset + length;
+    int i = offset;
+
+    // Most names are ASCII, which decodes without a char array
+    while (i < end && 0 <= data.get(i)) {
+      ++i;
+    }
+    if (i == end) {
+      final byte[] ascii = new byte[length];
+      data.get(offset, ascii);
+      return new String(ascii, StandardCharsets.ISO_8859_1);
+    }
+
+    final char[] chars = new char[length];
+    int count = 0;
+    for (i = offset; i < end; ) {
+      final int b = data.get(i++) & 0xFF;
+      if (b < 0x80) {
+        chars[count++] = (char) b;
+      } else if ((b & 0xE0) == 0xC0 && i < end) {
+        chars[count++] = (char) (((b & 0x1F) << 6) | (data.get(i++) & 0x3F));
+      } else if ((b & 0xF0) == 0xE0 && i + 1 < end) {
+        chars[count++] = (char) (((b & 0x0F) << 12) | ((data.get(i++) & 0x3F) << 6) | (data.get(i++) & 0x3F));
+      } else {
+        throw new IllegalArgumentException("Invalid modified UTF-8 at byte " + (i - 1 - offset));
+      }
+    }
+    return new String(chars, 0, count);
+  }
+}
@@ -0,0 +1,100 @@
+package org.jarreader.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jarreader.archive.ArchiveEntry;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Timing of traversing one archive, recorded as a JDK Flight Recorder event. Events of its
+ * classes are recorded by {@link ClassTiming}, possibly on other threads.
+ */
+public final class ArchiveTiming implements AutoCloseable {
+
+  private final ArchiveEvent event;
+  private final Path path;
+  private int classCount;
+  private long byteCount;
+  private boolean cached;
+
+  private ArchiveTiming(final Path path) {
+    this.event = new ArchiveEvent();
+    event.begin();
+    this.path = path;
+  }
+
+  /**
+   * Start timing an archive.
+   *
+   * @param path  Path to archive
+   * @return      Timing, closed when the archive is traversed
+   */
+  public static ArchiveTiming start(final Path path) {
+    return new ArchiveTiming(path);
+  }
+
+  /**
+   * Set class entries traversed in the archive.
+   *
+   * @param entries   Class entries to visit
+   * @return          Reference to self
+   */
+  public ArchiveTiming setEntries(final List<ArchiveEntry> entries) {
+    classCount = entries.size();
+    byteCount = 0;
+    for (ArchiveEntry entry : entries) {
+      byteCount += Math.max(0, entry.getSize());
+    }
+
+    return this;
+  }
+
+  /**
+   * Set whether the result was restored from a cache instead of traversing the archive.
+   *
+   * @param restored  True if archive wasn't traversed
+   * @return          Reference to self
+   */
+  public ArchiveTiming setCached(final boolean restored) {
+    cached = restored;
+
+    return this;
+  }
+
+  @Override
+  public void close() {
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = String.valueOf(path);
+      event.classCount = classCount;
+      event.byteCount = byteCount;
+      event.cached = cached;
+      event.commit();
+    }
+  }
+
+  @Name("org.jarreader.Archive")
+  @Label("Archive Traversal")
+  @Category("JAR Reader")
+  @Description("Traversal of all selected classes of one archive")
+  private final static class ArchiveEvent extends Event {
+    @Label("Path")
+    String path;
+
+    @Label("Classes")
+    int classCount;
+
+    @Label("Class File Bytes")
+    @DataAmount
+    long byteCount;
+
+    @Label("Cached")
+    boolean cached;
+  }
+}
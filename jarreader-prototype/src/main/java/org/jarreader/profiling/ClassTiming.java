@@ -0,0 +1,75 @@
+package org.jarreader.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Timing of traversing one class on the current thread, recorded as a JDK Flight Recorder event
+ * and added to the {@link Counters} together with the heap allocated meanwhile. {@link Phase}
+ * events of the class are nested in its class event.
+ */
+public final class ClassTiming implements AutoCloseable {
+
+  private final String className;
+  private final long size;
+  private final ClassEvent event;
+  private final long allocatedBefore;
+
+  private ClassTiming(final String className, final long size) {
+    this.className = className;
+    this.size = size;
+    this.event = new ClassEvent();
+    event.begin();
+    this.allocatedBefore = Counters.currentThreadAllocatedBytes();
+  }
+
+  /**
+   * Start timing a class.
+   *
+   * @param className   Name of class, or of its entry in the archive
+   * @param size        Uncompressed size of class file, or -1 if unknown
+   * @return            Timing, closed when the class is traversed
+   */
+  public static ClassTiming start(final String className, final long size) {
+    return new ClassTiming(className, size);
+  }
+
+  @Override
+  public void close() {
+    final long allocatedAfter = Counters.currentThreadAllocatedBytes();
+    final long allocated = 0 <= allocatedBefore && 0 <= allocatedAfter ? allocatedAfter - allocatedBefore : -1;
+    Counters.recordClass(size, allocated);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.className = className;
+      event.size = size;
+      event.allocated = allocated;
+      event.commit();
+    }
+  }
+
+  @Name("org.jarreader.Class")
+  @Label("Class Traversal")
+  @Category("JAR Reader")
+  @Description("Reading, parsing and visiting of one class")
+  @StackTrace(false)
+  private final static class ClassEvent extends Event {
+    @Label("Class")
+    String className;
+
+    @Label("Class File Size")
+    @DataAmount
+    long size;
+
+    @Label("Allocated")
+    @Description("Heap allocated by the thread while traversing the class, -1 if unknown")
+    @DataAmount
+    long allocated;
+  }
+}
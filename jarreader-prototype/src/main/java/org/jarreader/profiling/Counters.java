@@ -0,0 +1,265 @@
+package org.jarreader.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Snapshot of counters of all classes traversed in this JVM, for throughput of a run without a
+ * profiler attached:
+ * <pre>
+ * Counters before = Counters.current();
+ * visitor.start();
+ * System.out.println(Counters.current().since(before));
+ * </pre>
+ * Counters are striped {@link LongAdder}s, so threads traversing classes don't contend on them.
+ * Allocation per class is measured with the allocation counter of the current thread, which isn't
+ * available for virtual threads; such classes aren't part of the allocation average.
+ * <p>
+ * While a JDK Flight Recorder recording is running, the throughput of every second is recorded as
+ * a periodic event besides the events of {@link ArchiveTiming}, {@link ClassTiming} and
+ * {@link PhaseTiming}.
+ */
+public final class Counters {
+
+  private final static long START_NANOS = System.nanoTime();
+
+  private final static LongAdder CLASS_COUNT = new LongAdder();
+  private final static LongAdder BYTE_COUNT = new LongAdder();
+  private final static LongAdder ALLOCATED_BYTES = new LongAdder();
+  private final static LongAdder ALLOCATION_SAMPLES = new LongAdder();
+  private final static LongAdder[] PHASE_NANOS = new LongAdder[Phase.values().length];
+
+  private final static com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+  // Counters at the previous throughput event, only accessed by the periodic task of the recorder
+  private static Counters previousPeriod;
+
+  static {
+    for (int i = 0; i < PHASE_NANOS.length; ++i) {
+      PHASE_NANOS[i] = new LongAdder();
+    }
+    previousPeriod = current();
+    FlightRecorder.addPeriodicEvent(ThroughputEvent.class, Counters::recordThroughput);
+  }
+
+  private final long elapsedNanos;
+  private final long classCount;
+  private final long byteCount;
+  private final long allocatedBytes;
+  private final long allocationSamples;
+  private final long[] phaseNanos;
+
+  private Counters(final long elapsedNanos, final long classCount, final long byteCount,
+                   final long allocatedBytes, final long allocationSamples, final long[] phaseNanos) {
+    this.elapsedNanos = elapsedNanos;
+    this.classCount = classCount;
+    this.byteCount = byteCount;
+    this.allocatedBytes = allocatedBytes;
+    this.allocationSamples = allocationSamples;
+    this.phaseNanos = phaseNanos;
+  }
+
+  /**
+   * Take snapshot of the counters since classes were first counted.
+   *
+   * @return    Current counters
+   */
+  public static Counters current() {
+    final long[] phaseNanos = new long[PHASE_NANOS.length];
+    for (int i = 0; i < phaseNanos.length; ++i) {
+      phaseNanos[i] = PHASE_NANOS[i].sum();
+    }
+    return new Counters(System.nanoTime() - START_NANOS, CLASS_COUNT.sum(), BYTE_COUNT.sum(),
+                        ALLOCATED_BYTES.sum(), ALLOCATION_SAMPLES.sum(), phaseNanos);
+  }
+
+  /**
+   * Get counters accumulated between an earlier snapshot and this one.
+   *
+   * @param earlier   Snapshot taken before this one
+   * @return          Difference of counters
+   */
+  public Counters since(final Counters earlier) {
+    final long[] phaseDelta = new long[phaseNanos.length];
+    for (int i = 0; i < phaseDelta.length; ++i) {
+      phaseDelta[i] = phaseNanos[i] - earlier.phaseNanos[i];
+    }
+    return new Counters(elapsedNanos - earlier.elapsedNanos, classCount - earlier.classCount,
+                        byteCount - earlier.byteCount, allocatedBytes - earlier.allocatedBytes,
+                        allocationSamples - earlier.allocationSamples, phaseDelta);
+  }
+
+  public long getClassCount() {
+    return classCount;
+  }
+
+  /**
+   * Get uncompressed size of traversed class files.
+   *
+   * @return    Class file bytes
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Get time spent in a phase, summed over all threads.
+   *
+   * @param phase   Phase of traversal
+   * @return        Time in nanoseconds
+   */
+  public long getPhaseNanos(final Phase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * Get wall-clock time covered. Of a difference taken by {@link #since(Counters)}, it's the time
+   * between both snapshots, otherwise the time since classes were first counted.
+   *
+   * @return    Time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public double getClassesPerSecond() {
+    return perSecond(classCount);
+  }
+
+  public double getBytesPerSecond() {
+    return perSecond(byteCount);
+  }
+
+  /**
+   * Get average heap allocated while traversing a class, of classes traversed on platform threads.
+   *
+   * @return    Allocated bytes per class, or -1 if unknown
+   */
+  public long getAllocationPerClass() {
+    return allocationSamples == 0 ? -1 : allocatedBytes / allocationSamples;
+  }
+
+  private double perSecond(final long count) {
+    return elapsedNanos <= 0 ? 0 : count * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * Get heap allocated by the current thread so far.
+   *
+   * @return    Allocated bytes, or -1 if not supported for the current thread
+   */
+  static long currentThreadAllocatedBytes() {
+    return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+  }
+
+  /**
+   * Count a traversed class.
+   *
+   * @param size        Uncompressed size of class file, or -1 if unknown
+   * @param allocated   Heap allocated while traversing it, or -1 if unknown
+   */
+  static void recordClass(final long size, final long allocated) {
+    CLASS_COUNT.increment();
+    if (0 < size) {
+      BYTE_COUNT.add(size);
+    }
+    if (0 <= allocated) {
+      ALLOCATED_BYTES.add(allocated);
+      ALLOCATION_SAMPLES.increment();
+    }
+  }
+
+  /**
+   * Add time spent in a phase.
+   *
+   * @param phase   Phase of traversal
+   * @param nanos   Time in nanoseconds
+   */
+  static void recordPhase(final Phase phase, final long nanos) {
+    PHASE_NANOS[phase.ordinal()].add(nanos);
+  }
+
+  /**
+   * Get allocation counter of threads, if the JVM supports and enables it.
+   *
+   * @return    Thread bean counting allocations, or null
+   */
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationThreads = (com.sun.management.ThreadMXBean) threads;
+      if (allocationThreads.isThreadAllocatedMemorySupported()
+          && allocationThreads.isThreadAllocatedMemoryEnabled()) {
+        return allocationThreads;
+      }
+    }
+    return null;
+  }
+
+  private static void recordThroughput() {
+    final Counters now = current();
+    final Counters period = now.since(previousPeriod);
+    previousPeriod = now;
+
+    final ThroughputEvent event = new ThroughputEvent();
+    event.classCount = period.classCount;
+    event.byteCount = period.byteCount;
+    event.classesPerSecond = period.getClassesPerSecond();
+    event.bytesPerSecond = (long) period.getBytesPerSecond();
+    event.allocationPerClass = period.getAllocationPerClass();
+    event.commit();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(String.format(
+        "%d classes, %d KB in %.1f ms: %.0f classes/s, %.1f MB/s, %d bytes allocated per class",
+        classCount, byteCount >> 10, elapsedNanos / 1e6, getClassesPerSecond(), getBytesPerSecond() / (1 << 20),
+        getAllocationPerClass()));
+    for (Phase phase : Phase.values()) {
+      sb.append(String.format("%n  %-10s %10.1f ms", phase, getPhaseNanos(phase) / 1e6));
+    }
+    return sb.toString();
+  }
+
+  @Name("org.jarreader.Throughput")
+  @Label("Traversal Throughput")
+  @Category("JAR Reader")
+  @Description("Classes traversed during the last period")
+  @Period("1 s")
+  @StackTrace(false)
+  private final static class ThroughputEvent extends Event {
+    @Label("Classes")
+    long classCount;
+
+    @Label("Class File Bytes")
+    @DataAmount
+    long byteCount;
+
+    @Label("Classes per Second")
+    @Frequency
+    double classesPerSecond;
+
+    @Label("Class File Bytes per Second")
+    @DataAmount
+    @Frequency
+    long bytesPerSecond;
+
+    @Label("Allocation per Class")
+    @Description("Average heap allocated per class on platform threads, -1 if unknown")
+    @DataAmount
+    long allocationPerClass;
+  }
+}
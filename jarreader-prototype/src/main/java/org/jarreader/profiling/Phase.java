@@ -0,0 +1,47 @@
+package org.jarreader.profiling;
+
+/**
+ * Stage of traversing a class, timed by {@link PhaseTiming}.
+ * <p>
+ * Phases of BCEL work inside visitors, such as {@link #METHOD_GEN} and {@link #FORMAT}, are
+ * nested in {@link #VISIT}, so their time is part of the visit too.
+ */
+public enum Phase {
+  /**
+   * Reading entry data from the archive. Without a {@link org.jarreader.visitor.ClassPipeline}
+   * this includes decompressing it.
+   */
+  READ,
+
+  /**
+   * Decompressing entry data read by a separate stage.
+   */
+  INFLATE,
+
+  /**
+   * Parsing a class file with {@code ClassParser.parse()}.
+   */
+  PARSE,
+
+  /**
+   * Visiting a parsed class.
+   */
+  VISIT,
+
+  /**
+   * Building generic BCEL representations of methods, such as {@code MethodGen} and decoded
+   * instruction lists.
+   */
+  METHOD_GEN,
+
+  /**
+   * Building textual output.
+   */
+  FORMAT,
+
+  /**
+   * Writing textual output to an {@link org.jarreader.visitor.OutputSink} while or after classes
+   * are visited.
+   */
+  WRITE
+}
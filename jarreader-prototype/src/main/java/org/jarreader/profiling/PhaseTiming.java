@@ -0,0 +1,62 @@
+package org.jarreader.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Timing of one {@link Phase} on the current thread, recorded as a JDK Flight Recorder event and
+ * added to the {@link Counters}. Used with try-with-resources around the timed code:
+ * <pre>
+ * try (PhaseTiming timing = PhaseTiming.start(Phase.PARSE)) {
+ *   javaClass = parser.parse();
+ * }
+ * </pre>
+ */
+public final class PhaseTiming implements AutoCloseable {
+
+  private final Phase phase;
+  private final PhaseEvent event;
+  private final long startNanos;
+
+  private PhaseTiming(final Phase phase) {
+    this.phase = phase;
+    this.event = new PhaseEvent();
+    event.begin();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Start timing a phase.
+   *
+   * @param phase   Phase to time
+   * @return        Timing, closed when the phase ends
+   */
+  public static PhaseTiming start(final Phase phase) {
+    return new PhaseTiming(phase);
+  }
+
+  @Override
+  public void close() {
+    Counters.recordPhase(phase, System.nanoTime() - startNanos);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.phase = phase.name();
+      event.commit();
+    }
+  }
+
+  @Name("org.jarreader.Phase")
+  @Label("Class Phase")
+  @Category("JAR Reader")
+  @Description("Stage of traversing a class, such as reading, parsing or visiting it")
+  @StackTrace(false)
+  private final static class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+  }
+}
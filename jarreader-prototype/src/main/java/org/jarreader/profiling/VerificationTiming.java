@@ -0,0 +1,112 @@
+package org.jarreader.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.nio.file.Path;
+
+/**
+ * Timing of verifying the signatures of one archive, recorded as a JDK Flight Recorder event
+ * separate from the {@link ArchiveTiming} of its analysis. Verification runs in the background,
+ * so the timing is closed on the thread finishing it.
+ */
+public final class VerificationTiming implements AutoCloseable {
+
+  private final VerificationEvent event;
+  private final Path path;
+  private final String mode;
+  private boolean signed;
+  private int verifiedCount;
+  private int unsignedCount;
+  private int failedCount;
+  private long busyNanos;
+
+  private VerificationTiming(final Path path, final String mode) {
+    this.event = new VerificationEvent();
+    event.begin();
+    this.path = path;
+    this.mode = mode;
+  }
+
+  /**
+   * Start timing verification of an archive.
+   *
+   * @param path  Path to archive
+   * @param mode  Verification mode
+   * @return      Timing, closed when the archive is verified
+   */
+  public static VerificationTiming start(final Path path, final String mode) {
+    return new VerificationTiming(path, mode);
+  }
+
+  /**
+   * Set outcome of verification.
+   *
+   * @param isSigned    True if archive is signed
+   * @param verified    Number of entries with valid signatures
+   * @param unsigned    Number of entries not covered by a signature
+   * @param failed      Number of entries failing verification
+   * @param busy        Time spent reading and digesting entries on all threads in nanoseconds
+   * @return            Reference to self
+   */
+  public VerificationTiming setOutcome(final boolean isSigned, final int verified, final int unsigned,
+                                       final int failed, final long busy) {
+    signed = isSigned;
+    verifiedCount = verified;
+    unsignedCount = unsigned;
+    failedCount = failed;
+    busyNanos = busy;
+
+    return this;
+  }
+
+  @Override
+  public void close() {
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = String.valueOf(path);
+      event.mode = mode;
+      event.signed = signed;
+      event.verifiedCount = verifiedCount;
+      event.unsignedCount = unsignedCount;
+      event.failedCount = failedCount;
+      event.busyTime = busyNanos;
+      event.commit();
+    }
+  }
+
+  @Name("org.jarreader.Verification")
+  @Label("Signature Verification")
+  @Category("JAR Reader")
+  @Description("Verification of the signed entries of one archive, apart from its analysis")
+  @StackTrace(false)
+  private final static class VerificationEvent extends Event {
+    @Label("Path")
+    String path;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Signed")
+    boolean signed;
+
+    @Label("Verified Entries")
+    int verifiedCount;
+
+    @Label("Unsigned Entries")
+    int unsignedCount;
+
+    @Label("Failed Entries")
+    int failedCount;
+
+    @Label("Busy Time")
+    @Description("Time spent reading and digesting entries, summed over all threads")
+    @Timespan(Timespan.NANOSECONDS)
+    long busyTime;
+  }
+}
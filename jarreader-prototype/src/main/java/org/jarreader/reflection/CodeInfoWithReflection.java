@@ -1,14 +1,18 @@
 package org.jarreader.reflection;
 
+import org.jarreader.archive.EntryFilter;
+import org.jarreader.archive.SignatureVerification;
+
 import java.io.IOException;
 import java.lang.reflect.*;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
 
 /**
  * Utility class to print class information with Java Reflection API.
@@ -28,6 +32,9 @@ import java.util.jar.JarFile;
  * A known caveat is that declared fields or methods are not sorted in the order
  * they are declared, but randomly. The purpose of this class is to illustrate
  * the use of reflection to extract code information.
+ * <p>
+ * Classes are loaded from the JAR file opened without verifying signatures, by one class loader
+ * for all classes. Signatures are verified apart from loading by a {@link SignatureVerification}.
  */
 public final class CodeInfoWithReflection {
 
@@ -41,17 +48,59 @@ public final class CodeInfoWithReflection {
    */
   public static String readJar(final Path jarPath)
       throws NoClassDefFoundError, ClassNotFoundException {
+    return readJar(jarPath, new EntryFilter());
+  }
+
+  /**
+   * Extract code information about classes from a JAR file accepted by a filter. Classes
+   * rejected by the filter are not loaded, and signatures are not verified.
+   *
+   * @param jarPath   Relative or absolute file path to JAR file
+   * @param filter    Filter of class entries
+   * @return          Code information retrieved from classes in JAR
+   * @throws NoClassDefFoundError   Class definition couldn't be found
+   * @throws ClassNotFoundException Class itself couldn't be found
+   */
+  public static String readJar(final Path jarPath, final EntryFilter filter)
+      throws NoClassDefFoundError, ClassNotFoundException {
+    return readJar(jarPath, filter, new SignatureVerification(SignatureVerification.Mode.OFF));
+  }
+
+  /**
+   * Extract code information about classes from a JAR file accepted by a filter, verifying
+   * signatures in the background. The outcome of verification is taken from the verification
+   * once it has finished.
+   *
+   * @param jarPath       Relative or absolute file path to JAR file
+   * @param filter        Filter of class entries
+   * @param verification  Verification not started yet, started for the loaded classes
+   * @return              Code information retrieved from classes in JAR
+   * @throws NoClassDefFoundError   Class definition couldn't be found
+   * @throws ClassNotFoundException Class itself couldn't be found
+   */
+  public static String readJar(final Path jarPath, final EntryFilter filter,
+                               final SignatureVerification verification)
+      throws NoClassDefFoundError, ClassNotFoundException {
     final StringBuilder sb = new StringBuilder();
     final Path absoluteJarPath = jarPath.toAbsolutePath();
 
-    try (final JarFile jar = new JarFile(absoluteJarPath.toFile())) {
+    // Versioned like the JAR files of class loaders, classes of multi-release JARs are loaded for this runtime
+    try (final JarFile jar = new JarFile(absoluteJarPath.toFile(), false, ZipFile.OPEN_READ, JarFile.runtimeVersion())) {
+      final List<JarEntry> classEntries = new ArrayList<>();
       for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
         final JarEntry entry = entries.nextElement();
 
-        if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
-          sb.append(readClass(absoluteJarPath, entry));
+        if (!entry.isDirectory() && entry.getName().endsWith(".class")
+            && filter.accept(entry.getName(), entry.getSize())) {
+          classEntries.add(entry);
         }
       }
+      verification.start(absoluteJarPath, classEntries.stream().map(JarEntry::getName).collect(Collectors.toList()));
+
+      final ClassLoader classLoader = new JarClassLoader(jar);
+      for (JarEntry entry : classEntries) {
+        sb.append(readClass(classLoader, entry));
+      }
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -62,13 +111,13 @@ public final class CodeInfoWithReflection {
   /**
    * Read code information from class in JAR file.
    *
-   * @param jarPath   Absolute path to JAR file
-   * @param entry     Current JAR entry in iteration
-   * @return          Code information retrieved from current class in JAR
+   * @param classLoader   Class loader of the classes in JAR file
+   * @param entry         Current JAR entry in iteration
+   * @return              Code information retrieved from current class in JAR
    * @throws NoClassDefFoundError
    * @throws ClassNotFoundException
    */
-  private static String readClass(final Path jarPath, final JarEntry entry)
+  private static String readClass(final ClassLoader classLoader, final JarEntry entry)
       throws NoClassDefFoundError, ClassNotFoundException {
 
     // Get class name and cut off ".class" file extension
@@ -80,117 +129,111 @@ public final class CodeInfoWithReflection {
 
     final StringBuilder sb = new StringBuilder();
 
-    try {
-      // Get class
-      final URL[] urls = {new URL("jar:file:" + jarPath + "!/")};
-      final URLClassLoader classLoader = URLClassLoader.newInstance(urls);
-      final Class<?> clazz = classLoader.loadClass(canonicalClassName);
+    // Get class
+    final Class<?> clazz = classLoader.loadClass(canonicalClassName);
 
-      // Get class information using reflection
-      final Package classPackage = clazz.getPackage();
-      final Class<?> superClass = clazz.getSuperclass();
-      final Class<?>[] interfaces = clazz.getInterfaces();
-      final Class<?>[] innerClasses = clazz.getDeclaredClasses();
+    // Get class information using reflection
+    final Package classPackage = clazz.getPackage();
+    final Class<?> superClass = clazz.getSuperclass();
+    final Class<?>[] interfaces = clazz.getInterfaces();
+    final Class<?>[] innerClasses = clazz.getDeclaredClasses();
 
-      final Field[] fields = clazz.getDeclaredFields();
-      final Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-      final Method[] methods = clazz.getDeclaredMethods();
+    final Field[] fields = clazz.getDeclaredFields();
+    final Constructor<?>[] constructors = clazz.getDeclaredConstructors();
+    final Method[] methods = clazz.getDeclaredMethods();
 
-      // Start printing
-      sb.append("================================");
+    // Start printing
+    sb.append("================================");
 
-      // Package
-      if (classPackage != null) {
-        sb.append("\nPackage: ").append(clazz.getPackage().getName());
-      }
+    // Package
+    if (classPackage != null) {
+      sb.append("\nPackage: ").append(clazz.getPackage().getName());
+    }
 
-      // Class
-      sb.append("\nClass: ").append(clazz.getName());
+    // Class
+    sb.append("\nClass: ").append(clazz.getName());
 
-      // Superclass
-      if (superClass != null && !superClass.getName().equals("java.lang.Object")) {
-        sb.append("\nExtended superclass: ").append(superClass.getName());
-      }
+    // Superclass
+    if (superClass != null && !superClass.getName().equals("java.lang.Object")) {
+      sb.append("\nExtended superclass: ").append(superClass.getName());
+    }
 
-      // Intefaces
-      if (0 < interfaces.length) {
-        sb.append("\nImplemented interfaces:");
-        for (final Class<?> iface : interfaces) {
-          sb.append("\n\t").append(iface.getName());
-        }
+    // Intefaces
+    if (0 < interfaces.length) {
+      sb.append("\nImplemented interfaces:");
+      for (final Class<?> iface : interfaces) {
+        sb.append("\n\t").append(iface.getName());
       }
+    }
 
-      // Inner classes
-      if (0 < innerClasses.length) {
-        sb.append("\nInner classes:");
-        for (final Class<?> innerClass : innerClasses) {
-          sb.append("\n\t")
-              .append("(0x")
-              .append(Integer.toHexString(innerClass.getModifiers()))
-              .append(") ")
-              .append(' ')
-              .append(Modifier.toString(innerClass.getModifiers()))
-              .append(' ')
-              .append(innerClass.getName());
-        }
+    // Inner classes
+    if (0 < innerClasses.length) {
+      sb.append("\nInner classes:");
+      for (final Class<?> innerClass : innerClasses) {
+        sb.append("\n\t")
+            .append("(0x")
+            .append(Integer.toHexString(innerClass.getModifiers()))
+            .append(") ")
+            .append(' ')
+            .append(Modifier.toString(innerClass.getModifiers()))
+            .append(' ')
+            .append(innerClass.getName());
       }
+    }
 
-      // Fields
-      // Uncomment if you want to filter out synthetic fields
+    // Fields
+    // Uncomment if you want to filter out synthetic fields
 //            fields = Arrays.stream(fields)
 //                    .filter(f -> !f.isSynthetic())
 //                    .toArray(Field[]::new);
 
-      if (0 < fields.length) {
-        sb.append("\nFields:");
-        for (final Field field : fields) {
-          sb.append("\n\t")
-              .append("(0x")
-              .append(Integer.toHexString(field.getModifiers()))
-              .append(") ")
-              .append(Modifier.toString(field.getModifiers()))
-              .append(' ')
-              .append(field.getType().getSimpleName())
-              .append(' ')
-              .append(field.getName());
-        }
+    if (0 < fields.length) {
+      sb.append("\nFields:");
+      for (final Field field : fields) {
+        sb.append("\n\t")
+            .append("(0x")
+            .append(Integer.toHexString(field.getModifiers()))
+            .append(") ")
+            .append(Modifier.toString(field.getModifiers()))
+            .append(' ')
+            .append(field.getType().getSimpleName())
+            .append(' ')
+            .append(field.getName());
       }
+    }
 
-      // Constructors
-      if (0 < constructors.length) {
-        sb.append("\nConstructors:");
-        for (final Constructor<?> constructor : constructors) {
-          sb.append("\n\t")
-              .append("(0x")
-              .append(Integer.toHexString(constructor.getModifiers()))
-              .append(") ")
-              .append(Modifier.toString(constructor.getModifiers()))
-              .append(' ')
-              .append(constructor.getName())
-              .append(printParameters(constructor.getParameters()));
-        }
+    // Constructors
+    if (0 < constructors.length) {
+      sb.append("\nConstructors:");
+      for (final Constructor<?> constructor : constructors) {
+        sb.append("\n\t")
+            .append("(0x")
+            .append(Integer.toHexString(constructor.getModifiers()))
+            .append(") ")
+            .append(Modifier.toString(constructor.getModifiers()))
+            .append(' ')
+            .append(constructor.getName())
+            .append(printParameters(constructor.getParameters()));
       }
+    }
 
-      // Methods
-      if (0 < methods.length) {
-        sb.append("\nQualified method signatures:");
-        for (final Method method : methods) {
-          sb.append("\n\t")
-              .append("(0x")
-              .append(Integer.toHexString(method.getModifiers()))
-              .append(") ")
-              .append(Modifier.toString(method.getModifiers()))
-              .append(' ')
-              .append(method.getReturnType().getSimpleName())
-              .append(' ')
-              .append(canonicalClassName)
-              .append('.')
-              .append(method.getName())
-              .append(printParameters(method.getParameters()));
-        }
+    // Methods
+    if (0 < methods.length) {
+      sb.append("\nQualified method signatures:");
+      for (final Method method : methods) {
+        sb.append("\n\t")
+            .append("(0x")
+            .append(Integer.toHexString(method.getModifiers()))
+            .append(") ")
+            .append(Modifier.toString(method.getModifiers()))
+            .append(' ')
+            .append(method.getReturnType().getSimpleName())
+            .append(' ')
+            .append(canonicalClassName)
+            .append('.')
+            .append(method.getName())
+            .append(printParameters(method.getParameters()));
       }
-    } catch (MalformedURLException e) {
-      e.printStackTrace();
     }
     return sb.append('\n').toString();
   }
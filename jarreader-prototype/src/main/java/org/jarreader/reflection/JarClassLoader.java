@@ -0,0 +1,43 @@
+package org.jarreader.reflection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Class loader defining classes from the entries of an opened JAR file.
+ * <p>
+ * Unlike {@link java.net.URLClassLoader}, which opens the JAR file on its own and verifies signed
+ * entries while loading them, classes are read from the JAR file as it was opened. Whether
+ * signatures are verified is therefore up to whoever opens the JAR file.
+ */
+final class JarClassLoader extends ClassLoader {
+
+  private final JarFile jar;
+
+  /**
+   * Constructor for class loader delegating to the system class loader.
+   *
+   * @param jar   Opened JAR file, which must stay open while classes are loaded
+   */
+  JarClassLoader(final JarFile jar) {
+    super(ClassLoader.getSystemClassLoader());
+    this.jar = jar;
+  }
+
+  @Override
+  protected Class<?> findClass(final String name) throws ClassNotFoundException {
+    final JarEntry entry = jar.getJarEntry(name.replace('.', '/') + ".class");
+    if (entry == null) {
+      throw new ClassNotFoundException(name);
+    }
+
+    try (final InputStream in = jar.getInputStream(entry)) {
+      final byte[] classData = in.readAllBytes();
+      return defineClass(name, classData, 0, classData.length);
+    } catch (IOException e) {
+      throw new ClassNotFoundException(name, e);
+    }
+  }
+}
@@ -9,20 +9,45 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import org.jarreader.archive.Classpath;
+import org.jarreader.archive.EntryFilter;
+import org.jarreader.archive.RuntimeImage;
+import org.jarreader.archive.SignatureVerification;
+import org.jarreader.profiling.Counters;
 import org.jarreader.reflection.CodeInfoWithReflection;
+import org.jarreader.visitor.ClasspathAnalysis;
 import org.jarreader.visitor.JarVisitor;
+import org.jarreader.visitor.MemoryBudget;
+import org.jarreader.visitor.OutputSink;
 import org.jarreader.visitor.impl.CodeInfoVisitor;
 import org.jarreader.visitor.impl.DisassembleVisitor;
+import org.jarreader.visitor.impl.InventoryVisitor;
 import org.jarreader.visitor.impl.MethodCallInfoVisitor;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * GUI frontend widget for JAR reader prototype. This frontend contains controls for browsing a JAR
- * file, selecting reading action and executing that action.
+ * file, selecting reading action and executing that action. An exploded directory of classes or a
+ * jmod file can be entered in place of a JAR file. Instead of a single JAR file, a classpath can
+ * be entered to analyse all of its archives with one merged result, including the modules of the
+ * running JDK as {@code jrt:/}. Classpaths of many archives, such as a local Maven repository
+ * entered as {@code ~/.m2/repository/**}, are traversed with one virtual thread per archive.
+ * Analysis can be restricted to packages by globs, which are applied before classes are read.
+ * Traversal is kept within half of the heap by a memory budget, spilling output to disk if needed.
+ * The summary of a classpath ends with the throughput of the run and the time of every phase.
+ * Signatures of signed JAR files are verified in the background, for all or only the analysed
+ * entries, and their outcome is printed apart from the analysis. Output of visitors can be written
+ * to a file instead of the console window, streamed class by class while the JAR file is traversed.
  * <p>
  * The following actions are supported:
  * <ul>
@@ -33,6 +58,8 @@ import java.util.Optional;
  *     instructions are substituted with commented out JVM assembly code.
  * <li>Retrieve method caller and callee information using Apache Commons BCEL.
  *     This one mimics the callgraph functionality of CodeCompass.
+ * <li>List classes with their superclass and interfaces, reading class file headers only.
+ *     This is the fastest action for taking inventory of large classpaths.
  * </ul>
  */
 public final class Widget extends Application {
@@ -41,6 +68,22 @@ public final class Widget extends Application {
   private final static String COMBOBOX_CODEINFO_BCEL = "Display code information using Apache Commons BCEL";
   private final static String COMBOBOX_DISASSEMBLE_BCEL = "Disassemble using Apache Commons BCEL";
   private final static String COMBOBOX_CALLER_CALLEE_BCEL = "Retrieve method caller and callee information using Apache Commons BCEL";
+  private final static String COMBOBOX_INVENTORY = "List classes from class file headers only";
+
+  // Parse and visit classes on every available core
+  private final static int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+  // Share of the heap a traversal may occupy before parsing slows down and output spills to disk
+  private final static double MEMORY_BUDGET_SHARE = 0.5;
+
+  // Number of archives from which a classpath is traversed with one virtual thread per archive
+  private final static int VIRTUAL_THREAD_ARCHIVES = 256;
+
+  private final CheckBox memoryMappedCheckBox = new CheckBox("Memory-map JAR file");
+  private final CheckBox nestedArchivesCheckBox = new CheckBox("Read nested JAR, WAR and EAR files");
+  private final TextField packageFilterTextField = new TextField();
+  private final ComboBox<SignatureVerification.Mode> verificationComboBox = new ComboBox<>();
+  private final TextField outputFileTextField = new TextField();
 
   /**
    * Run GUI frontend and display controls.
@@ -71,11 +114,30 @@ public final class Widget extends Application {
         COMBOBOX_CODEINFO_REFLECTION,
         COMBOBOX_CODEINFO_BCEL,
         COMBOBOX_DISASSEMBLE_BCEL,
-        COMBOBOX_CALLER_CALLEE_BCEL
+        COMBOBOX_CALLER_CALLEE_BCEL,
+        COMBOBOX_INVENTORY
     );
     comboBox.getSelectionModel().selectFirst();
     grid.add(comboBox, 1, 1);
 
+    grid.add(memoryMappedCheckBox, 1, 2);
+    grid.add(nestedArchivesCheckBox, 1, 3);
+
+    // Package globs separated by commas, excluded ones prefixed by "!"
+    packageFilterTextField.setPromptText("Packages, e.g. com.acme.**, !com.acme.internal.**");
+    grid.add(new Label("Package filter"), 0, 4);
+    grid.add(packageFilterTextField, 1, 4);
+
+    verificationComboBox.getItems().addAll(SignatureVerification.Mode.values());
+    verificationComboBox.getSelectionModel().select(SignatureVerification.Mode.ANALYSED);
+    grid.add(new Label("Signature verification"), 0, 5);
+    grid.add(verificationComboBox, 1, 5);
+
+    // Output of any size is streamed to the file instead of being displayed
+    outputFileTextField.setPromptText("Empty to display output");
+    grid.add(new Label("Output file"), 0, 6);
+    grid.add(outputFileTextField, 1, 6);
+
     // Set file browser action
     openFileButton.setOnAction(e ->
         Optional.ofNullable(fileChooser.showOpenDialog(primaryStage))
@@ -85,21 +147,28 @@ public final class Widget extends Application {
     // Set reader actions
     Button selectMethodButton = new Button("Execute action");
     selectMethodButton.setOnAction(event -> {
-      Path jarPath = Paths.get(fileTextField.getText());
-      if (jarPath.toString().isEmpty()) {
+      String location = fileTextField.getText();
+      if (location.isEmpty()) {
         errorPopup("File path is empty! Please select a JAR file.");
         return;
       }
 
-      if (!Files.exists(jarPath)) {
+      boolean classpath = isClasspath(location);
+      if (!classpath && !Files.exists(Paths.get(location))) {
         errorPopup("File does not exists!");
         return;
       }
 
       switch (comboBox.getValue()) {
         case COMBOBOX_CODEINFO_REFLECTION:
+          if (classpath) {
+            errorPopup("Java Reflection API reads a single JAR file, not a classpath.");
+            return;
+          }
           try {
-            printConsoleWindow(CodeInfoWithReflection.readJar(jarPath));
+            SignatureVerification verification = new SignatureVerification(verificationComboBox.getValue());
+            String codeInfo = CodeInfoWithReflection.readJar(Paths.get(location), createFilter(), verification);
+            printConsoleWindow(signaturesToString(verification) + codeInfo);
           } catch (ClassNotFoundException | NoClassDefFoundError e) {
             e.printStackTrace();
             errorPopup("One or more of the classes in JAR couldn't be parsed.\n" +
@@ -108,18 +177,19 @@ public final class Widget extends Application {
           break;
 
         case COMBOBOX_CODEINFO_BCEL:
-          JarVisitor infoVisitor = new CodeInfoVisitor(jarPath);
-          printConsoleWindow(infoVisitor.start().jarToString());
+          runVisitor(location, CodeInfoVisitor::new);
           break;
 
         case COMBOBOX_DISASSEMBLE_BCEL:
-          JarVisitor disassembleVisitor = new DisassembleVisitor(jarPath);
-          printConsoleWindow(disassembleVisitor.start().jarToString());
+          runVisitor(location, DisassembleVisitor::new);
           break;
 
         case COMBOBOX_CALLER_CALLEE_BCEL:
-          JarVisitor callerVisitor = new MethodCallInfoVisitor(jarPath);
-          printConsoleWindow(callerVisitor.start().jarToString());
+          runVisitor(location, MethodCallInfoVisitor::new);
+          break;
+
+        case COMBOBOX_INVENTORY:
+          runVisitor(location, InventoryVisitor::new);
           break;
       }
     });
@@ -132,6 +202,136 @@ public final class Widget extends Application {
     primaryStage.show();
   }
 
+  /**
+   * Check whether the selected location is a classpath instead of a single JAR file. A classpath
+   * has multiple elements, or is a directory of archives or a classpath file.
+   *
+   * @param location  Text of file path field
+   * @return          True if location is a classpath
+   */
+  private boolean isClasspath(final String location) {
+    if (location.contains(File.pathSeparator) || location.endsWith("*")
+        || RuntimeImage.isRuntimeImage(location)) {
+      return true;
+    }
+
+    Path path = Paths.get(location);
+    return Files.isDirectory(path)
+        || (Files.isRegularFile(path) && !Classpath.isArchive(path.getFileName().toString()));
+  }
+
+  /**
+   * Create filter from the package globs entered in the package filter field.
+   *
+   * @return    Filter of class entries
+   */
+  private EntryFilter createFilter() {
+    EntryFilter filter = new EntryFilter();
+    for (String glob : packageFilterTextField.getText().split(",")) {
+      glob = glob.trim();
+      if (glob.startsWith("!")) {
+        filter.excludePackages(glob.substring(1).trim());
+      } else if (!glob.isEmpty()) {
+        filter.includePackages(glob);
+      }
+    }
+    return filter;
+  }
+
+  /**
+   * Traverse JAR file or all archives of a classpath with visitor on all available cores,
+   * then print retrieved information. If an output file is entered, information is written to it
+   * instead, while a single JAR file is traversed or after a classpath is merged.
+   *
+   * @param location        JAR file or classpath
+   * @param visitorFactory  Creates visitor for a JAR file
+   */
+  private void runVisitor(final String location, final Function<Path, JarVisitor> visitorFactory) {
+    final MemoryBudget memoryBudget = MemoryBudget.ofMaxHeap(MEMORY_BUDGET_SHARE);
+    final Function<Path, JarVisitor> configuredFactory =
+        jarPath -> visitorFactory.apply(jarPath)
+                                 .setMemoryMapped(memoryMappedCheckBox.isSelected())
+                                 .setNestedArchives(nestedArchivesCheckBox.isSelected())
+                                 .setFilter(createFilter())
+                                 .setVerification(verificationComboBox.getValue())
+                                 .setMemoryBudget(memoryBudget);
+
+    final String outputFile = outputFileTextField.getText().trim();
+    if (!isClasspath(location) && outputFile.isEmpty()) {
+      JarVisitor visitor = configuredFactory.apply(Paths.get(location))
+                                            .setParallelism(PARALLELISM)
+                                            .start();
+      printConsoleWindow(signaturesToString(visitor.getVerification()) + visitor.jarToString());
+      return;
+    }
+
+    if (!isClasspath(location)) {
+      try (FileChannel channel = openOutputFile(outputFile)) {
+        JarVisitor visitor = configuredFactory.apply(Paths.get(location))
+                                              .setParallelism(PARALLELISM)
+                                              .setSink(OutputSink.of(channel))
+                                              .start();
+        printConsoleWindow(signaturesToString(visitor.getVerification()) + "Output written to " + outputFile);
+      } catch (IOException e) {
+        e.printStackTrace();
+        errorPopup("Output file couldn't be written: " + e.getMessage());
+      }
+      return;
+    }
+
+    try {
+      List<Path> archives = Classpath.resolve(location);
+      Counters before = Counters.current();
+      ClasspathAnalysis analysis = new ClasspathAnalysis(archives, configuredFactory)
+          .setParallelism(PARALLELISM)
+          .setExecution(archives.size() < VIRTUAL_THREAD_ARCHIVES ? ClasspathAnalysis.Execution.WORK_STEALING
+                                                                  : ClasspathAnalysis.Execution.VIRTUAL_THREADS)
+          .start();
+      String throughput = Counters.current().since(before) + System.lineSeparator();
+      String summary = analysis.summaryToString() + throughput + analysis.verificationToString();
+      if (outputFile.isEmpty()) {
+        printConsoleWindow(summary + analysis.jarToString());
+        return;
+      }
+
+      try (FileChannel channel = openOutputFile(outputFile)) {
+        analysis.writeTo(OutputSink.of(channel));
+        printConsoleWindow(summary + "Output written to " + outputFile);
+      } catch (IOException e) {
+        e.printStackTrace();
+        errorPopup("Output file couldn't be written: " + e.getMessage());
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      errorPopup("Classpath couldn't be resolved: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Open output file for writing, replacing its previous content.
+   *
+   * @param outputFile  Path of output file
+   * @return            Channel writing to the file
+   * @throws IOException  File couldn't be opened
+   */
+  private static FileChannel openOutputFile(final String outputFile) throws IOException {
+    return FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /**
+   * Print outcome of signature verification, waiting for it to finish.
+   *
+   * @param verification  Verification of the JAR file, or null if it wasn't traversed
+   * @return              Line with outcome, or nothing if verification is off
+   */
+  private static String signaturesToString(final SignatureVerification verification) {
+    if (verification == null || verification.getMode() == SignatureVerification.Mode.OFF) {
+      return "";
+    }
+    return "Signatures: " + verification.getResult() + System.lineSeparator();
+  }
+
   /**
    * Print text in a new window containing a scrollable text area.
    *
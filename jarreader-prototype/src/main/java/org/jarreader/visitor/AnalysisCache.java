@@ -0,0 +1,261 @@
+package org.jarreader.visitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * On-disk cache of analysis results per JAR file, shared by all visitors and processes using the
+ * same cache directory.
+ * <p>
+ * Results are keyed by the SHA-256 hash of the JAR file content, the analyzer version, the kind of
+ * visitor and the visitor options affecting its output. A cached result is restored with
+ * {@link JarVisitor#readState(java.io.DataInput)}, so the JAR file is hashed but not parsed.
+ * <p>
+ * Results are written to a temporary file and moved into place atomically, so concurrent
+ * processes never read partial results. When the cache grows beyond its size limit, least recently
+ * used results are evicted while holding a lock on the cache directory.
+ */
+public final class AnalysisCache {
+
+  /**
+   * Version of the analysis results. Increase it whenever the output or the written state of a
+   * visitor changes, so results of older versions are not used anymore.
+   */
+  public final static int ANALYZER_VERSION = 2;
+
+  private final static int MAGIC = 0x4a524143;
+  private final static long DEFAULT_MAX_SIZE = 1L << 30;
+  private final static String RESULT_SUFFIX = ".result";
+  private final static String LOCK_FILE_NAME = "cache.lock";
+  private final static int HASH_BUFFER_SIZE = 1 << 16;
+
+  // File locks are held by the process, threads of one process are serialized separately. Unlike a
+  // monitor, waiting for the lock doesn't pin the carrier of a virtual thread.
+  private final static ReentrantLock PROCESS_LOCK = new ReentrantLock();
+
+  private final Path directory;
+  private long maxSize;
+  private final AtomicInteger hitCount;
+  private final AtomicInteger missCount;
+
+  /**
+   * Constructor for analysis cache.
+   *
+   * @param directory   Cache directory, created if it doesn't exist
+   */
+  public AnalysisCache(final Path directory) {
+    this.directory = directory.toAbsolutePath();
+    this.maxSize = DEFAULT_MAX_SIZE;
+    this.hitCount = new AtomicInteger();
+    this.missCount = new AtomicInteger();
+  }
+
+  /**
+   * Set size limit of cache directory. Least recently used results are evicted beyond it.
+   *
+   * @param bytes   Maximum total size of cached results in bytes
+   * @return        Reference to self
+   */
+  public AnalysisCache setMaxSize(final long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Cache size must not be negative, got " + bytes);
+    }
+    maxSize = bytes;
+
+    return this;
+  }
+
+  /**
+   * Get number of results restored from the cache.
+   *
+   * @return    Number of cache hits
+   */
+  public int getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Get number of results not found in the cache.
+   *
+   * @return    Number of cache misses
+   */
+  public int getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Compute cache key of a visitor's result.
+   *
+   * @param visitor   Visitor about to traverse its JAR file
+   * @return          Cache key, or null if JAR file couldn't be hashed or isn't a file
+   */
+  String keyOf(final JarVisitor visitor) {
+    if (!visitor.isCacheable()) {
+      return null;
+    }
+
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      try (FileChannel channel = FileChannel.open(visitor.getJarPath(), StandardOpenOption.READ)) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+          buffer.flip();
+          digest.update(buffer);
+          buffer.clear();
+        }
+      }
+
+      final String options = ANALYZER_VERSION + "\n" + visitor.getClass().getName() + "\n" + visitor.getConfiguration();
+      digest.update(options.getBytes(StandardCharsets.UTF_8));
+
+      final StringBuilder key = new StringBuilder();
+      for (byte b : digest.digest()) {
+        key.append(String.format("%02x", b));
+      }
+      return key.toString();
+    } catch (IOException | NoSuchAlgorithmException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Restore cached result into a visitor with empty state.
+   *
+   * @param key       Cache key computed by {@link #keyOf(JarVisitor)}
+   * @param visitor   Visitor to restore result into
+   * @return          True if result was cached and restored
+   */
+  boolean load(final String key, final JarVisitor visitor) {
+    final Path resultFile = directory.resolve(key + RESULT_SUFFIX);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(resultFile)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a cached result: " + resultFile);
+      }
+
+      // Restore into a fork first, so a corrupt result doesn't leave partial state behind
+      final JarVisitor cached = visitor.fork();
+      cached.readState(in);
+      visitor.merge(cached);
+    } catch (NoSuchFileException e) {
+      missCount.incrementAndGet();
+      return false;
+    } catch (IOException e) {
+      e.printStackTrace();
+      missCount.incrementAndGet();
+      return false;
+    }
+
+    // Mark as recently used for eviction, the result might have been evicted meanwhile
+    try {
+      Files.setLastModifiedTime(resultFile, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // Ignore
+    }
+    hitCount.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Store result of a visitor that has traversed its JAR file, then evict results beyond the
+   * size limit.
+   *
+   * @param key       Cache key computed by {@link #keyOf(JarVisitor)}
+   * @param visitor   Visitor holding the result
+   */
+  void store(final String key, final JarVisitor visitor) {
+    try {
+      Files.createDirectories(directory);
+      final Path temporary = Files.createTempFile(directory, key, ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        out.writeInt(MAGIC);
+        visitor.writeState(out);
+      } catch (IOException e) {
+        Files.deleteIfExists(temporary);
+        throw e;
+      }
+      Files.move(temporary, directory.resolve(key + RESULT_SUFFIX),
+                 StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      evict();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Delete least recently used results until the cache fits into its size limit.
+   *
+   * @throws IOException  Cache directory couldn't be locked or listed
+   */
+  private void evict() throws IOException {
+    PROCESS_LOCK.lock();
+    try {
+      try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+                                                      StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+           FileLock lock = lockChannel.lock()) {
+        final List<CachedResult> results = new ArrayList<>();
+        long totalSize = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + RESULT_SUFFIX)) {
+          for (Path path : stream) {
+            try {
+              BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+              results.add(new CachedResult(path, attributes.size(), attributes.lastModifiedTime()));
+              totalSize += attributes.size();
+            } catch (NoSuchFileException e) {
+              // Evicted by another process
+            }
+          }
+        }
+
+        results.sort(Comparator.comparing(result -> result.lastUsed));
+        for (CachedResult result : results) {
+          if (totalSize <= maxSize) {
+            break;
+          }
+          Files.deleteIfExists(result.path);
+          totalSize -= result.size;
+        }
+      }
+    } finally {
+      PROCESS_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Cached result file with the attributes used for eviction.
+   */
+  private final static class CachedResult {
+    private final Path path;
+    private final long size;
+    private final FileTime lastUsed;
+
+    CachedResult(final Path path, final long size, final FileTime lastUsed) {
+      this.path = path;
+      this.size = size;
+      this.lastUsed = lastUsed;
+    }
+  }
+}
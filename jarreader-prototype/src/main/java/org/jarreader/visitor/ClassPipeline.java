@@ -0,0 +1,481 @@
+package org.jarreader.visitor;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.jarreader.archive.ArchiveEntry;
+import org.jarreader.archive.ArchiveReader;
+import org.jarreader.profiling.ClassTiming;
+import org.jarreader.profiling.Phase;
+import org.jarreader.profiling.PhaseTiming;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Traversal of class entries as a pipeline of four stages connected by bounded queues:
+ * <ul>
+ * <li>{@link Stage#READ} reads stored entry data from the archive
+ * <li>{@link Stage#INFLATE} decompresses entry data
+ * <li>{@link Stage#PARSE} parses class files into BCEL representation
+ * <li>{@link Stage#VISIT} visits every parsed class with a {@link JarVisitor#fork() forked} visitor
+ * </ul>
+ * Every stage runs on its own threads, so disk I/O overlaps with CPU-bound parsing. Visited
+ * classes are merged into the traversing visitor in entry order, so output is the same as with
+ * sequential traversal. With a {@link MemoryBudget}, the parse stage waits for memory before
+ * parsing a class.
+ * <p>
+ * Statistics of the stages can be read during and after traversal to find the stage limiting
+ * throughput. A stage with a full input queue and high utilization is the bottleneck. Work of
+ * every stage is also recorded as a Flight Recorder event of the {@link Phase} of the same name.
+ * Class events only cover visiting, since the other stages of a class run on other threads.
+ */
+public final class ClassPipeline {
+
+  /**
+   * Stages of the pipeline in processing order.
+   */
+  public enum Stage { READ, INFLATE, PARSE, VISIT }
+
+  private final static int DEFAULT_QUEUE_CAPACITY = 64;
+
+  private final int[] threadCounts;
+  private int queueCapacity;
+  private volatile List<StageRunner<?, ?>> runners;
+
+  /**
+   * Constructor for pipeline running every stage on a single thread.
+   */
+  public ClassPipeline() {
+    threadCounts = new int[Stage.values().length];
+    for (Stage stage : Stage.values()) {
+      threadCounts[stage.ordinal()] = 1;
+    }
+    queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    runners = Collections.emptyList();
+  }
+
+  /**
+   * Set number of threads running a stage.
+   *
+   * @param stage     Stage of pipeline
+   * @param threads   Number of threads, at least 1
+   * @return          Reference to self
+   */
+  public ClassPipeline setThreads(final Stage stage, final int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Stage " + stage + " needs at least 1 thread, got " + threads);
+    }
+    threadCounts[stage.ordinal()] = threads;
+
+    return this;
+  }
+
+  /**
+   * Set capacity of the queues between stages.
+   *
+   * @param capacity  Maximum number of entries waiting for a stage
+   * @return          Reference to self
+   */
+  public ClassPipeline setQueueCapacity(final int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be at least 1, got " + capacity);
+    }
+    queueCapacity = capacity;
+
+    return this;
+  }
+
+  /**
+   * Get statistics of stages of the running or last finished traversal.
+   *
+   * @return    Statistics in stage order, empty before the first traversal
+   */
+  public List<StageStatistics> getStatistics() {
+    List<StageStatistics> statistics = new ArrayList<>();
+    for (StageRunner<?, ?> runner : runners) {
+      statistics.add(runner.statistics());
+    }
+    return statistics;
+  }
+
+  /**
+   * Traverse class entries of an archive and merge visited classes into a visitor.
+   *
+   * @param visitor       Visitor to merge visited classes into
+   * @param archive       Opened archive containing the entries
+   * @param classEntries  Class entries to visit
+   * @return              True if every entry was merged, false if the pipeline was interrupted
+   * @throws Error        A stage thread failed with an error, rethrown after all stages have ended
+   */
+  boolean run(final JarVisitor visitor, final ArchiveReader archive, final List<ArchiveEntry> classEntries) {
+    // Classes are parsed with BCEL, which can't parse module descriptors
+    final List<ArchiveEntry> entries = classEntries.stream()
+                                                   .filter(entry -> !JarVisitor.isModuleDescriptor(entry))
+                                                   .collect(Collectors.toList());
+    final BlockingQueue<Item<ArchiveEntry>> entryQueue = new LinkedBlockingQueue<>();
+    final BlockingQueue<Item<ByteBuffer>> storedQueue = new ArrayBlockingQueue<>(queueCapacity);
+    final BlockingQueue<Item<InputStream>> inflatedQueue = new ArrayBlockingQueue<>(queueCapacity);
+    final BlockingQueue<Item<JavaClass>> parsedQueue = new ArrayBlockingQueue<>(queueCapacity);
+    final BlockingQueue<Item<JarVisitor>> visitedQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+    final List<StageRunner<?, ?>> stageRunners = new ArrayList<>();
+    stageRunners.add(new StageRunner<>(Stage.READ, entryQueue, storedQueue,
+        item -> archive.readStored(item.entry)));
+    stageRunners.add(new StageRunner<>(Stage.INFLATE, storedQueue, inflatedQueue,
+        item -> archive.decompress(item.entry, item.value)));
+    final MemoryBudget budget = visitor.getMemoryBudget();
+    stageRunners.add(new StageRunner<>(Stage.PARSE, inflatedQueue, parsedQueue, item -> {
+      try (final InputStream classStream = item.value) {
+        // Memory of the class is reserved from parsing until it is visited
+        if (budget != null) {
+          budget.reserve(item.entry.getSize());
+        }
+        try {
+          return new ClassParser(classStream, item.entry.getName()).parse();
+        } catch (Exception | Error e) {
+          if (budget != null) {
+            budget.release(item.entry.getSize());
+          }
+          throw e;
+        }
+      }
+    }));
+    stageRunners.add(new StageRunner<>(Stage.VISIT, parsedQueue, visitedQueue, item -> {
+      JarVisitor partial = visitor.fork();
+      try (final ClassTiming timing = ClassTiming.start(item.entry.getName(), item.entry.getSize())) {
+        item.value.accept(partial);
+      } finally {
+        if (budget != null) {
+          budget.release(item.entry.getSize());
+        }
+      }
+      visitor.retainWithinBudget(partial, 0);
+      return partial;
+    }));
+    runners = stageRunners;
+
+    for (int i = 0; i < entries.size(); ++i) {
+      entryQueue.add(new Item<>(i, entries.get(i), entries.get(i)));
+    }
+
+    // Every stage ends the next one after its last thread has finished
+    for (int i = 0; i < stageRunners.size(); ++i) {
+      int downstreamThreads = i + 1 < stageRunners.size() ? stageRunners.get(i + 1).threadCount : 1;
+      stageRunners.get(i).start(downstreamThreads);
+    }
+    for (int i = 0; i < stageRunners.get(0).threadCount; ++i) {
+      entryQueue.add(Item.end());
+    }
+
+    boolean merged = false;
+    try {
+      merged = mergeInOrder(visitor, visitedQueue, entries.size());
+      if (!merged || stageRunners.stream().anyMatch(runner -> runner.failure != null)) {
+        // Stages before an ended one may be blocked on queues nobody takes from anymore
+        stageRunners.forEach(StageRunner::interrupt);
+      }
+      for (StageRunner<?, ?> runner : stageRunners) {
+        runner.join();
+      }
+    } catch (InterruptedException e) {
+      stageRunners.forEach(StageRunner::interrupt);
+      Thread.currentThread().interrupt();
+    }
+
+    for (StageRunner<?, ?> runner : stageRunners) {
+      if (runner.failure != null) {
+        throw runner.failure;
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Merge visited classes into visitor in entry order. Classes finishing out of order wait
+   * until all preceding classes are merged.
+   *
+   * @param visitor       Visitor to merge into
+   * @param visitedQueue  Output of last stage
+   * @param count         Number of entries
+   * @return              True if every entry was merged, false if the pipeline ended early
+   * @throws InterruptedException   Waiting for the pipeline was interrupted
+   */
+  private static boolean mergeInOrder(final JarVisitor visitor, final BlockingQueue<Item<JarVisitor>> visitedQueue,
+                                   final int count) throws InterruptedException {
+    final Map<Integer, Item<JarVisitor>> pending = new HashMap<>();
+    int next = 0;
+
+    while (next < count) {
+      Item<JarVisitor> item = visitedQueue.take();
+      if (item.isEnd()) {
+        break;
+      }
+      pending.put(item.sequence, item);
+
+      while (pending.containsKey(next)) {
+        Item<JarVisitor> partial = pending.remove(next++);
+        if (partial.value != null) {
+          visitor.mergeWithinBudget(visitor, partial.value);
+          visitor.drainToSink();
+        }
+      }
+    }
+    return next == count;
+  }
+
+  /**
+   * Work of a stage on one entry.
+   *
+   * @param <I>   Input of stage
+   * @param <O>   Output of stage
+   */
+  @FunctionalInterface
+  private interface StageFunction<I, O> {
+    O apply(final Item<I> item) throws Exception;
+  }
+
+  /**
+   * Entry passing through the pipeline. Entries failing in a stage are passed on with a null
+   * value, so merging in order doesn't wait for them.
+   *
+   * @param <T>   Type of value produced by previous stage
+   */
+  private final static class Item<T> {
+    private final static Item<?> END = new Item<>(-1, null, null);
+
+    final int sequence;
+    final ArchiveEntry entry;
+    final T value;
+
+    Item(final int sequence, final ArchiveEntry entry, final T value) {
+      this.sequence = sequence;
+      this.entry = entry;
+      this.value = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Item<T> end() {
+      return (Item<T>) END;
+    }
+
+    boolean isEnd() {
+      return this == END;
+    }
+  }
+
+  /**
+   * Threads of a stage with their statistics.
+   *
+   * @param <I>   Input of stage
+   * @param <O>   Output of stage
+   */
+  private final class StageRunner<I, O> {
+    private final Stage stage;
+    private final Phase phase;
+    private final int threadCount;
+    private final BlockingQueue<Item<I>> input;
+    private final BlockingQueue<Item<O>> output;
+    private final StageFunction<I, O> function;
+    private final List<Thread> threads;
+    private final AtomicInteger runningThreads;
+    private final AtomicLong processed;
+    private final AtomicLong busyNanos;
+    private volatile int peakQueueDepth;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    // First error a thread of this stage died of
+    private volatile Error failure;
+    // Set when the whole pipeline is stopped, nobody takes the end of the stage anymore
+    private volatile boolean cancelled;
+
+    StageRunner(final Stage stage, final BlockingQueue<Item<I>> input, final BlockingQueue<Item<O>> output,
+                final StageFunction<I, O> function) {
+      this.stage = stage;
+      // Every stage is timed as the phase of the same name
+      this.phase = Phase.valueOf(stage.name());
+      this.threadCount = threadCounts[stage.ordinal()];
+      this.input = input;
+      this.output = output;
+      this.function = function;
+      this.threads = new ArrayList<>();
+      this.runningThreads = new AtomicInteger(threadCount);
+      this.processed = new AtomicLong();
+      this.busyNanos = new AtomicLong();
+    }
+
+    void start(final int downstreamThreads) {
+      startNanos = System.nanoTime();
+      for (int i = 0; i < threadCount; ++i) {
+        Thread thread = new Thread(() -> work(downstreamThreads),
+                                   "pipeline-" + stage.name().toLowerCase() + '-' + (i + 1));
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+      }
+    }
+
+    private void work(final int downstreamThreads) {
+      try {
+        while (true) {
+          peakQueueDepth = Math.max(peakQueueDepth, input.size());
+          Item<I> item = input.take();
+          if (item.isEnd()) {
+            break;
+          }
+
+          long begin = System.nanoTime();
+          O result = null;
+          if (item.value != null) {
+            try (final PhaseTiming timing = PhaseTiming.start(phase)) {
+              result = function.apply(item);
+            } catch (InterruptedException e) {
+              // Interrupted while waiting for memory, the thread ends like while waiting for items
+              throw e;
+            } catch (Exception e) {
+              e.printStackTrace();
+            }
+          }
+          busyNanos.addAndGet(System.nanoTime() - begin);
+          processed.incrementAndGet();
+
+          output.put(new Item<>(item.sequence, item.entry, result));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Error e) {
+        // The item is lost, merging stops once the remaining threads have ended the next stage
+        if (failure == null) {
+          failure = e;
+        }
+      } finally {
+        if (runningThreads.decrementAndGet() == 0) {
+          endNanos = System.nanoTime();
+          endDownstream(downstreamThreads);
+        }
+      }
+    }
+
+    /**
+     * Pass end of stage on to every thread of the next stage. A thread ended by an interrupt
+     * still passes it on, unless the whole pipeline is cancelled.
+     *
+     * @param downstreamThreads   Number of threads of the next stage
+     */
+    private void endDownstream(final int downstreamThreads) {
+      boolean interrupted = Thread.interrupted();
+      try {
+        for (int i = 0; i < downstreamThreads && !cancelled; ++i) {
+          output.put(Item.end());
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    void join() throws InterruptedException {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+
+    void interrupt() {
+      cancelled = true;
+      threads.forEach(Thread::interrupt);
+    }
+
+    StageStatistics statistics() {
+      long end = endNanos != 0 ? endNanos : System.nanoTime();
+      return new StageStatistics(stage, threadCount, input.size(), peakQueueDepth, processed.get(),
+                                 busyNanos.get(), end - startNanos);
+    }
+  }
+
+  /**
+   * Snapshot of statistics of a pipeline stage.
+   */
+  public final static class StageStatistics {
+    private final Stage stage;
+    private final int threads;
+    private final int queueDepth;
+    private final int peakQueueDepth;
+    private final long processed;
+    private final long busyNanos;
+    private final long elapsedNanos;
+
+    StageStatistics(final Stage stage, final int threads, final int queueDepth, final int peakQueueDepth,
+                    final long processed, final long busyNanos, final long elapsedNanos) {
+      this.stage = stage;
+      this.threads = threads;
+      this.queueDepth = queueDepth;
+      this.peakQueueDepth = peakQueueDepth;
+      this.processed = processed;
+      this.busyNanos = busyNanos;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public Stage getStage() {
+      return stage;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    /**
+     * @return  Number of entries waiting in the input queue of the stage
+     */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    /**
+     * @return  Highest number of entries seen waiting in the input queue of the stage
+     */
+    public int getPeakQueueDepth() {
+      return peakQueueDepth;
+    }
+
+    /**
+     * @return  Number of entries processed by the stage
+     */
+    public long getProcessed() {
+      return processed;
+    }
+
+    /**
+     * @return  Entries processed per second since the stage was started
+     */
+    public double getThroughput() {
+      return elapsedNanos == 0 ? 0 : processed * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return  Ratio of time the threads of the stage spent processing instead of waiting
+     */
+    public double getUtilization() {
+      return elapsedNanos == 0 ? 0 : (double) busyNanos / (elapsedNanos * threads);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-8s threads: %2d, queue: %4d (peak %4d), processed: %8d, %10.1f/s, utilization: %3.0f%%",
+                           stage, threads, queueDepth, peakQueueDepth, processed, getThroughput(),
+                           getUtilization() * 100);
+    }
+  }
+}
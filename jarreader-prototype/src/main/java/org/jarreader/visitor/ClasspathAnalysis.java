@@ -0,0 +1,513 @@
+package org.jarreader.visitor;
+
+import org.jarreader.archive.ArchiveEntry;
+import org.jarreader.archive.ArchiveReader;
+import org.jarreader.archive.Classpath;
+import org.jarreader.archive.SignatureVerification;
+import org.jarreader.profiling.ArchiveTiming;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Analysis of all archives on a classpath with one kind of visitor, producing one merged result.
+ * <p>
+ * Archives are traversed on a work-stealing {@link ForkJoinPool}. Every archive is a task, and
+ * the classes of an archive are recursively split into chunks visited by
+ * {@link JarVisitor#fork() forked} visitors. Idle workers steal chunks of large archives, so a
+ * few big archives among many small ones don't leave cores unused.
+ * <p>
+ * Alternatively every archive gets its own virtual thread, see {@link Execution#VIRTUAL_THREADS}.
+ * This suits classpaths of thousands of small archives, such as a local Maven repository, where
+ * opening archives and reading their central directories dominates and would block the workers
+ * of the work-stealing pool.
+ * <p>
+ * Results are attributed to archives: every archive has its own visitor holding only the classes
+ * of that archive. The merged visitor combines all archives in classpath order, so the merged
+ * output is deterministic regardless of scheduling. Archives whose result is in the
+ * {@link AnalysisCache} of the visitors are not traversed.
+ */
+public final class ClasspathAnalysis {
+
+  // Number of classes below which a chunk is visited instead of split further
+  private final static int CHUNK_SIZE = 64;
+
+  // Default number of archives open at the same time with virtual threads, below common file limits
+  private final static int DEFAULT_MAX_OPEN_ARCHIVES = 256;
+
+  /**
+   * Scheduling of archive traversal.
+   */
+  public enum Execution {
+    /**
+     * Archives and chunks of their classes are tasks of one work-stealing pool of platform threads.
+     */
+    WORK_STEALING,
+
+    /**
+     * Every archive has its own virtual thread, which blocks while hashing, opening and listing
+     * the archive. Chunks of classes are read and parsed on a separate fixed pool of platform
+     * threads bounded by the parallelism, so CPU-heavy parsing doesn't occupy the carriers of
+     * the virtual threads. The number of open archives is limited as well.
+     */
+    VIRTUAL_THREADS
+  }
+
+  private final List<Path> archives;
+  private final Function<Path, JarVisitor> visitorFactory;
+  private final List<JarResult> jarResults;
+  private int parallelism;
+  private Execution execution;
+  private int maxOpenArchives;
+  private JarVisitor mergedVisitor;
+
+  /**
+   * Constructor for classpath analysis.
+   *
+   * @param archives        Archives to analyse, in classpath order
+   * @param visitorFactory  Creates the configured visitor for a JAR file path, for example
+   *                        {@code CodeInfoVisitor::new}
+   */
+  public ClasspathAnalysis(final List<Path> archives, final Function<Path, JarVisitor> visitorFactory) {
+    this.archives = new ArrayList<>(archives);
+    this.visitorFactory = visitorFactory;
+    this.jarResults = new ArrayList<>();
+    this.parallelism = Runtime.getRuntime().availableProcessors();
+    this.execution = Execution.WORK_STEALING;
+    this.maxOpenArchives = DEFAULT_MAX_OPEN_ARCHIVES;
+  }
+
+  /**
+   * Create analysis of a classpath string. See {@link Classpath} for accepted elements.
+   *
+   * @param classpath       Classpath string
+   * @param visitorFactory  Creates the visitor for a JAR file path
+   * @return                Analysis of archives on the classpath
+   * @throws IOException    Classpath couldn't be resolved
+   */
+  public static ClasspathAnalysis of(final String classpath, final Function<Path, JarVisitor> visitorFactory)
+      throws IOException {
+    return new ClasspathAnalysis(Classpath.resolve(classpath), visitorFactory);
+  }
+
+  /**
+   * Set number of worker threads.
+   *
+   * @param threads   Number of worker threads
+   * @return          Reference to self
+   */
+  public ClasspathAnalysis setParallelism(final int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1, got " + threads);
+    }
+    parallelism = threads;
+
+    return this;
+  }
+
+  /**
+   * Set scheduling of archive traversal.
+   *
+   * @param execution   Scheduling, {@link Execution#WORK_STEALING} by default
+   * @return            Reference to self
+   */
+  public ClasspathAnalysis setExecution(final Execution execution) {
+    this.execution = execution;
+
+    return this;
+  }
+
+  /**
+   * Set number of archives open at the same time with {@link Execution#VIRTUAL_THREADS}.
+   *
+   * @param archives  Maximum number of open archives
+   * @return          Reference to self
+   */
+  public ClasspathAnalysis setMaxOpenArchives(final int archives) {
+    if (archives < 1) {
+      throw new IllegalArgumentException("Maximum of open archives must be at least 1, got " + archives);
+    }
+    maxOpenArchives = archives;
+
+    return this;
+  }
+
+  /**
+   * Analyse all archives and merge their results.
+   *
+   * @return    Reference to self
+   */
+  public ClasspathAnalysis start() {
+    jarResults.clear();
+    for (Path archive : archives) {
+      jarResults.add(new JarResult(visitorFactory.apply(archive)));
+    }
+
+    if (execution == Execution.VIRTUAL_THREADS) {
+      traverseOnVirtualThreads();
+    } else {
+      traverseWorkStealing();
+    }
+
+    // Merge in classpath order, independent of the order archives finished
+    mergedVisitor = null;
+    if (!jarResults.isEmpty()) {
+      mergedVisitor = jarResults.get(0).visitor.fork();
+      for (JarResult result : jarResults) {
+        // Per-archive visitors stay reachable through their results, so merging copies their state
+        final long retainedBefore = mergedVisitor.getRetainedSize();
+        mergedVisitor.merge(result.visitor);
+        result.visitor.retainWithinBudget(mergedVisitor, retainedBefore);
+      }
+      mergedVisitor.visitEnd();
+    }
+
+    return this;
+  }
+
+  /**
+   * Traverse every archive as a task of a work-stealing pool.
+   */
+  private void traverseWorkStealing() {
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          List<JarTask> tasks = new ArrayList<>();
+          jarResults.forEach(result -> tasks.add(new JarTask(result)));
+          invokeAll(tasks);
+        }
+      });
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Traverse every archive on its own virtual thread, parsing classes on a bounded pool.
+   */
+  private void traverseOnVirtualThreads() {
+    final ExecutorService parsers = Executors.newFixedThreadPool(parallelism);
+    final Semaphore openArchives = new Semaphore(maxOpenArchives);
+    try (ExecutorService archiveThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (JarResult result : jarResults) {
+        archiveThreads.submit(() -> {
+          openArchives.acquireUninterruptibly();
+          try {
+            traverse(result, (visitor, archive, entries) -> visitChunks(parsers, visitor, archive, entries));
+          } finally {
+            openArchives.release();
+          }
+        });
+      }
+    } finally {
+      // Closing the executor of archive threads waited for all of them
+      parsers.shutdown();
+    }
+  }
+
+  /**
+   * Visit chunks of consecutive classes on a pool and merge them in entry order.
+   *
+   * @param parsers   Pool visiting chunks
+   * @param visitor   Visitor of the archive
+   * @param archive   Opened archive containing the entries
+   * @param entries   Class entries in archive order
+   * @return          Visitor holding the result of all entries, or null if entries were skipped
+   *                  as the traversal was interrupted
+   * @throws InterruptedException   Waiting for a chunk was interrupted
+   * @throws ExecutionException     Visiting a chunk failed
+   */
+  private static JarVisitor visitChunks(final ExecutorService parsers, final JarVisitor visitor,
+                                        final ArchiveReader archive, final List<ArchiveEntry> entries)
+      throws InterruptedException, ExecutionException {
+    final List<Future<JarVisitor>> chunks = new ArrayList<>();
+    for (int start = 0; start < entries.size(); start += CHUNK_SIZE) {
+      final List<ArchiveEntry> chunk = entries.subList(start, Math.min(entries.size(), start + CHUNK_SIZE));
+      chunks.add(parsers.submit(() -> {
+        JarVisitor partial = visitor.fork();
+        for (ArchiveEntry entry : chunk) {
+          if (!visitor.visitWithinBudget(partial, archive, entry)) {
+            return null;
+          }
+        }
+        return partial;
+      }));
+    }
+
+    final JarVisitor merged = visitor.fork();
+    for (Future<JarVisitor> chunk : chunks) {
+      JarVisitor partial = chunk.get();
+      if (partial == null) {
+        return null;
+      }
+      visitor.mergeWithinBudget(merged, partial);
+    }
+    return merged;
+  }
+
+  /**
+   * Traverse one archive unless its result is cached, recording class count and elapsed time.
+   *
+   * @param result    Result of the archive
+   * @param classes   Visits the class entries of the opened archive
+   */
+  private static void traverse(final JarResult result, final ClassVisiting classes) {
+    final long start = System.nanoTime();
+    final JarVisitor visitor = result.visitor;
+
+    try (final ArchiveTiming timing = ArchiveTiming.start(visitor.getJarPath())) {
+      final AnalysisCache cache = visitor.getCache();
+      final String cacheKey = cache != null ? cache.keyOf(visitor) : null;
+      if (cacheKey != null && cache.load(cacheKey, visitor)) {
+        result.cached = true;
+        timing.setCached(true);
+      } else {
+        try (final ArchiveReader archive = visitor.openArchive()) {
+          List<ArchiveEntry> entries = visitor.getClassEntries(archive);
+          timing.setEntries(entries);
+          visitor.startVerification(entries);
+          result.classCount = entries.size();
+          boolean complete = true;
+          if (!entries.isEmpty()) {
+            JarVisitor visited = classes.visit(visitor, archive, entries);
+            complete = visited != null;
+            if (complete) {
+              visitor.mergeWithinBudget(visitor, visited);
+            }
+          }
+          // Results missing classes skipped after an interrupt aren't cached
+          if (complete && cacheKey != null) {
+            cache.store(cacheKey, visitor);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (IOException | ExecutionException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+
+    result.elapsedNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Get results of archives in classpath order.
+   *
+   * @return    Result of every archive
+   */
+  public List<JarResult> getJarResults() {
+    return Collections.unmodifiableList(jarResults);
+  }
+
+  /**
+   * Get visitor holding the merged result of all archives.
+   *
+   * @return    Merged visitor, or null if the analysis hasn't run or the classpath is empty
+   */
+  public JarVisitor getMergedVisitor() {
+    return mergedVisitor;
+  }
+
+  /**
+   * Get merged information retrieved from all archives.
+   *
+   * @return    Merged information
+   */
+  public String jarToString() {
+    return mergedVisitor == null ? "" : mergedVisitor.jarToString();
+  }
+
+  /**
+   * Write merged information retrieved from all archives to a sink, without building it as one
+   * string if the visitor supports that.
+   *
+   * @param sink  Sink to write merged information to
+   * @throws IOException  Information couldn't be written
+   */
+  public void writeTo(final OutputSink sink) throws IOException {
+    if (mergedVisitor != null) {
+      mergedVisitor.writeTo(sink);
+    }
+    sink.flush();
+  }
+
+  /**
+   * Print archives with their number of classes and traversal time.
+   *
+   * @return    Textual summary of analysed archives
+   */
+  public String summaryToString() {
+    StringBuilder sb = new StringBuilder();
+    for (JarResult result : jarResults) {
+      if (result.cached) {
+        sb.append(String.format("%6s cached  %8.1f ms  %s%n",
+                                "", result.elapsedNanos / 1e6, result.getJarPath()));
+      } else {
+        sb.append(String.format("%6d classes %8.1f ms  %s%n",
+                                result.classCount, result.elapsedNanos / 1e6, result.getJarPath()));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Print outcome of signature verification of every signed archive, waiting for verification
+   * to finish. Time spent verifying is not part of the {@link #summaryToString() summary}.
+   *
+   * @return  Textual verification result per signed archive
+   */
+  public String verificationToString() {
+    StringBuilder sb = new StringBuilder();
+    for (JarResult result : jarResults) {
+      final SignatureVerification verification = result.visitor.getVerification();
+      if (verification != null) {
+        final SignatureVerification.Result verified = verification.getResult();
+        if (verified.isSigned()) {
+          sb.append(String.format("signatures %s: %s%n", result.getJarPath(), verified));
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Result of analysing one archive of the classpath.
+   */
+  public final static class JarResult {
+    private final JarVisitor visitor;
+    private int classCount;
+    private long elapsedNanos;
+    private boolean cached;
+    private boolean finished;
+
+    JarResult(final JarVisitor visitor) {
+      this.visitor = visitor;
+    }
+
+    public Path getJarPath() {
+      return visitor.getJarPath();
+    }
+
+    public int getClassCount() {
+      return classCount;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    /**
+     * Check whether the result was restored from the {@link AnalysisCache}. Class count is
+     * unknown for cached results.
+     *
+     * @return    True if archive wasn't traversed
+     */
+    public boolean isCached() {
+      return cached;
+    }
+
+    /**
+     * Get signature verification of the archive, running apart from its analysis.
+     *
+     * @return    Verification, or null if the archive wasn't traversed
+     */
+    public SignatureVerification getVerification() {
+      return visitor.getVerification();
+    }
+
+    /**
+     * Get visitor holding only the classes of this archive. The visitor is finished on first
+     * access, so post-processing is only paid for archives whose result is used.
+     *
+     * @return    Finished visitor of this archive
+     */
+    public synchronized JarVisitor getVisitor() {
+      if (!finished) {
+        visitor.visitEnd();
+        finished = true;
+      }
+      return visitor;
+    }
+  }
+
+  /**
+   * Task traversing one archive.
+   */
+  private final static class JarTask extends RecursiveAction {
+    private final JarResult result;
+
+    JarTask(final JarResult result) {
+      this.result = result;
+    }
+
+    @Override
+    protected void compute() {
+      traverse(result, (visitor, archive, entries) -> new ChunkTask(visitor, archive, entries).invoke());
+    }
+  }
+
+  /**
+   * Visiting of the class entries of an opened archive, returning the visitor holding their
+   * result, or null if entries were skipped as the traversal was interrupted.
+   */
+  private interface ClassVisiting {
+    JarVisitor visit(JarVisitor visitor, ArchiveReader archive, List<ArchiveEntry> entries)
+        throws InterruptedException, ExecutionException;
+  }
+
+  /**
+   * Task visiting a chunk of consecutive classes of an archive. Large chunks are split in halves,
+   * which other workers can steal.
+   */
+  private final static class ChunkTask extends RecursiveTask<JarVisitor> {
+    private final JarVisitor visitor;
+    private final ArchiveReader archive;
+    private final List<ArchiveEntry> entries;
+
+    ChunkTask(final JarVisitor visitor, final ArchiveReader archive, final List<ArchiveEntry> entries) {
+      this.visitor = visitor;
+      this.archive = archive;
+      this.entries = entries;
+    }
+
+    @Override
+    protected JarVisitor compute() {
+      if (entries.size() <= CHUNK_SIZE) {
+        JarVisitor partial = visitor.fork();
+        for (ArchiveEntry entry : entries) {
+          if (!visitor.visitWithinBudget(partial, archive, entry)) {
+            return null;
+          }
+        }
+        return partial;
+      }
+
+      final int middle = entries.size() / 2;
+      ChunkTask second = new ChunkTask(visitor, archive, entries.subList(middle, entries.size()));
+      second.fork();
+      JarVisitor first = new ChunkTask(visitor, archive, entries.subList(0, middle)).compute();
+
+      // First half precedes the second one, as in sequential traversal
+      JarVisitor secondResult = second.join();
+      if (first == null || secondResult == null) {
+        return null;
+      }
+      visitor.mergeWithinBudget(first, secondResult);
+      return first;
+    }
+  }
+}
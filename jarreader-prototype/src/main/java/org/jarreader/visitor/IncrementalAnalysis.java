@@ -0,0 +1,299 @@
+package org.jarreader.visitor;
+
+import org.jarreader.archive.ArchiveEntry;
+import org.jarreader.archive.ArchiveReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Incremental traversal re-visiting only classes changed since the previous run.
+ * <p>
+ * The state file holds a manifest of the class entries of the previous run, with CRC32 and
+ * uncompressed size as recorded in the central directory, and the state of every class as written
+ * by {@link JarVisitor#writeState(java.io.DataOutput)}. A class entry with the same name, CRC32
+ * and size is restored from its state without reading the entry. Changed and added classes are
+ * visited, removed classes are dropped. Per class results are merged in entry order, so output is
+ * the same as with a full traversal.
+ * <p>
+ * State is only reused by visitors of the same kind that wrote it. A missing or unreadable state
+ * file causes a full traversal. The state file is replaced atomically after every run.
+ */
+public final class IncrementalAnalysis {
+
+  private final static int MAGIC = 0x4a524943;
+  private final static int FORMAT_VERSION = 2;
+
+  private final Path stateFile;
+  private int reusedCount;
+  private int visitedCount;
+  private int removedCount;
+
+  /**
+   * Constructor for incremental analysis.
+   *
+   * @param stateFile   File holding state of previous run, created if it doesn't exist
+   */
+  public IncrementalAnalysis(final Path stateFile) {
+    this.stateFile = stateFile.toAbsolutePath();
+  }
+
+  /**
+   * Get number of classes restored from state in the last run.
+   *
+   * @return    Number of unchanged classes
+   */
+  public int getReusedCount() {
+    return reusedCount;
+  }
+
+  /**
+   * Get number of classes visited in the last run.
+   *
+   * @return    Number of changed and added classes
+   */
+  public int getVisitedCount() {
+    return visitedCount;
+  }
+
+  /**
+   * Get number of classes of the previous run that no longer exist.
+   *
+   * @return    Number of removed classes
+   */
+  public int getRemovedCount() {
+    return removedCount;
+  }
+
+  /**
+   * Visit changed classes, restore unchanged ones and merge all of them into the visitor. If
+   * visiting changed classes fails or is interrupted, nothing is merged and the state file is
+   * kept as it is.
+   *
+   * @param visitor       Visitor traversing the archive
+   * @param archive       Opened archive containing the entries
+   * @param entries       Class entries in archive order
+   * @param parallelism   Number of threads visiting changed classes
+   * @return              True if every entry was merged, false if the run was interrupted
+   */
+  boolean run(final JarVisitor visitor, final ArchiveReader archive, final List<ArchiveEntry> entries,
+           final int parallelism) {
+    final Map<String, ClassState> previous = readStates(visitor);
+
+    final List<ArchiveEntry> changed = new ArrayList<>();
+    for (ArchiveEntry entry : entries) {
+      ClassState state = previous.get(entry.getName());
+      if (state == null || !state.matches(entry)) {
+        changed.add(entry);
+      }
+    }
+    final Map<String, JarVisitor> visited = visitEntries(visitor, archive, changed, parallelism);
+    if (visited == null) {
+      return false;
+    }
+
+    // Merge in entry order, restoring unchanged classes from their state
+    final List<ClassState> states = new ArrayList<>(entries.size());
+    final Set<String> names = new HashSet<>();
+    reusedCount = 0;
+    for (ArchiveEntry entry : entries) {
+      names.add(entry.getName());
+      JarVisitor partial = visited.get(entry.getName());
+      try {
+        if (partial != null) {
+          states.add(new ClassState(entry, partial));
+        } else {
+          ClassState state = previous.get(entry.getName());
+          partial = state.restore(visitor);
+          states.add(state);
+          ++reusedCount;
+        }
+        visitor.mergeWithinBudget(visitor, partial);
+        visitor.drainToSink();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    visitedCount = visited.size();
+    removedCount = (int) previous.keySet().stream().filter(name -> !names.contains(name)).count();
+
+    writeStates(visitor, states);
+    return true;
+  }
+
+  /**
+   * Visit every entry with its own forked visitor, so results can be stored per class.
+   *
+   * @param visitor       Visitor to fork
+   * @param archive       Opened archive containing the entries
+   * @param entries       Class entries to visit
+   * @param parallelism   Number of worker threads
+   * @return              Forked visitor of every visited entry by entry name, or null if entries
+   *                      were skipped as the run was interrupted
+   */
+  private static Map<String, JarVisitor> visitEntries(final JarVisitor visitor, final ArchiveReader archive,
+                                                      final List<ArchiveEntry> entries, final int parallelism) {
+    final Map<String, JarVisitor> visited = new HashMap<>();
+    if (parallelism == 1 || entries.size() < 2) {
+      for (ArchiveEntry entry : entries) {
+        JarVisitor partial = visitor.fork();
+        if (!visitor.visitWithinBudget(partial, archive, entry)) {
+          return null;
+        }
+        visited.put(entry.getName(), partial);
+      }
+      return visited;
+    }
+
+    final ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    try {
+      final List<Future<JarVisitor>> partials = new ArrayList<>();
+      for (ArchiveEntry entry : entries) {
+        partials.add(pool.submit(() -> {
+          JarVisitor partial = visitor.fork();
+          return visitor.visitWithinBudget(partial, archive, entry) ? partial : null;
+        }));
+      }
+      for (int i = 0; i < entries.size(); ++i) {
+        JarVisitor partial = partials.get(i).get();
+        if (partial == null) {
+          return null;
+        }
+        visited.put(entries.get(i).getName(), partial);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      throw JarVisitor.rethrow(e);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return visited;
+  }
+
+  /**
+   * Read class states of the previous run.
+   *
+   * @param visitor   Visitor about to traverse the archive
+   * @return          Class states by entry name, empty if state file is missing or of another visitor
+   */
+  private Map<String, ClassState> readStates(final JarVisitor visitor) {
+    final Map<String, ClassState> states = new HashMap<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+          || !in.readUTF().equals(visitor.getClass().getName())) {
+        return states;
+      }
+
+      for (int count = in.readInt(); 0 < count; --count) {
+        String name = in.readUTF();
+        long crc = in.readLong();
+        long size = in.readLong();
+        byte[] state = new byte[in.readInt()];
+        in.readFully(state);
+        states.put(name, new ClassState(name, crc, size, state));
+      }
+    } catch (NoSuchFileException e) {
+      // First run
+    } catch (IOException e) {
+      e.printStackTrace();
+      states.clear();
+    }
+
+    return states;
+  }
+
+  /**
+   * Replace state file with class states of this run.
+   *
+   * @param visitor   Visitor that traversed the archive
+   * @param states    Class states in entry order
+   */
+  private void writeStates(final JarVisitor visitor, final List<ClassState> states) {
+    try {
+      final Path directory = stateFile.getParent();
+      Files.createDirectories(directory);
+      final Path temporary = Files.createTempFile(directory, stateFile.getFileName().toString(), ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(visitor.getClass().getName());
+        out.writeInt(states.size());
+        for (ClassState state : states) {
+          out.writeUTF(state.name);
+          out.writeLong(state.crc);
+          out.writeLong(state.size);
+          out.writeInt(state.state.length);
+          out.write(state.state);
+        }
+      } catch (IOException e) {
+        Files.deleteIfExists(temporary);
+        throw e;
+      }
+
+      Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Central directory fingerprint and written state of one class.
+   */
+  private final static class ClassState {
+    private final String name;
+    private final long crc;
+    private final long size;
+    private final byte[] state;
+
+    ClassState(final String name, final long crc, final long size, final byte[] state) {
+      this.name = name;
+      this.crc = crc;
+      this.size = size;
+      this.state = state;
+    }
+
+    ClassState(final ArchiveEntry entry, final JarVisitor partial) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        partial.writeState(out);
+      }
+
+      this.name = entry.getName();
+      this.crc = entry.getCrc();
+      this.size = entry.getSize();
+      this.state = bytes.toByteArray();
+    }
+
+    boolean matches(final ArchiveEntry entry) {
+      return crc == entry.getCrc() && size == entry.getSize() && 0 <= crc;
+    }
+
+    JarVisitor restore(final JarVisitor visitor) throws IOException {
+      JarVisitor partial = visitor.fork();
+      partial.readState(new DataInputStream(new ByteArrayInputStream(state)));
+      return partial;
+    }
+  }
+}
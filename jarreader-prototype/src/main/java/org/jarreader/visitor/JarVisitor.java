@@ -2,19 +2,107 @@ package org.jarreader.visitor;
 
 import org.apache.bcel.classfile.*;
 import org.apache.bcel.generic.InstructionList;
+import org.jarreader.backend.ClassBackend;
+import org.jarreader.backend.ClassHandler;
+import org.jarreader.archive.ArchiveEntry;
+import org.jarreader.archive.ArchiveReader;
+import org.jarreader.archive.EntryFilter;
+import org.jarreader.archive.InputSource;
+import org.jarreader.archive.JarFileReader;
+import org.jarreader.archive.MappedArchiveReader;
+import org.jarreader.archive.MultiRelease;
+import org.jarreader.archive.NestedArchiveReader;
+import org.jarreader.archive.SignatureVerification;
+import org.jarreader.profiling.ArchiveTiming;
+import org.jarreader.profiling.ClassTiming;
+import org.jarreader.profiling.Phase;
+import org.jarreader.profiling.PhaseTiming;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.jar.JarEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 /**
  * Abstract Visitor class for traversing JAR file. This visitor wraps the file operation
  * on JAR file.
+ * <p>
+ * Classes can be parsed and visited in parallel. In that case the class entries are split into
+ * consecutive chunks, every chunk is visited by a {@link #fork() forked} visitor holding partial
+ * state, and the partial visitors are {@link #merge(JarVisitor) merged} back in the order of the
+ * chunks. Output is therefore the same as with sequential traversal. Alternatively reading,
+ * inflating, parsing and visiting can run as separate stages of a {@link ClassPipeline}.
+ * <p>
+ * The JAR file is read with {@link JarFile} by default. Optionally it can be memory-mapped and
+ * decoded by {@link MappedArchiveReader}, which avoids copying entry data through the
+ * {@code ZipFile} stack. Archives nested in the JAR file, such as libraries of fat JARs, WARs
+ * and EARs, can be traversed together with it by {@link NestedArchiveReader}.
+ * <p>
+ * Instead of a JAR file, the path can denote an exploded directory of classes or a {@code .jmod}
+ * file, which are read by their own {@link InputSource}. Any other source, such as an archive in
+ * memory, can be set explicitly.
+ * <p>
+ * Of multi-release JAR files only the class versions effective for the selected Java release are
+ * traversed, see {@link MultiRelease}. Classes can be selected by an {@link EntryFilter}, which
+ * is evaluated before any class is read.
+ * <p>
+ * With an {@link IncrementalAnalysis} only classes changed since the previous run are parsed,
+ * results of unchanged classes are restored from {@link #writeState(DataOutput) written state}.
+ * Results of whole JAR files can be kept in an {@link AnalysisCache} shared between runs.
+ * <p>
+ * A {@link MemoryBudget} keeps traversal of huge JAR files within a fixed heap. Parsing slows down
+ * when the budget is near, and collected state is {@link #spill(Path) spilled} to disk.
+ * <p>
+ * Classes are parsed by BCEL and visited as {@link JavaClass}. Visitors which can collect their
+ * information from a {@link ClassHandler} instead are fed by a {@link ClassBackend}, which can be
+ * selected to use the fastest bytecode library for the analysis.
+ * <p>
+ * Archives are read without verifying signatures. Signed JAR files are verified apart from the
+ * traversal by a {@link SignatureVerification}, by default only the traversed class entries, and
+ * its outcome is reported separately from the result of the visitor.
+ * <p>
+ * Output is collected by the visitor and returned by {@link #jarToString()}. Alternatively it is
+ * written to an {@link OutputSink} while classes are visited, see {@link #setSink(OutputSink)}, so
+ * output of any size can be produced without holding it in memory.
+ * <p>
+ * Traversal of archives, classes and their {@link Phase phases} is recorded as JDK Flight Recorder
+ * events and counted by {@link org.jarreader.profiling.Counters}, so runs can be profiled with a
+ * standard recording.
  */
 public abstract class JarVisitor extends EmptyVisitor {
 
+  // Number of chunks per worker thread, so faster workers can pick up more chunks
+  private final static int CHUNKS_PER_THREAD = 4;
+
+  private final static String MODULE_DESCRIPTOR = "module-info.class";
+
   private final Path absoluteJarPath;
+  private InputSource inputSource;
+  private int parallelism;
+  private boolean memoryMapped;
+  private boolean nestedArchives;
+  private int release;
+  private EntryFilter filter;
+  private ClassPipeline pipeline;
+  private IncrementalAnalysis incremental;
+  private AnalysisCache cache;
+  private MemoryBudget memoryBudget;
+  private ClassBackend backend;
+  private SignatureVerification.Mode verificationMode;
+  private SignatureVerification verification;
+  private OutputSink sink;
 
   /**
    * Constructor for JAR visitor.
@@ -23,51 +111,649 @@ public abstract class JarVisitor extends EmptyVisitor {
    */
   public JarVisitor(final Path jarPath) {
     absoluteJarPath = jarPath.toAbsolutePath();
+    inputSource = null;
+    parallelism = 1;
+    memoryMapped = false;
+    nestedArchives = false;
+    release = MultiRelease.runtimeRelease();
+    filter = null;
+    pipeline = null;
+    incremental = null;
+    cache = null;
+    memoryBudget = null;
+    backend = null;
+    verificationMode = SignatureVerification.Mode.ANALYSED;
+    verification = null;
+    sink = null;
+  }
+
+  /**
+   * Set number of worker threads used for parsing and visiting classes.
+   *
+   * @param threads   Number of worker threads, 1 means sequential traversal
+   * @return          Reference to self
+   */
+  public JarVisitor setParallelism(final int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1, got " + threads);
+    }
+    parallelism = threads;
+
+    return this;
+  }
+
+  /**
+   * Set whether JAR file is memory-mapped and decoded directly instead of opened with
+   * {@link JarFile}.
+   *
+   * @param mapped    True to memory-map JAR file
+   * @return          Reference to self
+   */
+  public JarVisitor setMemoryMapped(final boolean mapped) {
+    memoryMapped = mapped;
+
+    return this;
+  }
+
+  /**
+   * Set source to read classes from instead of the JAR file path, which then only names the
+   * traversed classes. Results of explicitly set sources are not cached.
+   *
+   * @param source  Source of classes, or null to read the JAR file path
+   * @return        Reference to self
+   */
+  public JarVisitor setInputSource(final InputSource source) {
+    inputSource = source;
+
+    return this;
+  }
+
+  /**
+   * Set whether classes of archives nested in the JAR file are traversed too.
+   *
+   * @param nested    True to traverse nested archives
+   * @return          Reference to self
+   */
+  public JarVisitor setNestedArchives(final boolean nested) {
+    nestedArchives = nested;
+
+    return this;
+  }
+
+  /**
+   * Set Java release to select class versions of multi-release JAR files for. Defaults to the
+   * release of the running Java platform.
+   *
+   * @param javaRelease   Java release, for example 8 or 17
+   * @return              Reference to self
+   */
+  public JarVisitor setRelease(final int javaRelease) {
+    if (javaRelease < 1) {
+      throw new IllegalArgumentException("Release must be at least 1, got " + javaRelease);
+    }
+    release = javaRelease;
+
+    return this;
+  }
+
+  /**
+   * Set filter selecting the classes to traverse by package, class name and size.
+   *
+   * @param entryFilter   Filter of class entries, or null to traverse all classes
+   * @return              Reference to self
+   */
+  public JarVisitor setFilter(final EntryFilter entryFilter) {
+    filter = entryFilter;
+
+    return this;
+  }
+
+  /**
+   * Set pipeline traversing classes in separate stages. When a pipeline is set, its thread
+   * counts are used instead of parallelism.
+   *
+   * @param classPipeline   Pipeline to traverse classes with, or null for chunked traversal
+   * @return                Reference to self
+   */
+  public JarVisitor setPipeline(final ClassPipeline classPipeline) {
+    pipeline = classPipeline;
+
+    return this;
+  }
+
+  /**
+   * Set incremental analysis reusing results of unchanged classes from the previous run. It takes
+   * precedence over a pipeline, changed classes are visited with the configured parallelism.
+   *
+   * @param incrementalAnalysis   Incremental analysis, or null to visit all classes
+   * @return                      Reference to self
+   */
+  public JarVisitor setIncremental(final IncrementalAnalysis incrementalAnalysis) {
+    incremental = incrementalAnalysis;
+
+    return this;
+  }
+
+  /**
+   * Set cache restoring results of JAR files analysed before instead of traversing them.
+   *
+   * @param analysisCache   Cache of analysis results, or null to always traverse
+   * @return                Reference to self
+   */
+  public JarVisitor setCache(final AnalysisCache analysisCache) {
+    cache = analysisCache;
+
+    return this;
+  }
+
+  /**
+   * Set memory budget governing parsing and spilling of collected state. The same budget can be
+   * shared by visitors traversing at the same time.
+   *
+   * @param budget  Memory budget, or null for unlimited memory
+   * @return        Reference to self
+   */
+  public JarVisitor setMemoryBudget(final MemoryBudget budget) {
+    memoryBudget = budget;
+
+    return this;
+  }
+
+  /**
+   * Set backend parsing classes for the {@link #getClassHandler() class handler} of this visitor.
+   * Visitors without a class handler always visit the BCEL representation of classes.
+   *
+   * @param classBackend  Backend to parse classes with, or null for the default of the visitor
+   * @return              Reference to self
+   */
+  public JarVisitor setBackend(final ClassBackend classBackend) {
+    backend = classBackend;
+
+    return this;
+  }
+
+  /**
+   * Get backend selected for this visitor.
+   *
+   * @return    Backend, or null if the default of the visitor is used
+   */
+  public ClassBackend getBackend() {
+    return backend;
+  }
+
+  /**
+   * Set which entries of signed JAR files are verified while the JAR file is traversed.
+   *
+   * @param mode  Verification mode, {@link SignatureVerification.Mode#ANALYSED} by default
+   * @return      Reference to self
+   */
+  public JarVisitor setVerification(final SignatureVerification.Mode mode) {
+    verificationMode = mode;
+
+    return this;
+  }
+
+  /**
+   * Get signature verification of the last traversal of the JAR file. Its result is not
+   * available before verification has finished.
+   *
+   * @return    Verification, or null if the JAR file wasn't traversed, for example because its
+   *            result was restored from the cache
+   */
+  public SignatureVerification getVerification() {
+    return verification;
+  }
+
+  /**
+   * Set sink output is written to during {@link #start()}. Output of every class is written as
+   * soon as it is final, which is right after the class is visited, or merged in entry order
+   * during parallel traversal. Output written while classes are visited is dropped by the visitor,
+   * so {@link #jarToString()} only returns output not written yet. Visitors whose output is only
+   * complete after {@link #visitEnd()}, such as call graphs, write it once at the end with
+   * {@link #writeTo(OutputSink)} and keep it, so {@link #jarToString()} still returns it.
+   * <p>
+   * Results aren't stored in the {@link AnalysisCache} while writing to a sink, as output written
+   * while classes are visited isn't held anymore, but cached results are still restored and
+   * written. The sink is only used by {@link #start()}, output of a {@link ClasspathAnalysis} is
+   * written by its own {@link ClasspathAnalysis#writeTo(OutputSink)}.
+   *
+   * @param outputSink  Sink to write output to, or null to collect output for
+   *                    {@link #jarToString()}
+   * @return            Reference to self
+   */
+  public JarVisitor setSink(final OutputSink outputSink) {
+    sink = outputSink;
+
+    return this;
+  }
+
+  /**
+   * Start verifying signatures of the JAR file in the background. Sources set explicitly are
+   * not verified.
+   *
+   * @param entries   Class entries to traverse
+   */
+  void startVerification(final List<ArchiveEntry> entries) {
+    verification = new SignatureVerification(verificationMode);
+    if (inputSource == null && verificationMode != SignatureVerification.Mode.OFF) {
+      verification.start(absoluteJarPath, entries.stream().map(ArchiveEntry::getName).collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Check whether the result can be cached, which requires a file whose content can be hashed.
+   *
+   * @return    True if classes are read from the regular file at the JAR file path
+   */
+  boolean isCacheable() {
+    return inputSource == null && Files.isRegularFile(absoluteJarPath);
+  }
+
+  /**
+   * Get cache of analysis results.
+   *
+   * @return    Cache, or null if results are not cached
+   */
+  AnalysisCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Get memory budget of this traversal.
+   *
+   * @return    Memory budget, or null for unlimited memory
+   */
+  MemoryBudget getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Get options affecting the result of this visitor, which are part of its cache key.
+   *
+   * @return    Textual representation of options
+   */
+  String getConfiguration() {
+    return "release=" + release + "\nnested=" + nestedArchives + "\nfilter=" + filter;
+  }
+
+  /**
+   * Get absolute path to the visited JAR file.
+   *
+   * @return    Absolute file path
+   */
+  public Path getJarPath() {
+    return absoluteJarPath;
   }
 
   /**
    * Start visitor and start traversing JAR file. Starting this visitor automatically
-   * opens JAR file.
+   * opens JAR file, unless its result is restored from the cache.
    *
    * @return    Reference to self
    */
   public JarVisitor start() {
-    try (final JarFile jar = new JarFile(absoluteJarPath.toFile())) {
-      visitJarFile(jar);
-    } catch (IOException e) {
-      e.printStackTrace();
+    try (final ArchiveTiming timing = ArchiveTiming.start(absoluteJarPath)) {
+      final String cacheKey = cache != null ? cache.keyOf(this) : null;
+      if (cacheKey != null && cache.load(cacheKey, this)) {
+        timing.setCached(true);
+      } else {
+        try (final ArchiveReader archive = openArchive()) {
+          List<ArchiveEntry> entries = getClassEntries(archive);
+          timing.setEntries(entries);
+          startVerification(entries);
+          // Results missing classes skipped after an interrupt aren't cached
+          if (visitClassEntries(archive, entries) && cacheKey != null && sink == null) {
+            cache.store(cacheKey, this);
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+    visitEnd();
+
+    if (sink != null) {
+      try (final PhaseTiming timing = PhaseTiming.start(Phase.WRITE)) {
+        writeTo(sink);
+        sink.flush();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
     }
 
     return this;
   }
 
+  /**
+   * Open JAR file, or the configured input source, with the configured reader.
+   *
+   * @return    Reader over JAR file
+   * @throws IOException  JAR file couldn't be opened
+   */
+  ArchiveReader openArchive() throws IOException {
+    final ArchiveReader archive = inputSource != null
+        ? inputSource.open()
+        : InputSource.of(absoluteJarPath, memoryMapped).open();
+
+    return nestedArchives ? new NestedArchiveReader(archive) : archive;
+  }
+
   /**
    * Visit JAR file. Iterate over Java class files.
    *
    * @param jar   JAR file to visit
    */
   public void visitJarFile(final JarFile jar) {
-    jar.stream()
-       .filter(entry -> !entry.isDirectory() && entry.getName().endsWith(".class"))
-       .forEach(this::visitJarEntry);
+    visitArchive(new JarFileReader(jar));
+  }
+
+  /**
+   * Visit opened archive. Iterate over Java class files.
+   *
+   * @param archive   Archive to visit
+   */
+  public void visitArchive(final ArchiveReader archive) {
+    visitClassEntries(archive, getClassEntries(archive));
+  }
+
+  /**
+   * Visit class entries of an opened archive with the configured traversal.
+   *
+   * @param archive   Opened archive containing the entries
+   * @param entries   Class entries to visit
+   * @return          True if every entry was visited, false if the traversal was interrupted
+   */
+  private boolean visitClassEntries(final ArchiveReader archive, final List<ArchiveEntry> entries) {
+    if (incremental != null) {
+      return incremental.run(this, archive, entries, parallelism);
+    } else if (pipeline != null) {
+      return pipeline.run(this, archive, entries);
+    } else if (parallelism == 1 || entries.size() < 2) {
+      for (ArchiveEntry entry : entries) {
+        if (!visitWithinBudget(this, archive, entry)) {
+          return false;
+        }
+        drainToSink();
+      }
+      return true;
+    } else {
+      return visitJarEntriesInParallel(archive, entries);
+    }
+  }
+
+  /**
+   * Get entries of archive holding Java class files. Class versions of multi-release JAR files
+   * shadowed for the selected release and classes rejected by the filter are left out.
+   *
+   * @param archive   Opened archive
+   * @return          Class entries in archive order
+   */
+  List<ArchiveEntry> getClassEntries(final ArchiveReader archive) {
+    List<ArchiveEntry> classEntries = archive.getEntries().stream()
+        .filter(entry -> !entry.isDirectory() && entry.getName().endsWith(".class"))
+        .collect(Collectors.toList());
+
+    try {
+      classEntries = MultiRelease.select(archive, classEntries, release);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    if (filter != null) {
+      classEntries = classEntries.stream().filter(filter::accept).collect(Collectors.toList());
+    }
+    return classEntries;
+  }
+
+  /**
+   * Visit entries of JAR file with a pool of worker threads. Every chunk of consecutive entries
+   * is visited by its own forked visitor, then chunks are merged into this visitor in order.
+   * A failing chunk ends the traversal with the failure of its visitor.
+   *
+   * @param archive   Opened archive containing the entries
+   * @param entries   Class entries to visit
+   * @return          True if every entry was visited, false if the traversal was interrupted
+   */
+  private boolean visitJarEntriesInParallel(final ArchiveReader archive, final List<ArchiveEntry> entries) {
+    final int chunkCount = Math.min(entries.size(), parallelism * CHUNKS_PER_THREAD);
+    final int chunkSize = (entries.size() + chunkCount - 1) / chunkCount;
+    final ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+
+    try {
+      List<Future<JarVisitor>> partials = new ArrayList<>();
+      for (int from = 0; from < entries.size(); from += chunkSize) {
+        final List<ArchiveEntry> chunk = entries.subList(from, Math.min(from + chunkSize, entries.size()));
+        partials.add(pool.submit(() -> {
+          JarVisitor partial = fork();
+          for (ArchiveEntry entry : chunk) {
+            if (!visitWithinBudget(partial, archive, entry)) {
+              return null;
+            }
+          }
+          return partial;
+        }));
+      }
+
+      // Merge in submission order, which keeps output deterministic
+      for (Future<JarVisitor> partial : partials) {
+        JarVisitor visited = partial.get();
+        if (visited == null) {
+          return false;
+        }
+        mergeWithinBudget(this, visited);
+        drainToSink();
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      throw rethrow(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Rethrow failure of a task visiting classes in the calling thread. Unchecked exceptions and
+   * errors are rethrown as they are, so traversals fail the same way with and without threads.
+   *
+   * @param e   Failure of task
+   * @return    Nothing, declared for {@code throw rethrow(e)} in the caller
+   */
+  static RuntimeException rethrow(final ExecutionException e) {
+    final Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IllegalStateException("Visiting classes failed", cause);
   }
 
   /**
    * Visit entry in JAR file. Parse class files into BCEL representation.
+   * <p>
+   * The class is read through the entry stream of the already opened archive. Passing the
+   * archive path to BCEL instead would make it reopen the archive and re-read its central
+   * directory for every single class.
+   * <p>
+   * Reading, which includes decompressing, parsing and visiting are timed as separate phases.
+   * Module descriptors are skipped without reading them, as BCEL can't parse them.
    *
-   * @param entry   JAR entry to visit
+   * @param archive   Opened archive containing the entry
+   * @param entry     JAR entry to visit
    */
-  public void visitJarEntry(final JarEntry entry) {
+  public void visitJarEntry(final ArchiveReader archive, final ArchiveEntry entry) {
+    final ClassBackend classBackend = backend != null ? backend : getDefaultBackend();
+    final ClassHandler handler = classBackend != null ? getClassHandler() : null;
+    if ((handler == null || classBackend == ClassBackend.BCEL) && isModuleDescriptor(entry)) {
+      return;
+    }
+    if (handler != null) {
+      visitJarEntry(archive, entry, classBackend, handler);
+      return;
+    }
+
+    try (final ClassTiming timing = ClassTiming.start(entry.getName(), entry.getSize())) {
+      final InputStream classStream;
+      try (final PhaseTiming read = PhaseTiming.start(Phase.READ)) {
+        classStream = archive.getInputStream(entry);
+      }
+
+      final JavaClass javaClass;
+      try (final InputStream in = classStream; final PhaseTiming parse = PhaseTiming.start(Phase.PARSE)) {
+        javaClass = new ClassParser(in, entry.getName()).parse();
+      }
+
+      try (final PhaseTiming visit = PhaseTiming.start(Phase.VISIT)) {
+        javaClass.accept(this);
+      }
+    } catch (IOException | ClassFormatException e) {
+      // Classes BCEL can't parse are skipped
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Check whether an entry is the {@code module-info.class} of a modular JAR file, jmod file or
+   * module of the runtime image. BCEL 6.0 can't parse module descriptors, which are no classes.
+   *
+   * @param entry   Class entry
+   * @return        True if entry is a module descriptor, possibly of a multi-release version
+   */
+  static boolean isModuleDescriptor(final ArchiveEntry entry) {
+    final String name = entry.getName();
+    final int start = name.length() - MODULE_DESCRIPTOR.length();
+    return name.endsWith(MODULE_DESCRIPTOR) && (start == 0 || name.charAt(start - 1) == '/');
+  }
+
+  /**
+   * Visit entry in JAR file with a backend reporting the class to a handler. Backends report
+   * parts of the class while parsing it, so visiting is timed as part of parsing.
+   *
+   * @param archive       Opened archive containing the entry
+   * @param entry         JAR entry to visit
+   * @param classBackend  Backend parsing the class
+   * @param handler       Handler collecting information of the class
+   */
+  private void visitJarEntry(final ArchiveReader archive, final ArchiveEntry entry,
+                             final ClassBackend classBackend, final ClassHandler handler) {
+    try (final ClassTiming timing = ClassTiming.start(entry.getName(), entry.getSize())) {
+      final ByteBuffer data;
+      try (final PhaseTiming read = PhaseTiming.start(Phase.READ)) {
+        data = archive.readEntry(entry);
+      }
+
+      try (final PhaseTiming parse = PhaseTiming.start(Phase.PARSE)) {
+        classBackend.accept(data, handler);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Visit entry with a visitor of this traversal within the memory budget. The class waits for
+   * memory before it is parsed, and state of the visitor is spilled if the budget is near.
+   *
+   * @param partial   This visitor or one forked from it
+   * @param archive   Opened archive containing the entry
+   * @param entry     JAR entry to visit
+   * @return          True if the entry was visited, false if it was skipped as waiting for memory
+   *                  was interrupted
+   */
+  boolean visitWithinBudget(final JarVisitor partial, final ArchiveReader archive, final ArchiveEntry entry) {
+    // Forked visitors parse with the backend of the traversal
+    partial.backend = backend;
+
+    if (memoryBudget == null) {
+      partial.visitJarEntry(archive, entry);
+      return true;
+    }
+
+    final long retainedBefore = partial.getRetainedSize();
+    try {
+      memoryBudget.reserve(entry.getSize());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
     try {
-      ClassParser parser = new ClassParser(absoluteJarPath.toString(), entry.getName());
-      JavaClass javaClass = parser.parse();
+      partial.visitJarEntry(archive, entry);
+    } finally {
+      memoryBudget.release(entry.getSize());
+    }
+    retainWithinBudget(partial, retainedBefore);
+    return true;
+  }
+
+  /**
+   * Merge partial state within the memory budget, spilling the merged state if the budget is near.
+   *
+   * @param target    Visitor of this traversal to merge into
+   * @param partial   Forked visitor to merge
+   */
+  void mergeWithinBudget(final JarVisitor target, final JarVisitor partial) {
+    if (memoryBudget == null) {
+      target.merge(partial);
+      return;
+    }
+
+    // State moves from the partial visitor to the target, only growth beyond that is new
+    final long retainedBefore = target.getRetainedSize() + partial.getRetainedSize();
+    target.merge(partial);
+    retainWithinBudget(target, retainedBefore);
+  }
+
+  /**
+   * Account for grown state of a visitor of this traversal and spill it if the budget is near.
+   *
+   * @param partial         This visitor or one forked from it
+   * @param retainedBefore  Retained size of the visitor before it grew
+   */
+  void retainWithinBudget(final JarVisitor partial, final long retainedBefore) {
+    if (memoryBudget == null) {
+      return;
+    }
 
-      javaClass.accept(this);
+    memoryBudget.retain(partial.getRetainedSize() - retainedBefore);
+    if (memoryBudget.isSpillNeeded()) {
+      try {
+        memoryBudget.spilled(partial.spill(memoryBudget.getSpillDirectory()));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Write output which is final to the sink, if one is set, and account for the memory it freed.
+   * Called on the traversing visitor whenever classes were visited or merged in entry order.
+   */
+  void drainToSink() {
+    if (sink == null) {
+      return;
+    }
+
+    final long retainedBefore = getRetainedSize();
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.WRITE)) {
+      drainTo(sink);
     } catch (IOException e) {
       e.printStackTrace();
     }
+    if (memoryBudget != null) {
+      memoryBudget.retain(getRetainedSize() - retainedBefore);
+    }
   }
 
+  /**
+   * Finish traversal after all classes have been visited and all partial results have been
+   * merged. Visitors post-processing collected information override this.
+   */
+  public void visitEnd() {}
+
   /**
    * Visit Java class.
    *
@@ -104,6 +790,127 @@ public abstract class JarVisitor extends EmptyVisitor {
    */
   public void visitInstructionList(final InstructionList instructions) {}
 
+  /**
+   * Get handler collecting the information of this visitor from a {@link ClassBackend}. Visitors
+   * needing the BCEL representation of classes don't override this.
+   *
+   * @return    Handler of this visitor, or null to always visit {@link JavaClass}
+   */
+  protected ClassHandler getClassHandler() {
+    return null;
+  }
+
+  /**
+   * Get backend used for the class handler when none is selected.
+   *
+   * @return    Default backend, or null to visit {@link JavaClass} unless a backend is selected
+   */
+  protected ClassBackend getDefaultBackend() {
+    return null;
+  }
+
+  /**
+   * Create a visitor of the same kind for the same JAR file, but with empty state.
+   * Forked visitors collect partial results during parallel traversal.
+   *
+   * @return    New visitor with empty state
+   */
+  protected abstract JarVisitor fork();
+
+  /**
+   * Merge partial state of a forked visitor into this visitor. Partial visitors are merged
+   * in the order of the classes they have visited.
+   *
+   * @param partial   Forked visitor created by {@link #fork()}
+   */
+  protected abstract void merge(final JarVisitor partial);
+
+  /**
+   * Write state collected by this visitor, so it can be restored without visiting classes again.
+   *
+   * @param out   Output to write state to
+   * @throws IOException  State couldn't be written
+   */
+  protected abstract void writeState(final DataOutput out) throws IOException;
+
+  /**
+   * Restore state written by {@link #writeState(DataOutput)} of a visitor of the same kind. It's
+   * called on an empty visitor created by {@link #fork()}, which is then merged.
+   *
+   * @param in    Input to read state from
+   * @throws IOException  State couldn't be read
+   */
+  protected abstract void readState(final DataInput in) throws IOException;
+
+  /**
+   * Estimate heap occupied by the state collected by this visitor, which counts against the
+   * {@link MemoryBudget}. Visitors without significant state don't override this.
+   *
+   * @return    Retained size in bytes
+   */
+  protected long getRetainedSize() {
+    return 0;
+  }
+
+  /**
+   * Move state collected by this visitor to disk, keeping it readable for merging and output.
+   * Visitors whose state can't be spilled don't override this.
+   *
+   * @param directory   Directory to create spill files in
+   * @return            Estimated heap freed in bytes
+   * @throws IOException  Spill file couldn't be written
+   */
+  protected long spill(final Path directory) throws IOException {
+    return 0;
+  }
+
+  /**
+   * Write output collected so far to a sink and drop it, while traversal continues. It's only
+   * called when all classes visited so far have been merged in entry order, so the output is
+   * final. Visitors whose output depends on classes visited later don't override this.
+   *
+   * @param outputSink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  protected void drainTo(final OutputSink outputSink) throws IOException {}
+
+  /**
+   * Write output collected by this visitor to a sink, like {@link #jarToString()} returns it.
+   * Visitors with large output override this to write it in pieces, without building one string.
+   *
+   * @param outputSink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  public void writeTo(final OutputSink outputSink) throws IOException {
+    outputSink.write(jarToString());
+  }
+
+  /**
+   * Write string of any length as UTF-8 bytes prefixed with their count.
+   *
+   * @param out     Output to write to
+   * @param value   String to write
+   * @throws IOException  String couldn't be written
+   */
+  protected static void writeString(final DataOutput out, final String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read string written by {@link #writeString(DataOutput, String)}.
+   *
+   * @param in    Input to read from
+   * @return      Read string
+   * @throws IOException  String couldn't be read
+   */
+  protected static String readString(final DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
   /**
    * Get information retrieved from JAR file.
    *
@@ -0,0 +1,222 @@
+package org.jarreader.visitor;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Heap budget of a traversal, shared by all visitors and threads it is set on.
+ * <p>
+ * The budget accounts for two kinds of memory. Classes being parsed and visited reserve an
+ * estimate proportional to their class file size until they are visited. State retained by
+ * visitors, such as collected output, is reported by {@link JarVisitor#getRetainedSize()}.
+ * <p>
+ * When the budget is near, the traversal is governed in two ways:
+ * <ul>
+ * <li>Parsing slows down. A class waits for its reservation until other classes have been
+ *     visited. A class is never held back if no other class is in flight, so a single class larger
+ *     than the budget is still parsed.
+ * <li>State spills to disk. Once retained state exceeds half of the budget, visitors move it into
+ *     spill files with {@link JarVisitor#spill(Path)}. Visitors whose state can't be spilled, such
+ *     as call graphs needed as a whole, only count against the budget and slow parsing down.
+ * </ul>
+ */
+public final class MemoryBudget {
+
+  // Heap used while parsing and visiting a class, relative to the size of its class file
+  private final static int PARSE_OVERHEAD = 8;
+
+  // Share of the budget retained state may occupy before it is spilled
+  private final static double SPILL_THRESHOLD = 0.5;
+
+  // Period of re-checking retained state while waiting for a reservation
+  private final static long WAIT_MILLIS = 50;
+
+  private final long limit;
+  private Path spillDirectory;
+  private final ReentrantLock lock;
+  private final Condition released;
+  private long inFlight;
+  private int inFlightCount;
+  private final AtomicLong retained;
+  private final AtomicInteger throttledCount;
+  private final AtomicInteger spillCount;
+  private final AtomicLong spilledBytes;
+
+  /**
+   * Constructor for memory budget.
+   *
+   * @param bytes   Heap available to the traversal in bytes
+   */
+  public MemoryBudget(final long bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("Memory budget must be positive, got " + bytes);
+    }
+    this.limit = bytes;
+    this.spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    this.lock = new ReentrantLock();
+    this.released = lock.newCondition();
+    this.retained = new AtomicLong();
+    this.throttledCount = new AtomicInteger();
+    this.spillCount = new AtomicInteger();
+    this.spilledBytes = new AtomicLong();
+  }
+
+  /**
+   * Create memory budget as a share of the maximum heap size.
+   *
+   * @param fraction  Share of maximum heap size, between 0 and 1
+   * @return          Memory budget
+   */
+  public static MemoryBudget ofMaxHeap(final double fraction) {
+    if (fraction <= 0 || 1 < fraction) {
+      throw new IllegalArgumentException("Share of heap must be between 0 and 1, got " + fraction);
+    }
+    return new MemoryBudget((long) (Runtime.getRuntime().maxMemory() * fraction));
+  }
+
+  /**
+   * Set directory of spill files. Defaults to the temporary directory of the platform.
+   *
+   * @param directory   Directory to create spill files in
+   * @return            Reference to self
+   */
+  public MemoryBudget setSpillDirectory(final Path directory) {
+    spillDirectory = directory.toAbsolutePath();
+
+    return this;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * Get estimated heap currently retained by visitor state.
+   *
+   * @return    Retained size in bytes
+   */
+  public long getRetainedSize() {
+    return retained.get();
+  }
+
+  /**
+   * Get number of classes that had to wait for the budget before being parsed.
+   *
+   * @return    Number of throttled classes
+   */
+  public int getThrottledCount() {
+    return throttledCount.get();
+  }
+
+  /**
+   * Get number of times visitor state was spilled to disk.
+   *
+   * @return    Number of spills
+   */
+  public int getSpillCount() {
+    return spillCount.get();
+  }
+
+  /**
+   * Get estimated heap freed by spilling.
+   *
+   * @return    Spilled size in bytes
+   */
+  public long getSpilledBytes() {
+    return spilledBytes.get();
+  }
+
+  Path getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  /**
+   * Reserve memory for parsing and visiting a class, waiting while the budget is exhausted and
+   * other classes are in flight.
+   *
+   * @param classSize   Uncompressed size of class file, or -1 if unknown
+   * @throws InterruptedException   Waiting was interrupted
+   */
+  void reserve(final long classSize) throws InterruptedException {
+    final long estimate = estimate(classSize);
+    lock.lock();
+    try {
+      boolean throttled = false;
+      while (0 < inFlightCount && limit < inFlight + retained.get() + estimate) {
+        throttled = true;
+        // Retained state can shrink by spilling without any class being released
+        released.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      if (throttled) {
+        throttledCount.incrementAndGet();
+      }
+      inFlight += estimate;
+      ++inFlightCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Release memory reserved by {@link #reserve(long)} for a class.
+   *
+   * @param classSize   Same size the memory was reserved for
+   */
+  void release(final long classSize) {
+    lock.lock();
+    try {
+      inFlight -= estimate(classSize);
+      --inFlightCount;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Account for a change of retained visitor state.
+   *
+   * @param delta   Growth of retained state in bytes, negative if it shrank
+   */
+  void retain(final long delta) {
+    retained.addAndGet(delta);
+  }
+
+  /**
+   * Check whether retained state should be spilled to disk.
+   *
+   * @return    True if retained state exceeds its share of the budget
+   */
+  boolean isSpillNeeded() {
+    return limit * SPILL_THRESHOLD < retained.get();
+  }
+
+  /**
+   * Account for visitor state moved to disk.
+   *
+   * @param bytes   Retained size freed by spilling
+   */
+  void spilled(final long bytes) {
+    if (0 < bytes) {
+      retained.addAndGet(-bytes);
+      spilledBytes.addAndGet(bytes);
+      spillCount.incrementAndGet();
+    }
+  }
+
+  private static long estimate(final long classSize) {
+    return Math.max(0, classSize) * PARSE_OVERHEAD;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Memory budget %d MB: %d MB retained, %d classes throttled, %d spills of %d MB",
+                         limit >> 20, retained.get() >> 20, throttledCount.get(), spillCount.get(),
+                         spilledBytes.get() >> 20);
+  }
+}
@@ -0,0 +1,70 @@
+package org.jarreader.visitor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Destination of the textual output of a visitor, written while classes are visited instead of
+ * being collected into one string.
+ * <p>
+ * Output arrives as consecutive pieces of text in the order of {@link JarVisitor#jarToString()}.
+ * Visitors whose output per class is final write it as soon as the class is visited, or merged in
+ * entry order during parallel traversal, so memory stays flat and first results are available
+ * immediately. The sink is a callback per piece of text, so it can also be implemented as a
+ * lambda, for example to process the output of every class.
+ * <p>
+ * Text passed to {@link #write(CharSequence)} is only valid during the call, as it may wrap a
+ * buffer reused for the next piece. Sinks keeping text must copy it.
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+  /**
+   * Write next piece of output.
+   *
+   * @param text  Text following the previously written text
+   * @throws IOException  Text couldn't be written
+   */
+  void write(final CharSequence text) throws IOException;
+
+  /**
+   * Flush buffered output, called when a traversal has written all of its output. The sink isn't
+   * closed, that is up to its creator.
+   *
+   * @throws IOException  Output couldn't be flushed
+   */
+  default void flush() throws IOException {}
+
+  /**
+   * Create sink writing to a writer.
+   *
+   * @param writer  Writer to append output to
+   * @return        Sink flushing the writer at the end of a traversal
+   */
+  static OutputSink of(final Writer writer) {
+    return new OutputSink() {
+      @Override
+      public void write(final CharSequence text) throws IOException {
+        writer.append(text);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        writer.flush();
+      }
+    };
+  }
+
+  /**
+   * Create sink writing UTF-8 encoded output to a channel, such as a file or socket channel.
+   *
+   * @param channel   Channel to write output to
+   * @return          Sink encoding through a buffer, flushed at the end of a traversal
+   */
+  static OutputSink of(final WritableByteChannel channel) {
+    return of(Channels.newWriter(channel, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,343 @@
+package org.jarreader.visitor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Textual output of a visitor, which can be moved to disk when a {@link MemoryBudget} is near.
+ * <p>
+ * Text is appended like to a {@link StringBuilder}. Spilling writes the text held in memory into
+ * a temporary file and continues with an empty builder, so the output keeps its order. Spill files
+ * are never modified after they are written, so the text of a merged visitor can refer to the
+ * same files as the partial visitors it was merged from. A spill file is deleted once no text
+ * refers to it anymore, or when the JVM exits.
+ */
+public final class SpillableText {
+
+  // Number of characters copied at once when reading spill files
+  private final static int CHUNK_SIZE = 1 << 16;
+
+  private final static Cleaner SPILL_FILE_CLEANER = Cleaner.create();
+
+  private final List<Segment> segments;
+  private StringBuilder builder;
+
+  /**
+   * Constructor for empty text.
+   */
+  public SpillableText() {
+    segments = new ArrayList<>();
+    builder = new StringBuilder();
+  }
+
+  public SpillableText append(final String text) {
+    builder.append(text);
+    return this;
+  }
+
+  public SpillableText append(final CharSequence text) {
+    builder.append(text);
+    return this;
+  }
+
+  public SpillableText append(final Object value) {
+    builder.append(value);
+    return this;
+  }
+
+  public SpillableText append(final char c) {
+    builder.append(c);
+    return this;
+  }
+
+  public SpillableText append(final int value) {
+    builder.append(value);
+    return this;
+  }
+
+  public SpillableText append(final long value) {
+    builder.append(value);
+    return this;
+  }
+
+  /**
+   * Append another text, referring to its spill files instead of reading them.
+   *
+   * @param other   Text to append, which isn't changed
+   * @return        Reference to self
+   */
+  public SpillableText append(final SpillableText other) {
+    if (!other.segments.isEmpty()) {
+      // Freeze text in memory so far, it precedes the appended segments
+      if (0 < builder.length()) {
+        segments.add(new Segment(builder));
+        builder = new StringBuilder();
+      }
+      segments.addAll(other.segments);
+    }
+    builder.append(other.builder);
+
+    return this;
+  }
+
+  /**
+   * Estimate heap occupied by text held in memory.
+   *
+   * @return    Retained size in bytes
+   */
+  public long getRetainedSize() {
+    long size = 2L * builder.capacity();
+    for (Segment segment : segments) {
+      if (segment.text != null) {
+        size += 2L * segment.text.capacity();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Move text held in memory into a spill file.
+   *
+   * @param directory   Directory to create spill file in
+   * @return            Estimated heap freed in bytes
+   * @throws IOException  Spill file couldn't be written
+   */
+  public long spill(final Path directory) throws IOException {
+    final long before = getRetainedSize();
+    if (builder.length() == 0 && segments.stream().allMatch(segment -> segment.file != null)) {
+      return 0;
+    }
+
+    // Coalesce everything in memory since the last spill file into one new file
+    final List<Segment> spilled = new ArrayList<>();
+    int from = 0;
+    for (int i = 0; i <= segments.size(); ++i) {
+      if (i < segments.size() && segments.get(i).text != null) {
+        continue;
+      }
+      final List<CharSequence> texts = new ArrayList<>();
+      segments.subList(from, i).forEach(segment -> texts.add(segment.text));
+      if (i == segments.size() && 0 < builder.length()) {
+        texts.add(builder);
+      }
+      if (!texts.isEmpty()) {
+        spilled.add(Segment.write(directory, texts));
+      }
+      if (i < segments.size()) {
+        spilled.add(segments.get(i));
+      }
+      from = i + 1;
+    }
+
+    segments.clear();
+    segments.addAll(spilled);
+    builder = new StringBuilder();
+    return before - getRetainedSize();
+  }
+
+  /**
+   * Write complete text, reading spill files in chunks.
+   *
+   * @param writer  Writer to write text to
+   * @throws IOException  Text couldn't be written or spill file couldn't be read
+   */
+  public void writeTo(final Writer writer) throws IOException {
+    writeTo(OutputSink.of(writer));
+  }
+
+  /**
+   * Write complete text to a sink, reading spill files in chunks.
+   *
+   * @param sink  Sink to write text to
+   * @throws IOException  Text couldn't be written or spill file couldn't be read
+   */
+  public void writeTo(final OutputSink sink) throws IOException {
+    for (Segment segment : segments) {
+      segment.writeTo(sink);
+    }
+    if (0 < builder.length()) {
+      sink.write(builder);
+    }
+  }
+
+  /**
+   * Write complete text to a sink and continue with empty text, so text already written doesn't
+   * occupy heap or disk anymore.
+   *
+   * @param sink  Sink to write text to
+   * @return      Estimated heap freed in bytes
+   * @throws IOException  Text couldn't be written or spill file couldn't be read
+   */
+  public long drainTo(final OutputSink sink) throws IOException {
+    if (segments.isEmpty() && builder.length() == 0) {
+      return 0;
+    }
+
+    final long before = getRetainedSize();
+    writeTo(sink);
+    // Spill files are deleted once no other text refers to them
+    segments.clear();
+    builder = new StringBuilder();
+    return before - getRetainedSize();
+  }
+
+  /**
+   * Write text as chunks of limited size, so text of any length can be written.
+   *
+   * @param out   Output to write to
+   * @throws IOException  Text couldn't be written or spill file couldn't be read
+   */
+  public void writeState(final DataOutput out) throws IOException {
+    final Writer chunkWriter = new Writer() {
+      @Override
+      public void write(final char[] chars, final int offset, final int length) throws IOException {
+        append(CharBuffer.wrap(chars, offset, length));
+      }
+
+      @Override
+      public Writer append(final CharSequence text) throws IOException {
+        int start = 0;
+        while (start < text.length()) {
+          int end = Math.min(text.length(), start + CHUNK_SIZE);
+          // Chunks are encoded separately, so surrogate pairs must not be split
+          if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+            --end;
+          }
+          out.writeBoolean(true);
+          JarVisitor.writeString(out, text.subSequence(start, end).toString());
+          start = end;
+        }
+        return this;
+      }
+
+      @Override
+      public void flush() {}
+
+      @Override
+      public void close() {}
+    };
+    writeTo(chunkWriter);
+    out.writeBoolean(false);
+  }
+
+  /**
+   * Read text written by {@link #writeState(DataOutput)} into memory.
+   *
+   * @param in    Input to read from
+   * @return      Read text
+   * @throws IOException  Text couldn't be read
+   */
+  public static SpillableText readState(final DataInput in) throws IOException {
+    final SpillableText text = new SpillableText();
+    while (in.readBoolean()) {
+      text.builder.append(JarVisitor.readString(in));
+    }
+    return text;
+  }
+
+  /**
+   * Get complete text, reading spill files back into memory.
+   *
+   * @return    Complete text
+   */
+  @Override
+  public String toString() {
+    if (segments.isEmpty()) {
+      return builder.toString();
+    }
+
+    final StringWriter writer = new StringWriter();
+    try {
+      writeTo(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Part of the text, either frozen in memory or written to a spill file.
+   */
+  private final static class Segment {
+    private final StringBuilder text;
+    private final Path file;
+
+    Segment(final StringBuilder text) {
+      this.text = text;
+      this.file = null;
+    }
+
+    private Segment(final Path file) {
+      this.text = null;
+      this.file = file;
+    }
+
+    /**
+     * Write texts into a new spill file.
+     *
+     * @param directory   Directory to create spill file in
+     * @param texts       Texts to write in order
+     * @return            Segment of spill file
+     * @throws IOException  Spill file couldn't be written
+     */
+    static Segment write(final Path directory, final List<CharSequence> texts) throws IOException {
+      Files.createDirectories(directory);
+      final Path file = Files.createTempFile(directory, "jarreader-", ".spill");
+      try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        for (CharSequence text : texts) {
+          writer.append(text);
+        }
+      } catch (IOException e) {
+        Files.deleteIfExists(file);
+        throw e;
+      }
+
+      final Segment segment = new Segment(file);
+      file.toFile().deleteOnExit();
+      SPILL_FILE_CLEANER.register(segment, () -> {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          // Deleted on exit
+        }
+      });
+      return segment;
+    }
+
+    void writeTo(final OutputSink sink) throws IOException {
+      if (text != null) {
+        sink.write(text);
+        return;
+      }
+
+      try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        final char[] chunk = new char[CHUNK_SIZE];
+        int carried = 0;
+        int read;
+        while ((read = reader.read(chunk, carried, CHUNK_SIZE - carried)) != -1) {
+          // Carry a trailing high surrogate over, so surrogate pairs are written at once
+          final int length = carried + read;
+          carried = Character.isHighSurrogate(chunk[length - 1]) ? 1 : 0;
+          sink.write(CharBuffer.wrap(chunk, 0, length - carried));
+          chunk[0] = chunk[length - 1];
+        }
+        if (carried == 1) {
+          sink.write(CharBuffer.wrap(chunk, 0, 1));
+        }
+      }
+    }
+  }
+}
@@ -3,8 +3,15 @@ package org.jarreader.visitor.impl;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
+import org.jarreader.profiling.Phase;
+import org.jarreader.profiling.PhaseTiming;
 import org.jarreader.visitor.JarVisitor;
+import org.jarreader.visitor.OutputSink;
+import org.jarreader.visitor.SpillableText;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 
@@ -29,11 +36,11 @@ import java.util.Arrays;
  */
 public class CodeInfoVisitor extends JarVisitor {
 
-  private StringBuilder codeInfoBuilder;
+  private SpillableText codeInfoBuilder;
 
   public CodeInfoVisitor(final Path jarPath) {
     super(jarPath);
-    codeInfoBuilder = new StringBuilder();
+    codeInfoBuilder = new SpillableText();
   }
 
   /**
@@ -55,9 +62,11 @@ public class CodeInfoVisitor extends JarVisitor {
     codeInfoBuilder.append("\nMinor version: ").append(javaClass.getMinor());
     codeInfoBuilder.append("\nOriginal source file: ").append(javaClass.getSourceFileName());
 
-    // Constant pool
-    codeInfoBuilder.append("\nConstant pool:\n")
-                   .append(javaClass.getConstantPool());
+    // Constant pool, formatting it is the costliest part of the class information
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.FORMAT)) {
+      codeInfoBuilder.append("\nConstant pool:\n")
+                     .append(javaClass.getConstantPool());
+    }
 
     // Package
     if (packageName.isEmpty()) {
@@ -173,6 +182,92 @@ public class CodeInfoVisitor extends JarVisitor {
         .append(method);
   }
 
+  /**
+   * Create empty code information visitor for the same JAR file.
+   *
+   * @return  New visitor with empty state
+   */
+  @Override
+  protected JarVisitor fork() {
+    return new CodeInfoVisitor(getJarPath());
+  }
+
+  /**
+   * Append code information collected by a forked visitor.
+   *
+   * @param partial   Forked visitor created by {@link #fork()}
+   */
+  @Override
+  protected void merge(final JarVisitor partial) {
+    codeInfoBuilder.append(((CodeInfoVisitor) partial).codeInfoBuilder);
+  }
+
+  /**
+   * Write collected code information.
+   *
+   * @param out   Output to write state to
+   * @throws IOException  State couldn't be written
+   */
+  @Override
+  protected void writeState(final DataOutput out) throws IOException {
+    codeInfoBuilder.writeState(out);
+  }
+
+  /**
+   * Restore collected code information.
+   *
+   * @param in    Input to read state from
+   * @throws IOException  State couldn't be read
+   */
+  @Override
+  protected void readState(final DataInput in) throws IOException {
+    codeInfoBuilder = SpillableText.readState(in);
+  }
+
+  /**
+   * Estimate heap occupied by code information held in memory.
+   *
+   * @return  Retained size in bytes
+   */
+  @Override
+  protected long getRetainedSize() {
+    return codeInfoBuilder.getRetainedSize();
+  }
+
+  /**
+   * Move code information held in memory to a spill file.
+   *
+   * @param directory   Directory to create spill file in
+   * @return            Estimated heap freed in bytes
+   * @throws IOException  Spill file couldn't be written
+   */
+  @Override
+  protected long spill(final Path directory) throws IOException {
+    return codeInfoBuilder.spill(directory);
+  }
+
+  /**
+   * Write code information of the classes visited so far to a sink and drop it.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  protected void drainTo(final OutputSink sink) throws IOException {
+    codeInfoBuilder.drainTo(sink);
+  }
+
+  /**
+   * Write code information of all classes to a sink, reading spill files in chunks.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  public void writeTo(final OutputSink sink) throws IOException {
+    codeInfoBuilder.writeTo(sink);
+  }
+
   /**
    * Return textual code information about all classes in JAR file.
    *
@@ -180,6 +275,8 @@ public class CodeInfoVisitor extends JarVisitor {
    */
   @Override
   public String jarToString() {
-    return codeInfoBuilder.toString();
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.FORMAT)) {
+      return codeInfoBuilder.toString();
+    }
   }
 }
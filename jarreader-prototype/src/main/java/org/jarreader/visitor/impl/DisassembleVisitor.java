@@ -3,8 +3,15 @@ package org.jarreader.visitor.impl;
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.*;
 import org.apache.bcel.generic.*;
+import org.jarreader.profiling.Phase;
+import org.jarreader.profiling.PhaseTiming;
 import org.jarreader.visitor.JarVisitor;
+import org.jarreader.visitor.OutputSink;
+import org.jarreader.visitor.SpillableText;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.lang.Deprecated;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -22,11 +29,11 @@ public class DisassembleVisitor extends JarVisitor {
 
   private JavaClass currentClass;
   private ConstantPool constantPool;
-  private StringBuilder codePrintBuilder;
+  private SpillableText codePrintBuilder;
 
   public DisassembleVisitor(final Path jarPath) {
     super(jarPath);
-    codePrintBuilder = new StringBuilder();
+    codePrintBuilder = new SpillableText();
   }
 
   /**
@@ -37,7 +44,7 @@ public class DisassembleVisitor extends JarVisitor {
   @Override
   public void visitJavaClass(final JavaClass javaClass) {
     currentClass = javaClass;
-    constantPool = currentClass.getConstantPool();
+    visitConstantPool(currentClass.getConstantPool());
 
     codePrintBuilder.append("================================\n");
 
@@ -141,6 +148,17 @@ public class DisassembleVisitor extends JarVisitor {
     }
   }
 
+  /**
+   * Resolve constant pool references of the instruction lists visited next by this constant pool.
+   * Called for every visited class, or directly to disassemble instruction lists on their own.
+   *
+   * @param pool    Constant pool of the class declaring the instructions
+   */
+  @Override
+  public void visitConstantPool(final ConstantPool pool) {
+    constantPool = pool;
+  }
+
   /**
    * Print method in source form.
    *
@@ -148,7 +166,10 @@ public class DisassembleVisitor extends JarVisitor {
    */
   @Override
   public void visitMethod(final Method method) {
-    MethodGen methodG = new MethodGen(method, currentClass.getClassName(), new ConstantPoolGen(constantPool));
+    final MethodGen methodG;
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.METHOD_GEN)) {
+      methodG = new MethodGen(method, currentClass.getClassName(), new ConstantPoolGen(constantPool));
+    }
 
     // Is this a constructor?
     if (methodG.getName().equals("<init>")) {
@@ -186,45 +207,47 @@ public class DisassembleVisitor extends JarVisitor {
    */
   @Override
   public void visitInstructionList(final InstructionList instructions) {
-    // Initial instruction iterator
-    InstructionHandle ihandle = instructions.getStart();
-
-    // Iterate over instructions
-    while (ihandle != null) {
-      Instruction instruction = ihandle.getInstruction();
-
-      // If instruction uses index to the constant pool, get the
-      // name of the symbolic constant. Otherwise leave it empty.
-      String constantPoolReference = "";
-      if (instruction instanceof CPInstruction) {
-        int poolIndex = ((CPInstruction) instruction).getIndex();
-        Constant constant = constantPool.getConstant(poolIndex);
-        String constantName = constantPool.constantToString(constant);
-
-        switch (instruction.getOpcode()) {
-          case Const.NEWARRAY:   /* fallthrough */  // Primitive array
-          case Const.NEW:        /* fallthrough */  // Reference to classes
-          case Const.CHECKCAST:  /* fallthrough */
-          case Const.INSTANCEOF: /* fallthrough */
-          case Const.ANEWARRAY:  /* fallthrough */  // Array containing reference types
-          case Const.MULTIANEWARRAY:                // Multidimensional reference array
-            constantPoolReference = "<" + constantName + ">";
-            break;
-          default:
-            constantPoolReference = constantName;
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.FORMAT)) {
+      // Initial instruction iterator
+      InstructionHandle ihandle = instructions.getStart();
+
+      // Iterate over instructions
+      while (ihandle != null) {
+        Instruction instruction = ihandle.getInstruction();
+
+        // If instruction uses index to the constant pool, get the
+        // name of the symbolic constant. Otherwise leave it empty.
+        String constantPoolReference = "";
+        if (instruction instanceof CPInstruction) {
+          int poolIndex = ((CPInstruction) instruction).getIndex();
+          Constant constant = constantPool.getConstant(poolIndex);
+          String constantName = constantPool.constantToString(constant);
+
+          switch (instruction.getOpcode()) {
+            case Const.NEWARRAY:   /* fallthrough */  // Primitive array
+            case Const.NEW:        /* fallthrough */  // Reference to classes
+            case Const.CHECKCAST:  /* fallthrough */
+            case Const.INSTANCEOF: /* fallthrough */
+            case Const.ANEWARRAY:  /* fallthrough */  // Array containing reference types
+            case Const.MULTIANEWARRAY:                // Multidimensional reference array
+              constantPoolReference = "<" + constantName + ">";
+              break;
+            default:
+              constantPoolReference = constantName;
+          }
         }
-      }
 
-      // Return disassembled output in
-      // "// [instruction index] [instruction name] [optional constant pool reference]" form
-      String disassemblyOutput = String.format("\t\t// %1$-4d: %2$-20s %3$s\n",
-                                               ihandle.getPosition(),
-                                               instruction.getName(),
-                                               constantPoolReference);
-      codePrintBuilder.append(disassemblyOutput);
+        // Return disassembled output in
+        // "// [instruction index] [instruction name] [optional constant pool reference]" form
+        String disassemblyOutput = String.format("\t\t// %1$-4d: %2$-20s %3$s\n",
+                                                 ihandle.getPosition(),
+                                                 instruction.getName(),
+                                                 constantPoolReference);
+        codePrintBuilder.append(disassemblyOutput);
 
-      // Move iterator
-      ihandle = ihandle.getNext();
+        // Move iterator
+        ihandle = ihandle.getNext();
+      }
     }
   }
 
@@ -255,6 +278,92 @@ public class DisassembleVisitor extends JarVisitor {
     }
   }
 
+  /**
+   * Create empty disassembler visitor for the same JAR file.
+   *
+   * @return  New visitor with empty state
+   */
+  @Override
+  protected JarVisitor fork() {
+    return new DisassembleVisitor(getJarPath());
+  }
+
+  /**
+   * Append disassembled source collected by a forked visitor.
+   *
+   * @param partial   Forked visitor created by {@link #fork()}
+   */
+  @Override
+  protected void merge(final JarVisitor partial) {
+    codePrintBuilder.append(((DisassembleVisitor) partial).codePrintBuilder);
+  }
+
+  /**
+   * Write collected disassembled source.
+   *
+   * @param out   Output to write state to
+   * @throws IOException  State couldn't be written
+   */
+  @Override
+  protected void writeState(final DataOutput out) throws IOException {
+    codePrintBuilder.writeState(out);
+  }
+
+  /**
+   * Restore collected disassembled source.
+   *
+   * @param in    Input to read state from
+   * @throws IOException  State couldn't be read
+   */
+  @Override
+  protected void readState(final DataInput in) throws IOException {
+    codePrintBuilder = SpillableText.readState(in);
+  }
+
+  /**
+   * Estimate heap occupied by disassembled code held in memory.
+   *
+   * @return  Retained size in bytes
+   */
+  @Override
+  protected long getRetainedSize() {
+    return codePrintBuilder.getRetainedSize();
+  }
+
+  /**
+   * Move disassembled code held in memory to a spill file.
+   *
+   * @param directory   Directory to create spill file in
+   * @return            Estimated heap freed in bytes
+   * @throws IOException  Spill file couldn't be written
+   */
+  @Override
+  protected long spill(final Path directory) throws IOException {
+    return codePrintBuilder.spill(directory);
+  }
+
+  /**
+   * Write disassembled code of the classes visited so far to a sink and drop it.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  protected void drainTo(final OutputSink sink) throws IOException {
+    codePrintBuilder.drainTo(sink);
+  }
+
+  /**
+   * Write disassembled code of all classes to a sink, reading spill files in chunks.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  public void writeTo(final OutputSink sink) throws IOException {
+    codePrintBuilder.writeTo(sink);
+  }
+
   /**
    * Return textual disassembled source about all classes in JAR file.
    *
@@ -262,6 +371,8 @@ public class DisassembleVisitor extends JarVisitor {
    */
   @Override
   public String jarToString() {
-    return codePrintBuilder.toString();
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.FORMAT)) {
+      return codePrintBuilder.toString();
+    }
   }
 }
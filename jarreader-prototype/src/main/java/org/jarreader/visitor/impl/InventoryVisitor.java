@@ -0,0 +1,225 @@
+package org.jarreader.visitor.impl;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.jarreader.archive.ArchiveEntry;
+import org.jarreader.archive.ArchiveReader;
+import org.jarreader.backend.ClassHandler;
+import org.jarreader.classfile.ClassHeader;
+import org.jarreader.profiling.Phase;
+import org.jarreader.profiling.PhaseTiming;
+import org.jarreader.visitor.JarVisitor;
+import org.jarreader.visitor.OutputSink;
+import org.jarreader.visitor.SpillableText;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Print an inventory of classes, one line per class, from class file headers only.
+ * <p>
+ * The following are extracted:
+ * <ul>
+ * <li>Access flags
+ * <li>Class name
+ * <li>Extended superclass name
+ * <li>Implemented interfaces
+ * <li>Major and minor version of class
+ * </ul>
+ * Classes are read by {@link ClassHeader} instead of being parsed with BCEL, from a stream
+ * inflating entries only up to the end of the header. Fields, methods and attributes are never
+ * inflated. When a {@link org.jarreader.backend.ClassBackend} is selected, classes are read by it
+ * instead, skipping the code of methods. Only when classes are parsed by a
+ * {@link org.jarreader.visitor.ClassPipeline} the same information is taken from the BCEL
+ * representation.
+ */
+public class InventoryVisitor extends JarVisitor {
+
+  private SpillableText inventoryBuilder;
+
+  public InventoryVisitor(final Path jarPath) {
+    super(jarPath);
+    inventoryBuilder = new SpillableText();
+  }
+
+  /**
+   * Read class header of entry in JAR file, inflating only the header, unless a backend is
+   * selected.
+   *
+   * @param archive   Opened archive containing the entry
+   * @param entry     JAR entry to visit
+   */
+  @Override
+  public void visitJarEntry(final ArchiveReader archive, final ArchiveEntry entry) {
+    if (getBackend() != null) {
+      super.visitJarEntry(archive, entry);
+      return;
+    }
+
+    try (final InputStream classStream = archive.getLazyInputStream(entry)) {
+      ClassHeader header = ClassHeader.read(classStream);
+
+      appendClass(header.getAccessFlags(), header.getClassName(), header.getSuperclassName(),
+                  header.getInterfaceNames(), header.getMajor(), header.getMinor());
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Print class information of a class parsed with BCEL.
+   *
+   * @param javaClass   BCEL representation of class to visit
+   */
+  @Override
+  public void visitJavaClass(final JavaClass javaClass) {
+    appendClass(javaClass.getAccessFlags(), javaClass.getClassName(), javaClass.getSuperclassName(),
+                javaClass.getInterfaceNames(), javaClass.getMajor(), javaClass.getMinor());
+  }
+
+  /**
+   * Get handler printing the class information reported by a backend.
+   *
+   * @return    Handler of this visitor
+   */
+  @Override
+  protected ClassHandler getClassHandler() {
+    return new ClassHandler() {
+      @Override
+      public boolean needsCode() {
+        return false;
+      }
+
+      @Override
+      public void visitClass(final int major, final int minor, final int accessFlags, final String className,
+                             final String superclassName, final String[] interfaceNames) {
+        appendClass(accessFlags, className, superclassName, interfaceNames, major, minor);
+      }
+    };
+  }
+
+  /**
+   * Print inventory line of a class.
+   */
+  private void appendClass(final int accessFlags, final String className, final String superclassName,
+                           final String[] interfaceNames, final int major, final int minor) {
+    inventoryBuilder.append("(0x")
+                    .append(Integer.toHexString(accessFlags))
+                    .append(") ")
+                    .append(className);
+
+    if (!superclassName.equals("java.lang.Object")) {
+      inventoryBuilder.append(" extends ").append(superclassName);
+    }
+
+    if (0 < interfaceNames.length) {
+      inventoryBuilder.append(" implements ").append(String.join(", ", interfaceNames));
+    }
+
+    inventoryBuilder.append(" [version ")
+                    .append(major)
+                    .append('.')
+                    .append(minor)
+                    .append("]\n");
+  }
+
+  /**
+   * Create empty inventory visitor for the same JAR file.
+   *
+   * @return  New visitor with empty state
+   */
+  @Override
+  protected JarVisitor fork() {
+    return new InventoryVisitor(getJarPath());
+  }
+
+  /**
+   * Append inventory collected by a forked visitor.
+   *
+   * @param partial   Forked visitor created by {@link #fork()}
+   */
+  @Override
+  protected void merge(final JarVisitor partial) {
+    inventoryBuilder.append(((InventoryVisitor) partial).inventoryBuilder);
+  }
+
+  /**
+   * Write collected inventory.
+   *
+   * @param out   Output to write state to
+   * @throws IOException  State couldn't be written
+   */
+  @Override
+  protected void writeState(final DataOutput out) throws IOException {
+    inventoryBuilder.writeState(out);
+  }
+
+  /**
+   * Restore collected inventory.
+   *
+   * @param in    Input to read state from
+   * @throws IOException  State couldn't be read
+   */
+  @Override
+  protected void readState(final DataInput in) throws IOException {
+    inventoryBuilder = SpillableText.readState(in);
+  }
+
+  /**
+   * Estimate heap occupied by inventory held in memory.
+   *
+   * @return  Retained size in bytes
+   */
+  @Override
+  protected long getRetainedSize() {
+    return inventoryBuilder.getRetainedSize();
+  }
+
+  /**
+   * Move inventory held in memory to a spill file.
+   *
+   * @param directory   Directory to create spill file in
+   * @return            Estimated heap freed in bytes
+   * @throws IOException  Spill file couldn't be written
+   */
+  @Override
+  protected long spill(final Path directory) throws IOException {
+    return inventoryBuilder.spill(directory);
+  }
+
+  /**
+   * Write inventory of the classes visited so far to a sink and drop it.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  protected void drainTo(final OutputSink sink) throws IOException {
+    inventoryBuilder.drainTo(sink);
+  }
+
+  /**
+   * Write inventory of all classes to a sink, reading spill files in chunks.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  public void writeTo(final OutputSink sink) throws IOException {
+    inventoryBuilder.writeTo(sink);
+  }
+
+  /**
+   * Return inventory of all classes in JAR file.
+   *
+   * @return  Textual inventory of classes
+   */
+  @Override
+  public String jarToString() {
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.FORMAT)) {
+      return inventoryBuilder.toString();
+    }
+  }
+}
@@ -2,101 +2,286 @@ package org.jarreader.visitor.impl;
 
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.*;
+import org.jarreader.backend.ClassBackend;
+import org.jarreader.backend.ClassHandler;
+import org.jarreader.backend.TypeNames;
+import org.jarreader.classfile.SymbolTable;
+import org.jarreader.classfile.Utf8Name;
+import org.jarreader.profiling.Phase;
+import org.jarreader.profiling.PhaseTiming;
 import org.jarreader.visitor.JarVisitor;
+import org.jarreader.visitor.OutputSink;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 
 /**
  * Visitor for retrieving method caller and callee information.
+ * <p>
+ * Methods are collected by a {@link ClassHandler}, fed by the lean
+ * {@link org.jarreader.classfile.ClassFile} parser unless another {@link ClassBackend} is
+ * selected. It only needs the method table, the code of methods and the constants referenced by
+ * invoke instructions. Only when classes are parsed by a
+ * {@link org.jarreader.visitor.ClassPipeline} the same information is taken from the BCEL
+ * representation.
+ * <p>
+ * Methods can only be connected once all of them are collected, so collected methods are not
+ * spilled to disk. Their estimated size counts against a
+ * {@link org.jarreader.visitor.MemoryBudget memory budget}, which slows parsing down instead.
+ * <p>
+ * Methods are identified by the {@link SymbolTable symbol table} IDs of their declaring class
+ * name and their name, packed into a long. A visitor shares its table with the visitors forked
+ * from it, so the table lives as long as the result of the traversal. Nodes and their callees hold these
+ * IDs instead of qualified names, which are built only when the result is printed. Names reported
+ * by the lean backend are interned from their class file bytes, so they are decoded only once
+ * per symbol instead of once per class.
  */
 public class MethodCallInfoVisitor extends JarVisitor {
 
-  private Map<String, MethodCallNode> methodCallMap;
+  // Estimated heap of a method node with its map entry and of an array without its elements
+  private final static int NODE_OVERHEAD = 120;
+  private final static int ARRAY_OVERHEAD = 16;
+
+  private final static long[] NO_CALLEES = new long[0];
+
+  private final SymbolTable symbols;
+  private Map<Long, MethodCallNode> methodCallMap;
+  private long retainedSize;
+  private final CallCollector callCollector;
 
   public MethodCallInfoVisitor(final Path jarPath) {
+    this(jarPath, new SymbolTable());
+  }
+
+  /**
+   * Constructor for visitor interning names into the table of another visitor.
+   *
+   * @param jarPath       Relative or absolute file path
+   * @param symbolTable   Symbol table shared with other visitors of the traversal
+   */
+  private MethodCallInfoVisitor(final Path jarPath, final SymbolTable symbolTable) {
     super(jarPath);
+    symbols = symbolTable;
     methodCallMap = new LinkedHashMap<>();
+    retainedSize = 0;
+    callCollector = new CallCollector();
   }
 
   /**
-   * Start collecting methods then connecting callers and callees.
-   *
-   * @return  Reference to self
+   * Connect callers and callees after methods of all classes have been collected.
    */
   @Override
-  public JarVisitor start() {
-    super.start();
+  public void visitEnd() {
     connectMethods();
+  }
 
-    return this;
+  /**
+   * Get handler collecting methods of a class from a backend, like
+   * {@link #visitJavaClass(JavaClass)} does from the BCEL representation.
+   *
+   * @return    Handler of this visitor
+   */
+  @Override
+  protected ClassHandler getClassHandler() {
+    return callCollector;
+  }
+
+  /**
+   * Get the lean class file parser as default backend, which decodes only the constants
+   * referenced by invoke instructions.
+   *
+   * @return    Lean backend
+   */
+  @Override
+  protected ClassBackend getDefaultBackend() {
+    return ClassBackend.LEAN;
   }
 
   /**
-   * Collect methods of a class.
+   * Collect methods of a class with the methods they call. Callees are interned right away, so no
+   * BCEL representation of the class is kept after visiting it.
    *
    * @param javaClass   BCEL representation of class to visit
    */
   @Override
   public void visitJavaClass(final JavaClass javaClass) {
-    for (Method method : javaClass.getMethods()) {
-      if (method.isAbstract() || method.isNative()) {
+    // Reported as by the BCEL backend, which decodes the instruction lists of methods
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.METHOD_GEN)) {
+      ClassBackend.accept(javaClass, callCollector);
+    }
+  }
+
+  /**
+   * Get ID of a method from the symbol IDs of its declaring class and its name.
+   *
+   * @param classId   Symbol ID of declaring class name
+   * @param nameId    Symbol ID of method name
+   * @return          Method ID
+   */
+  private static long methodId(final int classId, final int nameId) {
+    return (long) classId << 32 | nameId;
+  }
+
+  /**
+   * Get ID of a method from its qualified name.
+   *
+   * @param qualifiedName   Declaring class name and method name separated by a dot
+   * @return                Method ID
+   * @throws IOException    Name isn't qualified
+   */
+  private long methodId(final String qualifiedName) throws IOException {
+    final int separator = qualifiedName.lastIndexOf('.');
+    if (separator < 0) {
+      throw new IOException("Method name is not qualified: " + qualifiedName);
+    }
+    return methodId(symbols.intern(qualifiedName.substring(0, separator)),
+                    symbols.intern(qualifiedName.substring(separator + 1)));
+  }
+
+  /**
+   * Append qualified name of a method.
+   *
+   * @param sb        Builder to append to
+   * @param methodId  Method ID
+   * @return          Reference to builder
+   */
+  private StringBuilder appendName(final StringBuilder sb, final long methodId) {
+    return sb.append(symbols.getSymbol((int) (methodId >>> 32)))
+             .append('.')
+             .append(symbols.getSymbol((int) methodId));
+  }
+
+  /**
+   * Estimate heap occupied by a collected method. Names are held by the symbol table, so only
+   * the node and the IDs of called methods are counted.
+   *
+   * @param calleeIds   IDs of called methods
+   * @return            Estimated size in bytes
+   */
+  private static long estimateSize(final long[] calleeIds) {
+    return NODE_OVERHEAD + ARRAY_OVERHEAD + (long) Long.BYTES * calleeIds.length;
+  }
+
+  /**
+   * Estimate heap occupied by collected methods.
+   *
+   * @return  Retained size in bytes
+   */
+  @Override
+  protected long getRetainedSize() {
+    return retainedSize;
+  }
+
+  /**
+   * Create empty method call visitor for the same JAR file, sharing the symbol table of this one.
+   *
+   * @return  New visitor with empty state
+   */
+  @Override
+  protected JarVisitor fork() {
+    return new MethodCallInfoVisitor(getJarPath(), symbols);
+  }
+
+  /**
+   * Add methods declared in the JAR file collected by another visitor. Methods are connected
+   * only after all partial results are merged, so nodes are copied without their connections.
+   * This keeps the merged visitor independent from an already finished one.
+   * <p>
+   * Visitors of other JAR files of a classpath have their own symbol tables, so IDs of their
+   * methods are translated into IDs of this table.
+   *
+   * @param partial   Visitor of the same kind, usually forked by {@link #fork()}
+   */
+  @Override
+  protected void merge(final JarVisitor partial) {
+    final MethodCallInfoVisitor other = (MethodCallInfoVisitor) partial;
+    final SymbolTranslation translation = other.symbols == symbols ? null : new SymbolTranslation(other.symbols);
+
+    for (MethodCallNode node : other.methodCallMap.values()) {
+      if (!node.isInJar()) {
+        continue;
+      }
+      if (translation == null) {
+        if (!methodCallMap.containsKey(node.getId())) {
+          methodCallMap.put(node.getId(), new MethodCallNode(node));
+          retainedSize += estimateSize(node.getCalleeIds());
+        }
         continue;
       }
+      final long id = translation.methodId(node.getId());
+      if (!methodCallMap.containsKey(id)) {
+        final long[] calleeIds = translation.methodIds(node.getCalleeIds());
+        methodCallMap.put(id, new MethodCallNode(id, calleeIds));
+        retainedSize += estimateSize(calleeIds);
+      }
+    }
+  }
 
-      String qualifiedName = javaClass.getClassName() + '.' + method.getName();
-      if (!methodCallMap.containsKey(qualifiedName)) {
-        methodCallMap.put(qualifiedName, new MethodCallNode(javaClass, method));
+  /**
+   * Write methods declared in the JAR file with the names of the methods they call. Symbol IDs
+   * are only valid within the running application, so qualified names are written.
+   *
+   * @param out   Output to write state to
+   * @throws IOException  State couldn't be written
+   */
+  @Override
+  protected void writeState(final DataOutput out) throws IOException {
+    List<MethodCallNode> nodes = new ArrayList<>();
+    methodCallMap.values().stream().filter(MethodCallNode::isInJar).forEach(nodes::add);
+
+    out.writeInt(nodes.size());
+    for (MethodCallNode node : nodes) {
+      writeString(out, node.getName());
+      out.writeInt(node.getCalleeIds().length);
+      for (long calleeId : node.getCalleeIds()) {
+        writeString(out, appendName(new StringBuilder(), calleeId).toString());
+      }
+    }
+  }
+
+  /**
+   * Restore methods declared in the JAR file. Methods are connected by {@link #visitEnd()}.
+   *
+   * @param in    Input to read state from
+   * @throws IOException  State couldn't be read
+   */
+  @Override
+  protected void readState(final DataInput in) throws IOException {
+    methodCallMap.clear();
+    retainedSize = 0;
+    for (int nodeCount = in.readInt(); 0 < nodeCount; --nodeCount) {
+      long id = methodId(readString(in));
+      long[] calleeIds = new long[in.readInt()];
+      for (int i = 0; i < calleeIds.length; ++i) {
+        calleeIds[i] = methodId(readString(in));
       }
+      methodCallMap.put(id, new MethodCallNode(id, calleeIds));
+      retainedSize += estimateSize(calleeIds);
     }
   }
 
   /**
-   * Examine bytecode instructions and connect methods in method collection.
+   * Connect methods in method collection with the methods they call.
    */
   private void connectMethods() {
-    // Size of map might grow with methods not in JAR file, keep track of map keys
-    List<String> keyList = new ArrayList<>(methodCallMap.keySet());
-    for (int i = 0; i < keyList.size(); i++) {
-      MethodCallNode initialNode = methodCallMap.get(keyList.get(i));
+    // Map grows with methods not in JAR file, so iterate over a copy of the collected methods
+    List<MethodCallNode> nodes = new ArrayList<>(methodCallMap.values());
+    for (MethodCallNode initialNode : nodes) {
       if (initialNode.isInJar()) {
-        MethodGen method = initialNode.getMethod().get();
-        ConstantPoolGen methodConstantPool = method.getConstantPool();
-
-        // Iterate through bytecode instructions
-        InstructionHandle ihandle = method.getInstructionList().getStart();
-        while (ihandle != null) {
-          Instruction instruction = ihandle.getInstruction();
-          switch (instruction.getOpcode()) {
-            case Const.INVOKEINTERFACE:
-            case Const.INVOKESPECIAL:
-            case Const.INVOKESTATIC:
-            case Const.INVOKEVIRTUAL:
-              // Retrieve called method name
-              InvokeInstruction invokeInstruction = (InvokeInstruction) instruction;
-              String calleeName =
-                  invokeInstruction.getReferenceType(methodConstantPool) + "." + invokeInstruction.getMethodName(methodConstantPool);
-
-              MethodCallNode calleeNode;
-              // Create new node if it not exists yet
-              if (!methodCallMap.containsKey(calleeName)) {
-                calleeNode = new MethodCallNode(calleeName);
-                methodCallMap.put(calleeName, calleeNode);
-                keyList = new ArrayList<>(methodCallMap.keySet());
-              } else {
-                calleeNode = methodCallMap.get(calleeName);
-              }
-
-              // Connect two methods
-              calleeNode.addCaller(initialNode);
-              initialNode.addCallee(calleeNode);
-            default:
-              break;
+        for (long calleeId : initialNode.getCalleeIds()) {
+          // Create new node if it not exists yet
+          MethodCallNode calleeNode = methodCallMap.get(calleeId);
+          if (calleeNode == null) {
+            calleeNode = new MethodCallNode(calleeId);
+            methodCallMap.put(calleeId, calleeNode);
           }
-          // Move iterator
-          ihandle = ihandle.getNext();
+
+          // Connect two methods
+          calleeNode.addCaller(initialNode);
+          initialNode.addCallee(calleeNode);
         }
       }
     }
@@ -109,49 +294,208 @@ public class MethodCallInfoVisitor extends JarVisitor {
    */
   @Override
   public String jarToString() {
-    StringBuilder sb = new StringBuilder();
-    for (Map.Entry<String, MethodCallNode> entry : methodCallMap.entrySet()) {
-      MethodCallNode methodNode = entry.getValue();
+    try (final PhaseTiming timing = PhaseTiming.start(Phase.FORMAT)) {
+      StringBuilder sb = new StringBuilder();
+      for (MethodCallNode methodNode : methodCallMap.values()) {
+        appendNode(sb, methodNode);
+      }
+      return sb.append('\n').toString();
+    }
+  }
+
+  /**
+   * Write method caller and callee information to a sink one method at a time. The call graph is
+   * only complete after all classes are visited, so nothing is written during traversal.
+   *
+   * @param sink  Sink to write output to
+   * @throws IOException  Output couldn't be written
+   */
+  @Override
+  public void writeTo(final OutputSink sink) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    for (MethodCallNode methodNode : methodCallMap.values()) {
+      sb.setLength(0);
+      appendNode(sb, methodNode);
+      sink.write(sb);
+    }
+    sink.write("\n");
+  }
+
+  /**
+   * Print method with its callers and callees.
+   *
+   * @param sb          Builder to append to
+   * @param methodNode  Node of method
+   */
+  private void appendNode(final StringBuilder sb, final MethodCallNode methodNode) {
+    sb.append("================================\n");
+    sb.append("Method name:\t");
+    appendName(sb, methodNode.getId());
+    sb.append("\nCallers:\n");
+    methodNode.getCallers().forEach(caller -> {
+      sb.append('\t');
+      appendName(sb, caller.getId());
+      sb.append('\n');
+    });
+    sb.append("Callees:\n");
+    methodNode.getCallees().forEach(callee -> {
+      sb.append('\t');
+      appendName(sb, callee.getId());
+      sb.append('\n');
+    });
+  }
+
+  /**
+   * Translation of method IDs of another symbol table into IDs of the table of this visitor.
+   */
+  private class SymbolTranslation {
+    private final SymbolTable from;
+    // Symbol ID of this table by symbol ID of the other table, -1 if not translated yet
+    private int[] symbolIds;
+
+    SymbolTranslation(final SymbolTable from) {
+      this.from = from;
+      this.symbolIds = new int[0];
+    }
+
+    long methodId(final long otherId) {
+      return MethodCallInfoVisitor.methodId(symbolId((int) (otherId >>> 32)), symbolId((int) otherId));
+    }
+
+    long[] methodIds(final long[] otherIds) {
+      final long[] translated = new long[otherIds.length];
+      for (int i = 0; i < otherIds.length; ++i) {
+        translated[i] = methodId(otherIds[i]);
+      }
+      return translated;
+    }
+
+    private int symbolId(final int otherId) {
+      if (symbolIds.length <= otherId) {
+        final int length = symbolIds.length;
+        symbolIds = Arrays.copyOf(symbolIds, Math.max(otherId + 1, from.size()));
+        Arrays.fill(symbolIds, length, symbolIds.length, -1);
+      }
+      if (symbolIds[otherId] < 0) {
+        symbolIds[otherId] = symbols.intern(from.getSymbol(otherId));
+      }
+      return symbolIds[otherId];
+    }
+  }
+
+  /**
+   * Handler collecting methods of a class with the IDs of the methods they call.
+   */
+  private class CallCollector implements ClassHandler {
+    // Symbol IDs of internal class names, which differ from the symbols of class names
+    private final Map<Utf8Name, Integer> classIds = new HashMap<>();
+    private int declaringClassId;
+    private long methodId;
+    private boolean collecting;
+    private long[] calleeIds = new long[64];
+    private int calleeCount;
+
+    @Override
+    public boolean needsCode() {
+      return true;
+    }
+
+    @Override
+    public void visitClass(final int major, final int minor, final int accessFlags, final String className,
+                           final String superclassName, final String[] interfaceNames) {
+      declaringClassId = symbols.intern(className);
+    }
+
+    @Override
+    public void visitMethod(final int accessFlags, final String name, final String descriptor) {
+      startMethod(accessFlags, symbols.intern(name));
+    }
+
+    @Override
+    public void visitMethod(final int accessFlags, final Utf8Name name, final Utf8Name descriptor) {
+      startMethod(accessFlags, symbols.intern(name));
+    }
+
+    private void startMethod(final int accessFlags, final int nameId) {
+      collecting = false;
+      if ((accessFlags & (Const.ACC_ABSTRACT | Const.ACC_NATIVE)) == 0) {
+        methodId = methodId(declaringClassId, nameId);
+        collecting = !methodCallMap.containsKey(methodId);
+        calleeCount = 0;
+      }
+    }
+
+    @Override
+    public void visitMethodCall(final int opcode, final String className, final String name,
+                                final String descriptor) {
+      if (collecting) {
+        addCallee(methodId(symbols.intern(className), symbols.intern(name)));
+      }
+    }
+
+    @Override
+    public void visitMethodCall(final int opcode, final Utf8Name internalClassName, final Utf8Name name,
+                                final Utf8Name descriptor) {
+      if (collecting) {
+        Integer classId = classIds.get(internalClassName);
+        if (classId == null) {
+          classId = symbols.intern(TypeNames.toJavaName(internalClassName.toString()));
+          classIds.put(internalClassName, classId);
+        }
+        addCallee(methodId(classId, symbols.intern(name)));
+      }
+    }
+
+    private void addCallee(final long calleeId) {
+      if (calleeCount == calleeIds.length) {
+        calleeIds = Arrays.copyOf(calleeIds, calleeCount * 2);
+      }
+      calleeIds[calleeCount++] = calleeId;
+    }
 
-      sb.append("================================\n");
-      sb.append("Method name:\t");
-      sb.append(methodNode.getName());
-      sb.append("\nCallers:\n");
-      methodNode.getCallers().forEach(caller -> {
-        sb.append('\t');
-        sb.append(caller.getName());
-        sb.append('\n');
-      });
-      sb.append("Callees:\n");
-      methodNode.getCallees().forEach(callee -> {
-        sb.append('\t');
-        sb.append(callee.getName());
-        sb.append('\n');
-      });
+    @Override
+    public void visitMethodEnd() {
+      if (collecting) {
+        long[] collected = Arrays.copyOf(calleeIds, calleeCount);
+        methodCallMap.put(methodId, new MethodCallNode(methodId, collected));
+        retainedSize += estimateSize(collected);
+        collecting = false;
+      }
     }
-    return sb.append('\n').toString();
   }
 
   /**
-   * Methodcall node containing method name and references to its callers and callees.
+   * Methodcall node containing method ID and references to its callers and callees.
    */
   private class MethodCallNode {
-    private Optional<MethodGen> method;
-    private String name;
+    private long[] calleeIds;
+    private long id;
     private List<MethodCallNode> callers;
     private List<MethodCallNode> callees;
 
     /**
      * Create method node that was in JAR.
      *
-     * @param javaClass
-     * @param method
+     * @param methodId    ID of method
+     * @param calleeIds   IDs of methods called by the method
      */
-    MethodCallNode(final JavaClass javaClass, final Method method) {
-      this.method = Optional.of(new MethodGen(method, javaClass.getClassName(),
-          new ConstantPoolGen(javaClass.getConstantPool())));
+    MethodCallNode(final long methodId, final long[] calleeIds) {
+      this.calleeIds = calleeIds;
 
-      this.name = javaClass.getClassName() + '.' + method.getName();
+      this.id = methodId;
+      this.callers = new ArrayList<>();
+      this.callees = new ArrayList<>();
+    }
+
+    /**
+     * Create copy of method node without its callers and callees.
+     *
+     * @param other   Node to copy
+     */
+    MethodCallNode(final MethodCallNode other) {
+      this.calleeIds = other.calleeIds;
+
+      this.id = other.id;
       this.callers = new ArrayList<>();
       this.callees = new ArrayList<>();
     }
@@ -160,12 +504,12 @@ public class MethodCallInfoVisitor extends JarVisitor {
      * Create method node that is not in JAR, but referenced from
      * an outside library.
      *
-     * @param methodName
+     * @param methodId  ID of method
      */
-    MethodCallNode(final String methodName) {
-      this.method = Optional.empty();
+    MethodCallNode(final long methodId) {
+      this.calleeIds = null;
 
-      this.name = methodName;
+      this.id = methodId;
       this.callers = new ArrayList<>();
       this.callees = new ArrayList<>();
     }
@@ -179,15 +523,19 @@ public class MethodCallInfoVisitor extends JarVisitor {
     }
 
     boolean isInJar() {
-      return method.isPresent();
+      return calleeIds != null;
+    }
+
+    long[] getCalleeIds() {
+      return calleeIds != null ? calleeIds : NO_CALLEES;
     }
 
-    Optional<MethodGen> getMethod() {
-      return method;
+    long getId() {
+      return id;
     }
 
     String getName() {
-      return name;
+      return appendName(new StringBuilder(), id).toString();
     }
 
     List<MethodCallNode> getCallers() {
@@ -200,11 +548,10 @@ public class MethodCallInfoVisitor extends JarVisitor {
 
     @Override
     public String toString() {
-      StringBuilder sb = new StringBuilder("{Method: ")
-          .append(name)
-          .append(", callers: [");
+      StringBuilder sb = new StringBuilder("{Method: ");
+      appendName(sb, id).append(", callers: [");
       for (int i = 0; i < callers.size(); i++) {
-        sb.append(callers.get(i).getName());
+        appendName(sb, callers.get(i).getId());
 
         if (i < callers.size() - 1) {
           sb.append(", ");
@@ -212,7 +559,7 @@ public class MethodCallInfoVisitor extends JarVisitor {
       }
       sb.append("], callees: [");
       for (int i = 0; i < callees.size(); i++) {
-        sb.append(callees.get(i).getName());
+        appendName(sb, callees.get(i).getId());
 
         if (i < callees.size() - 1) {
           sb.append(", ");